@@ -0,0 +1,83 @@
+package com.khorn.terraincontrol.benchmark;
+
+import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
+import com.khorn.terraincontrol.generator.biome.NormalBiomeGenerator;
+import com.khorn.terraincontrol.generator.biome.OutputType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the layers of the normal biome mode, without the biome cache
+ * in front of them. The requested areas match what the terrain generator
+ * requests for a chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BiomeBenchmark {
+	/**
+	 * Size of the unzoomed biome area of a chunk, with the default smooth
+	 * radius of 2.
+	 */
+	private static final int UNZOOMED_SIZE = 5 + 5;
+	/**
+	 * Size of the large unzoomed biome area, 2048 blocks wide.
+	 */
+	private static final int LARGE_AREA_SIZE = 512;
+
+	private BiomeGenerator biomeGenerator;
+	private int[] biomeArray;
+	private int chunkX;
+
+	@Setup
+	public void setup(WorldState worldState) {
+		biomeGenerator = new NormalBiomeGenerator(worldState.world);
+	}
+
+	/**
+	 * The biomes used for the terrain shape of a chunk.
+	 *
+	 * @return The biomes.
+	 */
+	@Benchmark
+	public int[] unZoomedBiomes() {
+		chunkX++;
+		biomeArray = biomeGenerator.getBiomesUnZoomed(biomeArray, chunkX * 4 - 2, -2, UNZOOMED_SIZE, UNZOOMED_SIZE,
+				OutputType.DEFAULT_FOR_WORLD);
+		return biomeArray;
+	}
+
+	/**
+	 * A large area of unzoomed biomes, like the structure generators look up
+	 * when searching for a suitable location.
+	 *
+	 * @return The biomes.
+	 */
+	@Benchmark
+	public int[] largeUnZoomedArea() {
+		chunkX++;
+		biomeArray = biomeGenerator.getBiomesUnZoomed(biomeArray, chunkX * 512, 0, LARGE_AREA_SIZE, LARGE_AREA_SIZE,
+				OutputType.DEFAULT_FOR_WORLD);
+		return biomeArray;
+	}
+
+	/**
+	 * The biomes of all 16x16 columns of a chunk.
+	 *
+	 * @return The biomes.
+	 */
+	@Benchmark
+	public int[] chunkBiomes() {
+		chunkX++;
+		biomeArray = biomeGenerator.getBiomes(biomeArray, chunkX * 16, 0, 16, 16, OutputType.DEFAULT_FOR_WORLD);
+		return biomeArray;
+	}
+}
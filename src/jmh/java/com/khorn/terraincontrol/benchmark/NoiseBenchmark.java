@@ -0,0 +1,69 @@
+package com.khorn.terraincontrol.benchmark;
+
+import com.khorn.terraincontrol.generator.noise.NoiseGeneratorNewOctaves;
+import com.khorn.terraincontrol.generator.noise.NoiseGeneratorPerlinOctaves;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the noise generators, with the same sizes and scales as the
+ * terrain generator uses for a single chunk. The position moves a chunk on
+ * every call, so that no two calls sample the same area.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NoiseBenchmark {
+	private static final double XZ_SCALE = 684.412D;
+	private static final double Y_SCALE = 684.412D;
+
+	@Param("12345")
+	public long seed;
+
+	private NoiseGeneratorPerlinOctaves perlinOctaves;
+	private NoiseGeneratorNewOctaves newOctaves;
+	private double[] noise3D;
+	private double[] noise2D;
+	private int position;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(seed);
+		perlinOctaves = new NoiseGeneratorPerlinOctaves(random, 16);
+		newOctaves = new NoiseGeneratorNewOctaves(random, 4);
+	}
+
+	/**
+	 * One of the three 3D noises of the terrain of a chunk: 5x33x5 samples.
+	 *
+	 * @return The noise.
+	 */
+	@Benchmark
+	public double[] perlinNoise3D() {
+		position += 4;
+		noise3D = perlinOctaves.Noise3D(noise3D, position, 0, 0, 5, 33, 5, XZ_SCALE, Y_SCALE, XZ_SCALE);
+		return noise3D;
+	}
+
+	/**
+	 * The 2D noise that decides the depth of the biome blocks of a chunk.
+	 *
+	 * @return The noise.
+	 */
+	@Benchmark
+	public double[] newNoise2D() {
+		position += 16;
+		noise2D = newOctaves.a(noise2D, position, 0, 16, 16, 0.0625D, 0.0625D, 1.0D);
+		return noise2D;
+	}
+}
@@ -0,0 +1,60 @@
+package com.khorn.terraincontrol.benchmark;
+
+import com.khorn.terraincontrol.standalone.StandaloneWorld;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the population of a chunk: custom objects, resources and
+ * snow. The four chunks of the population area are generated before each
+ * call, so that only the population itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PopulationBenchmark {
+	private static final int ROW_LENGTH = 64;
+
+	/**
+	 * Maximum number of chunks kept in memory. The world is cleared when
+	 * it holds more chunks.
+	 */
+	private static final int MAX_CHUNKS = 4096;
+
+	private StandaloneWorld world;
+	private ChunkCoordinate chunkCoord;
+	private int chunkIndex;
+
+	@Setup
+	public void setup(WorldState worldState) {
+		world = worldState.world;
+	}
+
+	@Setup(Level.Invocation)
+	public void generateArea() {
+		if (world.getChunkCount() > MAX_CHUNKS) { world.clearChunks(); }
+
+		int index = chunkIndex++;
+		chunkCoord = ChunkCoordinate.fromChunkCoords(index % ROW_LENGTH, index / ROW_LENGTH);
+		for (int x = 0; x <= 1; x++) {
+			for (int z = 0; z <= 1; z++) {
+				world.getOrGenerateChunk(chunkCoord.getChunkX() + x, chunkCoord.getChunkZ() + z);
+			}
+		}
+	}
+
+	@Benchmark
+	public void populate() {
+		world.populate(chunkCoord);
+	}
+}
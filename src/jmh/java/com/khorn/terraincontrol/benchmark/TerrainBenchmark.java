@@ -0,0 +1,89 @@
+package com.khorn.terraincontrol.benchmark;
+
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.generator.terrain.CanyonsGen;
+import com.khorn.terraincontrol.generator.terrain.CavesGen;
+import com.khorn.terraincontrol.standalone.StandaloneChunkBuffer;
+import com.khorn.terraincontrol.standalone.StandaloneWorld;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the generation of the blocks of a chunk, before population.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TerrainBenchmark {
+	/**
+	 * Chunks are generated in rows of this many chunks, like a player
+	 * walking through the world would see them.
+	 */
+	private static final int ROW_LENGTH = 64;
+
+	private StandaloneWorld world;
+	private CavesGen cavesGen;
+	private CanyonsGen canyonsGen;
+	private StandaloneChunkBuffer template;
+	private StandaloneChunkBuffer carved;
+	private int chunkIndex;
+
+	@Setup
+	public void setup(WorldState worldState) {
+		world = worldState.world;
+		WorldConfig worldConfig = world.getConfigs().getWorldConfig();
+		cavesGen = new CavesGen(worldConfig, world);
+		canyonsGen = new CanyonsGen(worldConfig, world);
+		template = world.getOrGenerateChunk(0, 0);
+	}
+
+	@Setup(Level.Invocation)
+	public void copyTemplate() {
+		carved = template.copy();
+	}
+
+	/**
+	 * Terrain shape, biome blocks, caves and canyons of a new chunk.
+	 *
+	 * @return The generated chunk.
+	 */
+	@Benchmark
+	public StandaloneChunkBuffer generateBlocks() {
+		int index = chunkIndex++;
+		StandaloneChunkBuffer chunk = new StandaloneChunkBuffer(ChunkCoordinate.fromChunkCoords(index % ROW_LENGTH, index / ROW_LENGTH));
+		world.getChunkGenerator().generateBlocks(chunk);
+		return chunk;
+	}
+
+	/**
+	 * Caves of a single chunk.
+	 *
+	 * @return The carved chunk.
+	 */
+	@Benchmark
+	public StandaloneChunkBuffer caves() {
+		cavesGen.generate(carved);
+		return carved;
+	}
+
+	/**
+	 * Canyons of a single chunk.
+	 *
+	 * @return The carved chunk.
+	 */
+	@Benchmark
+	public StandaloneChunkBuffer canyons() {
+		canyonsGen.generate(carved);
+		return carved;
+	}
+}
@@ -0,0 +1,56 @@
+package com.khorn.terraincontrol.benchmark;
+
+import com.khorn.terraincontrol.standalone.StandaloneEngine;
+import com.khorn.terraincontrol.standalone.StandaloneWorld;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * A world with the default settings, in a temporary folder that is
+ * removed again after the benchmark. The world is not thread safe, so
+ * benchmarks using it must run on a single thread. Only one engine can run
+ * in a JVM, so this state relies on JMH forking a new JVM for each trial.
+ */
+@State(Scope.Benchmark)
+public class WorldState {
+	private static final String WORLD_NAME = "benchmark";
+
+	@Param("12345")
+	public long seed;
+
+	private Path dataFolder;
+	private StandaloneEngine engine;
+	StandaloneWorld world;
+
+	@Setup
+	public void setup() throws IOException {
+		dataFolder = Files.createTempDirectory("terraincontrol-benchmark");
+		engine = StandaloneEngine.start(dataFolder.toFile());
+
+		File settingsDir = new File(new File(dataFolder.toFile(), "worlds"), WORLD_NAME);
+		if (!settingsDir.mkdirs()) { throw new IOException("Cannot create " + settingsDir); }
+		world = new StandaloneWorld(WORLD_NAME, seed, settingsDir);
+		engine.addWorld(world);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		engine.removeWorld(world);
+		world.close();
+		world = null;
+		try (Stream<Path> files = Files.walk(dataFolder)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+}
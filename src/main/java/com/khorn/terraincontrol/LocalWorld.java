@@ -131,6 +131,17 @@ public interface LocalWorld {
 	 */
     void replaceBlocks(ChunkCoordinate chunkCoord);
 
+	/**
+	 * Gets whether the SurfaceAndGroundControl blocks of the chunk were
+	 * placed when the chunk was generated. Older versions placed them during
+	 * population instead, so chunks generated by those versions still need
+	 * them in the parts of the chunk that are not populated yet.
+	 *
+	 * @param chunkCoord The chunk, must be loaded.
+	 * @return True if the blocks were placed during generation.
+	 */
+    boolean isComplexSurfaceGenerated(ChunkCoordinate chunkCoord);
+
 	/**
 	 * Since Minecraft Beta 1.8, friendly mobs are mainly spawned during the
 	 * terrain generation. Calling this method will place the mobs.
@@ -161,6 +172,20 @@ public interface LocalWorld {
 	// Blocks
     LocalMaterialData getMaterial(int x, int y, int z);
 
+	/**
+	 * Gets the block id and block data at the given position, packed like
+	 * {@code id << 4 | data}. Faster than {@link #getMaterial(int, int, int)}
+	 * for checking many blocks against a
+	 * {@link com.khorn.terraincontrol.util.MaterialSet}, as no material is
+	 * created.
+	 *
+	 * @param x The x position of the block.
+	 * @param y The y position of the block.
+	 * @param z The z position of the block.
+	 * @return The packed block, or 0 (air) if the chunk is not loaded.
+	 */
+	int getPackedMaterial(int x, int y, int z);
+
 	boolean isEmpty(int x, int y, int z);
 
 	void setBlock(int x, int y, int z, LocalMaterialData material);
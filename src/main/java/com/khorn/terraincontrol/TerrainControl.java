@@ -142,6 +142,13 @@ public class TerrainControl {
 		return engine.toLocalMaterialData(defaultMaterial, blockData);
 	}
 
+	/**
+	 * @see TerrainControlEngine#toLocalMaterialData(int, int)
+	 */
+	public static LocalMaterialData toLocalMaterialData(int blockId, int blockData) {
+		return engine.toLocalMaterialData(blockId, blockData);
+	}
+
 	/**
 	 * Returns the global config file.
 	 * <p>
@@ -291,4 +291,15 @@ public abstract class TerrainControlEngine {
 	 */
 	public abstract LocalMaterialData toLocalMaterialData(DefaultMaterial defaultMaterial, int blockData);
 
+	/**
+	 * Creates a {@link LocalMaterialData} based on the given block id and
+	 * block data.
+	 * <p>
+	 * 
+	 * @param blockId   The block id.
+	 * @param blockData The block data.
+	 * @return The materialData.
+	 */
+	public abstract LocalMaterialData toLocalMaterialData(int blockId, int blockData);
+
 }
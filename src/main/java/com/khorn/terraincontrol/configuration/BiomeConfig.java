@@ -17,6 +17,7 @@ import com.khorn.terraincontrol.exception.InvalidConfigException;
 import com.khorn.terraincontrol.generator.resource.*;
 import com.khorn.terraincontrol.generator.surface.NullSurfaceGenerator;
 import com.khorn.terraincontrol.generator.surface.SurfaceGenerator;
+import com.khorn.terraincontrol.generator.terrain.CarvableBlocks;
 import com.khorn.terraincontrol.util.helpers.StringHelper;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultBiome;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
@@ -64,6 +65,10 @@ public class BiomeConfig extends ConfigFile {
 	public LocalMaterialData groundBlock;
 	public ReplacedBlocksMatrix replacedBlocks;
 	public SurfaceGenerator surfaceAndGroundControl;
+	/**
+	 * The blocks caves and canyons can carve in this biome.
+	 */
+	public final CarvableBlocks carvableBlocks = new CarvableBlocks(this);
 
 	public String replaceToBiomeName;
 
@@ -173,6 +173,15 @@ public class WorldConfig extends ConfigFile {
 
 	public long resourcesSeed;
 
+	// Performance
+	public int generationThreads;
+	public int generationBufferSize;
+	public boolean prefetchChunks;
+	public int biomeCacheSize;
+	public boolean biomeCacheOnDisk;
+	public int structureCacheSize;
+	public boolean structureCacheOnDisk;
+
 	/**
 	 * Creates a WorldConfig from the WorldConfig.ini file found in the given
 	 * directory.
@@ -436,6 +445,15 @@ public class WorldConfig extends ConfigFile {
 		this.populateUsingSavedBiomes = readSettings(WorldStandardValues.POPULATE_USING_SAVED_BIOMES);
 
 		this.oldTerrainGenerator = this.ModeTerrain == TerrainMode.OldGenerator;
+
+		// Performance
+		this.generationThreads = readSettings(WorldStandardValues.GENERATION_THREADS);
+		this.generationBufferSize = readSettings(WorldStandardValues.GENERATION_BUFFER_SIZE);
+		this.prefetchChunks = readSettings(WorldStandardValues.PREFETCH_CHUNKS);
+		this.biomeCacheSize = readSettings(WorldStandardValues.BIOME_CACHE_SIZE);
+		this.biomeCacheOnDisk = readSettings(WorldStandardValues.BIOME_CACHE_ON_DISK);
+		this.structureCacheSize = readSettings(WorldStandardValues.STRUCTURE_CACHE_SIZE);
+		this.structureCacheOnDisk = readSettings(WorldStandardValues.STRUCTURE_CACHE_ON_DISK);
 	}
 
 	private void ReadCustomBiomes() {
@@ -830,6 +848,55 @@ public class WorldConfig extends ConfigFile {
 		writer.setting(WorldStandardValues.MIN_TEMPERATURE, this.minTemperature);
 		writer.setting(WorldStandardValues.MAX_TEMPERATURE, this.maxTemperature);
 
+		// Performance settings
+		writer.bigTitle("Performance settings");
+		writer.comment("These settings don't change how the world looks, only how fast it is generated.");
+		writer.comment("");
+
+		writer.comment("Number of background threads used to generate the terrain of new chunks. The main");
+		writer.comment("thread then only has to place the structures and turn the terrain into a chunk.");
+		writer.comment("Set to 0 to generate everything on the main thread. Ignored for TerrainMode:OldGenerator,");
+		writer.comment("BiomeMode:Default and when PopulateUsingSavedBiomes is enabled.");
+		writer.setting(WorldStandardValues.GENERATION_THREADS, this.generationThreads);
+
+		writer.comment("Maximum number of chunks that are generated in the background, but not yet used by the");
+		writer.comment("server. When more chunks are requested, the chunks that were requested first are discarded.");
+		writer.comment("Only used when GenerationThreads is larger than 0.");
+		writer.setting(WorldStandardValues.GENERATION_BUFFER_SIZE, this.generationBufferSize);
+
+		writer.comment("Set this to true to generate chunks in front of fast moving players (on horses, in boats,");
+		writer.comment("in minecarts, etc.) before the server asks for them. Only used when GenerationThreads is");
+		writer.comment("larger than 0.");
+		writer.setting(WorldStandardValues.PREFETCH_CHUNKS, this.prefetchChunks);
+
+		writer.comment("Number of chunks of which the biomes are kept in memory. Each chunk takes 1 KB.");
+		writer.comment("Increase this when you are using a large view distance or many generation threads.");
+		writer.setting(WorldStandardValues.BIOME_CACHE_SIZE, this.biomeCacheSize);
+
+		writer.comment("Set this to true to save the generated biomes in the data/TerrainControlBiomes folder of the");
+		writer.comment("world save, so that they don't have to be generated again after a restart. This speeds up finding");
+		writer.comment("strongholds and villages. Takes about 560 KB per 32x32 chunks. The saved biomes are thrown");
+		writer.comment("away automatically when the seed, this file or any of the biome configs is changed.");
+		writer.setting(WorldStandardValues.BIOME_CACHE_ON_DISK, this.biomeCacheOnDisk);
+
+		writer.comment("Size of the cache of custom structures (CustomStructure in the BiomeConfigs). Every chunk");
+		writer.comment("without a structure start counts as 1, every structure as 1 plus its number of objects.");
+		writer.comment("When full, the least recently used chunks are removed. Structures that are removed while");
+		writer.comment("they are still being spawned are calculated again when they are needed.");
+		writer.setting(WorldStandardValues.STRUCTURE_CACHE_SIZE, this.structureCacheSize);
+
+		writer.comment("Set this to true to save the layout of custom structures in the world folder, together with");
+		writer.comment("the chunks they have already been spawned in. Structures then no longer need to be");
+		writer.comment("calculated again after a restart, or after they were removed from the cache, and structures");
+		writer.comment("that are spawned completely are never looked at again. Changed objects only affect new");
+		writer.comment("structures. The files are written during population, on the server thread, so this is");
+		writer.comment("only worth it for worlds with many large custom structures.");
+		writer.comment("Warning: with this setting, every chunk of a structure gets its own random generator, so");
+		writer.comment("random parts of objects (like random blocks and spawn checks) come out differently than");
+		writer.comment("before. In an existing world, structures that were already partly spawned may then not");
+		writer.comment("match up at the chunks that are spawned after turning this on.");
+		writer.setting(WorldStandardValues.STRUCTURE_CACHE_ON_DISK, this.structureCacheOnDisk);
+
 	}
 
 	private void WriteCustomBiomes(SettingsWriter writer) throws IOException {
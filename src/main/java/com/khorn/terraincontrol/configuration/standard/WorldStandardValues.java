@@ -61,7 +61,11 @@ public class WorldStandardValues extends Settings {
 			STRONGHOLD_SPREAD = intSetting("StrongholdSpread", 3, 1, 1000), VILLAGE_DISTANCE = intSetting("VillageDistance", 32, 9, 10000),
 			VILLAGE_SIZE = intSetting("VillageSize", 0, 0, 10),
 			MINIMUM_DISTANCE_BETWEEN_RARE_BUILDINGS = intSetting("MinimumDistanceBetweenRareBuildings", 9, 1, 10000),
-			MAXIMUM_DISTANCE_BETWEEN_RARE_BUILDINGS = intSetting("MaximumDistanceBetweenRareBuildings", 32, 1, 10000);
+			MAXIMUM_DISTANCE_BETWEEN_RARE_BUILDINGS = intSetting("MaximumDistanceBetweenRareBuildings", 32, 1, 10000),
+			GENERATION_THREADS = intSetting("GenerationThreads", 0, 0, 64),
+			GENERATION_BUFFER_SIZE = intSetting("GenerationBufferSize", 64, 1, 4096),
+			BIOME_CACHE_SIZE = intSetting("BiomeCacheSize", 1024, 16, 65536),
+			STRUCTURE_CACHE_SIZE = intSetting("StructureCacheSize", 8192, 128, 1048576);
 
 	public static final Setting<Boolean> RIVERS_ENABLED = booleanSetting("RiversEnabled", true),
 			RANDOM_RIVERS = booleanSetting("RandomRivers", false), IMPROVED_RIVERS = booleanSetting("ImprovedRivers", false),
@@ -73,7 +77,10 @@ public class WorldStandardValues extends Settings {
 			STRONGHOLDS_ENABLED = booleanSetting("StrongholdsEnabled", true), VILLAGES_ENABLED = booleanSetting("VillagesEnabled", true),
 			MINESHAFTS_ENABLED = booleanSetting("MineshaftsEnabled", true),
 			RARE_BUILDINGS_ENABLED = booleanSetting("RareBuildingsEnabled", true),
-			POPULATE_USING_SAVED_BIOMES = booleanSetting("PopulateUsingSavedBiomes", false);
+			POPULATE_USING_SAVED_BIOMES = booleanSetting("PopulateUsingSavedBiomes", false),
+			PREFETCH_CHUNKS = booleanSetting("PrefetchChunks", true),
+			BIOME_CACHE_ON_DISK = booleanSetting("BiomeCacheOnDisk", false),
+			STRUCTURE_CACHE_ON_DISK = booleanSetting("StructureCacheOnDisk", false);
 
 	public static final Setting<LocalMaterialData> WATER_BLOCK = new MaterialSetting("WaterBlock", DefaultMaterial.STATIONARY_WATER),
 			ICE_BLOCK = new MaterialSetting("IceBlock", DefaultMaterial.ICE),
@@ -5,6 +5,9 @@ import com.khorn.terraincontrol.util.helpers.FileHelper;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Represents a collection of custom objects. Those objects can be loaded from
@@ -81,8 +84,8 @@ public class CustomObjectCollection implements Iterable<CustomObject> {
 	public void setFallback(CustomObjectCollection customObjects) { this.fallback = customObjects; }
 
 	/**
-	 * Loads all objects in a directory, and calls itself for any
-	 * subdirectories.
+	 * Loads all objects in a directory and its subdirectories. The files
+	 * are read in parallel.
 	 *
 	 * @param loaders   The custom object loaders.
 	 * @param directory The directory to load from.
@@ -92,32 +95,58 @@ public class CustomObjectCollection implements Iterable<CustomObject> {
 			throw new IllegalArgumentException("Given file is not a directory: " + directory.getAbsolutePath());
 		}
 
-		Map<String, CustomObject> objects = new HashMap<>();
-
-		// Load all objects from the files and folders under the directory
-		for (File file : directory.listFiles()) {
-			// Get name and extension
-			String fileName = file.getName();
-			int index = fileName.lastIndexOf('.');
-			// If we come across a directory descend into it without enabling
-			// the objects
-			if (file.isDirectory()) {
-				objects.putAll(loadObjectsRecursive(loaders, file));
-			}
-			else if (index != -1) {
-				String objectType = fileName.substring(index + 1, fileName.length());
-				String objectName = fileName.substring(0, index);
-
-				// Get the object
-				CustomObjectLoader loader = loaders.get(objectType.toLowerCase());
-				if (loader != null) {
-					CustomObject object = loader.loadFromFile(objectName, file);
-					objects.put(objectName.toLowerCase(), object);
+		return ForkJoinPool.commonPool().invoke(new LoadDirectoryTask(loaders, directory));
+	}
+
+	/**
+	 * Loads all objects in a directory, and forks itself for any
+	 * subdirectories. The objects of a directory are combined in the order
+	 * of the files, just like when they would be loaded one by one.
+	 */
+	private static class LoadDirectoryTask extends RecursiveTask<Map<String, CustomObject>> {
+		private static final long serialVersionUID = 1L;
+
+		private final Map<String, CustomObjectLoader> loaders;
+		private final File directory;
+
+		LoadDirectoryTask(Map<String, CustomObjectLoader> loaders, File directory) {
+			this.loaders = loaders;
+			this.directory = directory;
+		}
+
+		@Override
+		protected Map<String, CustomObject> compute() {
+			List<ForkJoinTask<Map<String, CustomObject>>> tasks = new ArrayList<>();
+
+			// Load all objects from the files and folders under the directory
+			for (File file : directory.listFiles()) {
+				// Get name and extension
+				String fileName = file.getName();
+				int index = fileName.lastIndexOf('.');
+				// If we come across a directory descend into it without enabling
+				// the objects
+				if (file.isDirectory()) {
+					tasks.add(new LoadDirectoryTask(loaders, file));
+				}
+				else if (index != -1) {
+					String objectType = fileName.substring(index + 1, fileName.length());
+					String objectName = fileName.substring(0, index);
+
+					// Get the object
+					CustomObjectLoader loader = loaders.get(objectType.toLowerCase());
+					if (loader != null) {
+						tasks.add(ForkJoinTask.adapt(() -> Collections.singletonMap(objectName.toLowerCase(),
+								loader.loadFromFile(objectName, file))));
+					}
 				}
 			}
-		}
 
-		return objects;
+			Map<String, CustomObject> objects = new HashMap<>();
+			for (ForkJoinTask<Map<String, CustomObject>> task : invokeAll(tasks)) {
+				objects.putAll(task.join());
+			}
+			return objects;
+		}
 	}
 
 	/**
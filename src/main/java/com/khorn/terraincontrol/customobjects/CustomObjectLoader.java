@@ -5,7 +5,8 @@ import java.io.File;
 public interface CustomObjectLoader {
 	/**
 	 * Returns a CustomObject with the given name and file. The object shouldn't yet
-	 * be initialisized.
+	 * be initialisized. Objects are loaded in parallel, so this method may be
+	 * called from multiple threads at once.
 	 *
 	 * @param objectName
 	 * @param file
@@ -14,6 +14,14 @@ import java.util.*;
  * Although it shouldn't be too slow to recalculate, a structure cache should be
  * kept.
  *
+ * <p>
+ * If the structure is saved in a {@link PersistentStructureCache}, every
+ * chunk uses its own random generator, so that the objects in a chunk are
+ * always spawned the same way, no matter in which order the chunks are
+ * populated or whether the server was restarted in between. Otherwise all
+ * chunks share one random generator, like they always did, so that existing
+ * worlds continue their structures the same way.
+ *
  */
 public class CustomObjectStructure {
 	protected final Random random;
@@ -22,6 +30,15 @@ public class CustomObjectStructure {
 	protected StructurePartSpawnHeight height;
 	protected Map<ChunkCoordinate, Set<CustomObjectCoordinate>> objectsToSpawn;
 	protected int maxBranchDepth;
+	private int objectCount;
+
+	/**
+	 * The chunks this structure was already spawned in. Guarded by itself.
+	 */
+	private final Set<ChunkCoordinate> spawnedChunks = new HashSet<>();
+	private PersistentStructureCache persistentCache;
+	private int startChunkX;
+	private int startChunkZ;
 
 	public CustomObjectStructure(LocalWorld world, CustomObjectCoordinate start) {
 		if (!(start.getObject() instanceof StructuredCustomObject)) {
@@ -40,6 +57,34 @@ public class CustomObjectStructure {
 		addBranches(start, 1);
 	}
 
+	/**
+	 * Restores a structure that was calculated before.
+	 *
+	 * @param world         The world.
+	 * @param objects       All objects of the structure, the start object
+	 *                      first.
+	 * @param spawnedChunks The chunks the structure was already spawned in.
+	 */
+	CustomObjectStructure(LocalWorld world, List<CustomObjectCoordinate> objects, Set<ChunkCoordinate> spawnedChunks) {
+		this.start = objects.get(0);
+		if (!(start.getObject() instanceof StructuredCustomObject)) {
+			throw new IllegalArgumentException("Start object has to be a structure!");
+		}
+
+		this.world = world;
+		this.height = start.getStructuredObject().getStructurePartSpawnHeight();
+		this.maxBranchDepth = start.getStructuredObject().getMaxBranchDepth();
+		random = RandomHelper.getRandomForCoords(start.getX(), start.getY(), start.getZ(), world.getSeed());
+
+		objectsToSpawn = new LinkedHashMap<>();
+		for (CustomObjectCoordinate coordObject : objects) {
+			addToSpawnList(coordObject);
+		}
+		for (ChunkCoordinate chunk : spawnedChunks) {
+			if (objectsToSpawn.containsKey(chunk)) { this.spawnedChunks.add(chunk); }
+		}
+	}
+
 	private void addBranches(CustomObjectCoordinate coordObject, int depth) {
 		for (Branch branch : coordObject.getStructuredObject().getBranches(coordObject.getRotation())) {
 			CustomObjectCoordinate childCoordObject = branch.toCustomObjectCoordinate(world, random, coordObject.getX(), coordObject.getY(),
@@ -70,15 +115,78 @@ public class CustomObjectStructure {
 			objectsInChunk = new LinkedHashSet<>();
 			objectsToSpawn.put(chunkCoordinate, objectsInChunk);
 		}
-		objectsInChunk.add(coordObject);
+		if (objectsInChunk.add(coordObject)) { objectCount++; }
+	}
+
+	/**
+	 * Gets the number of objects in this structure, including the start
+	 * object.
+	 *
+	 * @return The number of objects.
+	 */
+	public int getObjectCount() { return objectCount; }
+
+	/**
+	 * Gets all objects of this structure, the start object first.
+	 *
+	 * @return The objects.
+	 */
+	List<CustomObjectCoordinate> getObjects() {
+		List<CustomObjectCoordinate> objects = new ArrayList<>(objectCount);
+		for (Set<CustomObjectCoordinate> objectsInChunk : objectsToSpawn.values()) {
+			objects.addAll(objectsInChunk);
+		}
+		return objects;
+	}
+
+	/**
+	 * Saves the chunks this structure is spawned in from now on to the given
+	 * cache.
+	 *
+	 * @param persistentCache The cache.
+	 * @param chunkX          X position of the start chunk of the structure.
+	 * @param chunkZ          Z position of the start chunk of the structure.
+	 */
+	void setPersistentCache(PersistentStructureCache persistentCache, int chunkX, int chunkZ) {
+		this.persistentCache = persistentCache;
+		this.startChunkX = chunkX;
+		this.startChunkZ = chunkZ;
+	}
+
+	/**
+	 * Gets whether this structure was spawned in all of its chunks.
+	 *
+	 * @return True if the structure was spawned in all of its chunks.
+	 */
+	public boolean isComplete() {
+		synchronized (spawnedChunks) {
+			return spawnedChunks.size() == objectsToSpawn.size();
+		}
+	}
+
+	private long getSpawnSeed() {
+		return world.getSeed() ^ (start.getX() * 341873128712L + start.getY() * 4194304L + start.getZ() * 132897987541L);
 	}
 
 	public void spawnForChunk(ChunkCoordinate chunkCoordinate) {
 		Set<CustomObjectCoordinate> objectsInChunk = objectsToSpawn.get(chunkCoordinate);
-		if (objectsInChunk != null) {
+		if (objectsInChunk == null) { return; }
+		synchronized (spawnedChunks) {
+			if (!spawnedChunks.add(chunkCoordinate)) { return; }
+		}
+
+		if (persistentCache == null) {
 			for (CustomObjectCoordinate coordObject : objectsInChunk) {
 				coordObject.spawnWithChecks(world, height, random);
 			}
+			return;
+		}
+
+		Random chunkRandom = RandomHelper.getRandomForCoords(chunkCoordinate.getChunkX(), chunkCoordinate.getChunkZ(),
+				getSpawnSeed());
+		for (CustomObjectCoordinate coordObject : objectsInChunk) {
+			coordObject.spawnWithChecks(world, height, chunkRandom);
 		}
+		persistentCache.writeSpawned(startChunkX, startChunkZ, chunkCoordinate);
 	}
 }
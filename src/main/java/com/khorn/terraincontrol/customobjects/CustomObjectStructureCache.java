@@ -1,52 +1,180 @@
 package com.khorn.terraincontrol.customobjects;
 
 import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.customobjects.StructureCacheRegionFile.SavedStructure;
 import com.khorn.terraincontrol.generator.resource.CustomStructureGen;
-import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.helpers.RandomHelper;
 
-import java.util.HashMap;
-import java.util.Map;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import java.io.File;
 import java.util.Random;
 
 /**
  * Each world has a cache of unfinished structures. This class is the cache.
+ * It may be used by multiple populating threads at once.
+ *
+ * <p>
+ * Chunks without a structure start are remembered too, so that they don't
+ * have to be looked at again. Once the cache is full, the least recently
+ * used chunks are removed. Every chunk without a structure start counts as
+ * one, every structure as one plus its number of objects, see
+ * {@link WorldConfig#structureCacheSize}.
+ *
+ * <p>
+ * If {@link WorldConfig#structureCacheOnDisk} is enabled, new structures and
+ * the chunks they are spawned in are also saved in the world folder, see
+ * {@link PersistentStructureCache}. Chunks that are not in this cache are
+ * then looked up on disk first. Structures that are spawned completely are
+ * treated like chunks without a structure start.
  *
  */
 public class CustomObjectStructureCache {
-	private final Map<ChunkCoordinate, CustomObjectStructure> structureCache;
+	/**
+	 * Stored for chunks without a structure start.
+	 */
+	private static final Object NO_STRUCTURE = new Object();
+
+	/**
+	 * Structure starts, or {@link #NO_STRUCTURE}, by packed chunk
+	 * coordinate. The least recently used chunk comes first.
+	 */
+	private final Long2ObjectLinkedOpenHashMap<Object> structureCache;
 	private LocalWorld world;
+	private final File saveFolder;
+	private PersistentStructureCache persistentCache;
+	private int capacity;
+	private int size;
+	private long hits;
+	private long misses;
 
+	/**
+	 * Creates a cache that doesn't save any structures.
+	 *
+	 * @param world The world.
+	 */
 	public CustomObjectStructureCache(LocalWorld world) {
+		this(world, null);
+	}
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param world      The world.
+	 * @param saveFolder The folder the world is saved in, or null if
+	 *                   structures should not be saved.
+	 */
+	public CustomObjectStructureCache(LocalWorld world, File saveFolder) {
 		this.world = world;
-		this.structureCache = new HashMap<>();
+		this.saveFolder = saveFolder;
+		this.capacity = world.getConfigs().getWorldConfig().structureCacheSize;
+		this.persistentCache = PersistentStructureCache.open(world, saveFolder);
+		this.structureCache = new Long2ObjectLinkedOpenHashMap<>();
 	}
 
-	public void reload(LocalWorld world) {
+	public synchronized void reload(LocalWorld world) {
 		this.world = world;
+		this.capacity = world.getConfigs().getWorldConfig().structureCacheSize;
+		this.persistentCache = PersistentStructureCache.open(world, saveFolder);
 		structureCache.clear();
+		size = 0;
 	}
 
-	public CustomObjectStructure getStructureStart(int chunkX, int chunkZ) {
-		ChunkCoordinate coord = ChunkCoordinate.fromChunkCoords(chunkX, chunkZ);
-		CustomObjectStructure structureStart = structureCache.get(coord);
+	private static long packChunk(int chunkX, int chunkZ) {
+		return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+	}
+
+	private static int getSize(Object cached) {
+		return cached == NO_STRUCTURE ? 1 : 1 + ((CustomObjectStructure) cached).getObjectCount();
+	}
 
-		// Clear cache if needed
-		if (structureCache.size() > 400) { structureCache.clear(); }
+	public synchronized CustomObjectStructure getStructureStart(int chunkX, int chunkZ) {
+		long key = packChunk(chunkX, chunkZ);
+		Object cached = structureCache.getAndMoveToLast(key);
+		if (cached != null) {
+			hits++;
+			if (cached == NO_STRUCTURE) { return null; }
+			CustomObjectStructure structure = (CustomObjectStructure) cached;
+			if (structure.isComplete()) {
+				// Nothing left to spawn, so the objects can be forgotten
+				structureCache.put(key, NO_STRUCTURE);
+				size -= getSize(structure) - 1;
+				return null;
+			}
+			return structure;
+		}
+		misses++;
+
+		CustomObjectStructure structureStart = createStructureStart(chunkX, chunkZ);
+		cached = structureStart == null ? NO_STRUCTURE : structureStart;
+		structureCache.putAndMoveToLast(key, cached);
+		size += getSize(cached);
+
+		// Remove the least recently used chunks, but never the new one
+		while (size > capacity && structureCache.size() > 1) {
+			size -= getSize(structureCache.removeFirst());
+		}
+		return structureStart;
+	}
+
+	private CustomObjectStructure createStructureStart(int chunkX, int chunkZ) {
+		if (persistentCache != null) {
+			SavedStructure saved = persistentCache.read(chunkX, chunkZ);
+			if (saved != null) { return restoreStructureStart(saved, chunkX, chunkZ); }
+		}
 
-		if (structureStart != null) { return structureStart; }
-		// No structure found, create one
 		Random random = RandomHelper.getRandomForCoords(chunkX ^ 2, (chunkZ + 1) * 2, world.getSeed());
 		CustomStructureGen structureGen = world.getBiome(chunkX * 16 + 15, chunkZ * 16 + 15).getBiomeConfig().structureGen;
-		if (structureGen != null) {
-			CustomObjectCoordinate customObject = structureGen.getRandomObjectCoordinate(random, chunkX, chunkZ);
-			if (customObject != null) {
-				structureStart = new CustomObjectStructure(world, customObject);
-				structureCache.put(coord, structureStart);
-				return structureStart;
-			} // TODO Maybe also store that no structure was here?
+		if (structureGen == null) { return null; }
+
+		CustomObjectCoordinate customObject = structureGen.getRandomObjectCoordinate(random, chunkX, chunkZ);
+		if (customObject == null) { return null; }
+		CustomObjectStructure structure = new CustomObjectStructure(world, customObject);
+		if (persistentCache != null) {
+			persistentCache.writeStructure(chunkX, chunkZ, structure.getObjects());
+			structure.setPersistentCache(persistentCache, chunkX, chunkZ);
 		}
+		return structure;
+	}
 
-		return null;
+	private CustomObjectStructure restoreStructureStart(SavedStructure saved, int chunkX, int chunkZ) {
+		// Complete, or the start object no longer exists
+		if (saved.isComplete() || saved.objects.isEmpty()) { return null; }
+		if (!(saved.objects.get(0).getObject() instanceof StructuredCustomObject)) { return null; }
+
+		CustomObjectStructure structure = new CustomObjectStructure(world, saved.objects, saved.spawnedChunks);
+		structure.setPersistentCache(persistentCache, chunkX, chunkZ);
+		return structure;
 	}
+
+	/**
+	 * Gets how many times a chunk was found in the cache.
+	 *
+	 * @return The number of hits.
+	 */
+	public synchronized long getHits() { return hits; }
+
+	/**
+	 * Gets how many times a chunk was not found in the cache, so that it had
+	 * to be checked for a structure start.
+	 *
+	 * @return The number of misses.
+	 */
+	public synchronized long getMisses() { return misses; }
+
+	/**
+	 * Gets the used size of the cache, in the same unit as
+	 * {@link #getCapacity()}.
+	 *
+	 * @return The used size.
+	 */
+	public synchronized int getSize() { return size; }
+
+	/**
+	 * Gets the maximum size of the cache.
+	 *
+	 * @return The maximum size.
+	 */
+	public synchronized int getCapacity() { return capacity; }
 }
@@ -0,0 +1,147 @@
+package com.khorn.terraincontrol.customobjects;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.customobjects.StructureCacheRegionFile.SavedStructure;
+import com.khorn.terraincontrol.logging.LogMarker;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the layout of custom structures to disk, together with the chunks
+ * they were already spawned in. Structures then don't need to be calculated
+ * again after a restart, and they are spawned the same way as before the
+ * restart. The structures are stored in one {@link StructureCacheRegionFile}
+ * per 32x32 chunks, in the data folder of the world save.
+ *
+ * <p>
+ * Objects are saved by name, so changes to the objects only affect new
+ * structures. Saved objects that no longer exist are not spawned.
+ */
+class PersistentStructureCache {
+	private static final String DIRECTORY_NAME = "data" + File.separator + "TerrainControlStructures";
+	private static final String FILE_EXTENSION = ".tcstructures";
+	private static final int MAX_LOADED_REGIONS = 16;
+
+	private final File directory;
+	private final LocalWorld world;
+	private final Map<Long, StructureCacheRegionFile> regions;
+	private boolean failed = false;
+
+	private PersistentStructureCache(File directory, LocalWorld world) {
+		this.directory = directory;
+		this.world = world;
+		this.regions = new LinkedHashMap<Long, StructureCacheRegionFile>(MAX_LOADED_REGIONS, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, StructureCacheRegionFile> eldest) {
+				// Everything is written right away, so nothing is lost
+				return size() > MAX_LOADED_REGIONS;
+			}
+		};
+	}
+
+	/**
+	 * Opens the structure cache of the given world.
+	 *
+	 * @param world      The world.
+	 * @param saveFolder The folder the world is saved in, may be null.
+	 * @return The cache, or null if the cache is disabled or cannot be used.
+	 */
+	static PersistentStructureCache open(LocalWorld world, File saveFolder) {
+		if (saveFolder == null || !world.getConfigs().getWorldConfig().structureCacheOnDisk) { return null; }
+
+		File directory = new File(saveFolder, DIRECTORY_NAME);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			TerrainControl.log(LogMarker.WARN, "Cannot create folder {}, structures will not be saved", directory.getAbsolutePath());
+			return null;
+		}
+		return new PersistentStructureCache(directory, world);
+	}
+
+	private static long packChunk(int chunkX, int chunkZ) {
+		return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+	}
+
+	/**
+	 * Reads the saved structure that starts in the given chunk.
+	 *
+	 * @param chunkX X position of the start chunk.
+	 * @param chunkZ Z position of the start chunk.
+	 * @return The structure, or null if no structure is saved for the chunk.
+	 */
+	synchronized SavedStructure read(int chunkX, int chunkZ) {
+		StructureCacheRegionFile region = getRegion(chunkX, chunkZ);
+		if (region == null) { return null; }
+		return region.get(packChunk(chunkX, chunkZ));
+	}
+
+	/**
+	 * Saves a new structure.
+	 *
+	 * @param chunkX  X position of the start chunk.
+	 * @param chunkZ  Z position of the start chunk.
+	 * @param objects All objects of the structure, the start object first.
+	 */
+	synchronized void writeStructure(int chunkX, int chunkZ, List<CustomObjectCoordinate> objects) {
+		StructureCacheRegionFile region = getRegion(chunkX, chunkZ);
+		if (region == null) { return; }
+		try {
+			region.writeStructure(packChunk(chunkX, chunkZ), objects);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Saves that a structure was spawned in a chunk.
+	 *
+	 * @param chunkX X position of the start chunk.
+	 * @param chunkZ Z position of the start chunk.
+	 * @param chunk  The chunk the structure was spawned in.
+	 */
+	synchronized void writeSpawned(int chunkX, int chunkZ, ChunkCoordinate chunk) {
+		StructureCacheRegionFile region = getRegion(chunkX, chunkZ);
+		if (region == null) { return; }
+		try {
+			region.writeSpawned(packChunk(chunkX, chunkZ), chunk);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	private StructureCacheRegionFile getRegion(int chunkX, int chunkZ) {
+		if (failed) { return null; }
+
+		int regionX = chunkX >> StructureCacheRegionFile.REGION_CHUNKS_BITS;
+		int regionZ = chunkZ >> StructureCacheRegionFile.REGION_CHUNKS_BITS;
+		Long key = packChunk(regionX, regionZ);
+		StructureCacheRegionFile region = regions.get(key);
+		if (region == null) {
+			File file = new File(directory, "r." + regionX + "." + regionZ + FILE_EXTENSION);
+			try {
+				region = new StructureCacheRegionFile(file, world.getSeed(), world.getConfigs().getCustomObjects());
+			} catch (IOException e) {
+				fail(e);
+				return null;
+			}
+			regions.put(key, region);
+		}
+		return region;
+	}
+
+	private void fail(IOException e) {
+		// Don't keep trying for every chunk
+		failed = true;
+		regions.clear();
+		TerrainControl.log(LogMarker.WARN, "Cannot access the structure cache in {}, structures will no longer be saved",
+				directory.getAbsolutePath());
+		TerrainControl.printStackTrace(LogMarker.WARN, e);
+	}
+}
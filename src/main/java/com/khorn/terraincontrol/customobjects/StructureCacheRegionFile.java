@@ -0,0 +1,290 @@
+package com.khorn.terraincontrol.customobjects;
+
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.Rotation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * File holding the layouts of the custom structures that start in a region of
+ * 32x32 chunks, together with the chunks each structure was already spawned
+ * in.
+ *
+ * <p>
+ * The file is a list of records that is only ever appended to: a record for
+ * every new structure and for every chunk a structure was spawned in. This
+ * way nothing is lost when the server stops without warning. When the file
+ * is loaded again, it is rewritten if it contains structures that were
+ * spawned completely, which are then only remembered by their start chunk.
+ *
+ * <p>
+ * The file starts with a header holding the seed. If that doesn't match the
+ * current world, the file is cleared.
+ *
+ * <p>
+ * This class is not thread safe, {@link PersistentStructureCache} takes care
+ * of that.
+ *
+ * @see PersistentStructureCache
+ */
+class StructureCacheRegionFile {
+	static final int REGION_CHUNKS_BITS = 5;
+
+	private static final int MAGIC = 0x5443534C; // "TCSL"
+	private static final int VERSION = 1;
+
+	private static final byte RECORD_STRUCTURE = 1;
+	private static final byte RECORD_SPAWNED = 2;
+	private static final byte RECORD_COMPLETE = 3;
+
+	/**
+	 * A structure as saved in the file.
+	 */
+	static class SavedStructure {
+		/**
+		 * All objects of the structure, the start object first, or null if
+		 * the structure has been spawned completely.
+		 */
+		List<CustomObjectCoordinate> objects;
+		/**
+		 * The chunks the structure was already spawned in.
+		 */
+		final Set<ChunkCoordinate> spawnedChunks = new HashSet<>();
+
+		SavedStructure(List<CustomObjectCoordinate> objects) {
+			this.objects = objects;
+		}
+
+		boolean isComplete() { return objects == null; }
+
+		/**
+		 * Forgets the objects if all chunks of the structure are spawned.
+		 *
+		 * @return True if the structure is now complete.
+		 */
+		boolean updateComplete() {
+			if (objects == null) { return true; }
+			for (CustomObjectCoordinate object : objects) {
+				if (!spawnedChunks.contains(object.getPopulatingChunk())) { return false; }
+			}
+			objects = null;
+			spawnedChunks.clear();
+			return true;
+		}
+	}
+
+	private final File file;
+	private final long seed;
+	private final Map<Long, SavedStructure> structures = new LinkedHashMap<>();
+
+	/**
+	 * Loads the region file. The file is created once something is written
+	 * to it.
+	 *
+	 * @param file          The file.
+	 * @param seed          Seed of the world.
+	 * @param customObjects The objects of the world, used to look up the
+	 *                      saved objects by name. Saved objects that no
+	 *                      longer exist are left out.
+	 * @throws IOException If the file cannot be read or rewritten.
+	 */
+	StructureCacheRegionFile(File file, long seed, CustomObjectCollection customObjects) throws IOException {
+		this.file = file;
+		this.seed = seed;
+		if (file.exists() && !load(customObjects)) { rewrite(); }
+	}
+
+	/**
+	 * Reads all records of the file.
+	 *
+	 * @return False if the file should be rewritten, because it is damaged,
+	 *         outdated or contains complete structures.
+	 */
+	private boolean load(CustomObjectCollection customObjects) throws IOException {
+		boolean compact = true;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != seed) {
+				// Generated with another seed or version
+				return false;
+			}
+			int recordType;
+			while ((recordType = in.read()) != -1) {
+				long startKey = in.readLong();
+				if (recordType == RECORD_STRUCTURE) {
+					structures.put(startKey, new SavedStructure(readObjects(in, customObjects)));
+				}
+				else if (recordType == RECORD_SPAWNED) {
+					ChunkCoordinate chunk = ChunkCoordinate.fromChunkCoords(in.readInt(), in.readInt());
+					SavedStructure structure = structures.get(startKey);
+					if (structure != null && !structure.isComplete()) { structure.spawnedChunks.add(chunk); }
+				}
+				else if (recordType == RECORD_COMPLETE) {
+					structures.put(startKey, new SavedStructure(null));
+				}
+				else {
+					return false;
+				}
+			}
+		} catch (EOFException e) {
+			// The last record was not written completely
+			compact = false;
+		}
+
+		for (SavedStructure structure : structures.values()) {
+			if (!structure.isComplete() && structure.updateComplete()) { compact = false; }
+		}
+		return compact;
+	}
+
+	private static List<CustomObjectCoordinate> readObjects(DataInputStream in, CustomObjectCollection customObjects) throws IOException {
+		CustomObject[] objectsByIndex = new CustomObject[in.readUnsignedShort()];
+		for (int i = 0; i < objectsByIndex.length; i++) {
+			objectsByIndex[i] = customObjects.getObjectByName(in.readUTF());
+		}
+
+		int objectCount = in.readInt();
+		List<CustomObjectCoordinate> objects = new ArrayList<>(objectCount);
+		for (int i = 0; i < objectCount; i++) {
+			CustomObject object = objectsByIndex[in.readUnsignedShort()];
+			Rotation rotation = Rotation.getRotation(in.readByte());
+			int x = in.readInt();
+			int y = in.readInt();
+			int z = in.readInt();
+			if (object != null) { objects.add(new CustomObjectCoordinate(object, rotation, x, y, z)); }
+		}
+		return objects;
+	}
+
+	/**
+	 * Replaces the file with the header and the structures that are
+	 * currently loaded.
+	 */
+	private void rewrite() throws IOException {
+		File newFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newFile)))) {
+			writeHeader(out);
+			for (Map.Entry<Long, SavedStructure> entry : structures.entrySet()) {
+				SavedStructure structure = entry.getValue();
+				if (structure.isComplete()) {
+					out.writeByte(RECORD_COMPLETE);
+					out.writeLong(entry.getKey());
+					continue;
+				}
+				writeStructureRecord(out, entry.getKey(), structure.objects);
+				for (ChunkCoordinate chunk : structure.spawnedChunks) {
+					writeSpawnedRecord(out, entry.getKey(), chunk);
+				}
+			}
+		}
+		Files.move(newFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void writeHeader(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(seed);
+	}
+
+	private static void writeStructureRecord(DataOutputStream out, long startKey, List<CustomObjectCoordinate> objects) throws IOException {
+		out.writeByte(RECORD_STRUCTURE);
+		out.writeLong(startKey);
+
+		// Every name is only written once
+		Map<String, Integer> nameIndices = new HashMap<>();
+		List<String> names = new ArrayList<>();
+		for (CustomObjectCoordinate object : objects) {
+			String name = object.getObject().getName();
+			if (!nameIndices.containsKey(name)) {
+				nameIndices.put(name, names.size());
+				names.add(name);
+			}
+		}
+		out.writeShort(names.size());
+		for (String name : names) {
+			out.writeUTF(name);
+		}
+
+		out.writeInt(objects.size());
+		for (CustomObjectCoordinate object : objects) {
+			out.writeShort(nameIndices.get(object.getObject().getName()));
+			out.writeByte(object.getRotation().getRotationId());
+			out.writeInt(object.getX());
+			out.writeInt(object.getY());
+			out.writeInt(object.getZ());
+		}
+	}
+
+	private static void writeSpawnedRecord(DataOutputStream out, long startKey, ChunkCoordinate chunk) throws IOException {
+		out.writeByte(RECORD_SPAWNED);
+		out.writeLong(startKey);
+		out.writeInt(chunk.getChunkX());
+		out.writeInt(chunk.getChunkZ());
+	}
+
+	/**
+	 * Opens the file for appending records, creating it if needed.
+	 */
+	private DataOutputStream openForAppend() throws IOException {
+		boolean newFile = file.length() == 0;
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		if (newFile) { writeHeader(out); }
+		return out;
+	}
+
+	/**
+	 * Gets the saved structure that starts in the given chunk.
+	 *
+	 * @param startKey The packed position of the start chunk.
+	 * @return The structure, or null if no structure is saved for the chunk.
+	 */
+	SavedStructure get(long startKey) {
+		return structures.get(startKey);
+	}
+
+	/**
+	 * Saves a new structure.
+	 *
+	 * @param startKey The packed position of the start chunk.
+	 * @param objects  All objects of the structure, the start object first.
+	 * @throws IOException If writing fails.
+	 */
+	void writeStructure(long startKey, List<CustomObjectCoordinate> objects) throws IOException {
+		structures.put(startKey, new SavedStructure(objects));
+		try (DataOutputStream out = openForAppend()) {
+			writeStructureRecord(out, startKey, objects);
+		}
+	}
+
+	/**
+	 * Saves that a structure was spawned in a chunk.
+	 *
+	 * @param startKey The packed position of the start chunk.
+	 * @param chunk    The chunk the structure was spawned in.
+	 * @throws IOException If writing fails.
+	 */
+	void writeSpawned(long startKey, ChunkCoordinate chunk) throws IOException {
+		SavedStructure structure = structures.get(startKey);
+		if (structure == null || structure.isComplete() || !structure.spawnedChunks.add(chunk)) { return; }
+		structure.updateComplete();
+		try (DataOutputStream out = openForAppend()) {
+			writeSpawnedRecord(out, startKey, chunk);
+		}
+	}
+}
@@ -15,16 +15,28 @@ import com.khorn.terraincontrol.util.Rotation;
 import com.khorn.terraincontrol.util.helpers.MathHelper;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Random;
 
 public class BO3 implements StructuredCustomObject {
-	private BO3Config settings;
+	private volatile BO3Config settings;
 	private final String name;
 	private final File file;
 
 	/**
-	 * Creates a BO3 from a file.
+	 * The contents of the file, until onEnable is called. Guarded by this.
+	 */
+	private SettingsReader reader;
+	/**
+	 * The settings without the blocks, checks and branches, until those are
+	 * read. Guarded by this.
+	 */
+	private BO3Config unfinishedSettings;
+
+	/**
+	 * Creates a BO3 from a file. The file is read right away, but the
+	 * settings are only read in {@link #onEnable(Map)}.
 	 *
 	 * @param name
 	 * @param file
@@ -32,11 +44,17 @@ public class BO3 implements StructuredCustomObject {
 	public BO3(String name, File file) {
 		this.name = name;
 		this.file = file;
+		this.reader = new FileSettingsReader(name, file);
 	}
 
 	@Override
-	public void onEnable(Map<String, CustomObject> otherObjectsInDirectory) {
-		this.settings = new BO3Config(new FileSettingsReader(name, file), otherObjectsInDirectory);
+	public synchronized void onEnable(Map<String, CustomObject> otherObjectsInDirectory) {
+		if (reader == null) { return; }
+		// Read the settings now, so that mistakes are reported while loading.
+		// Reading the blocks and branches is expensive, and most objects are
+		// never used in a world, so this is done in getSettings()
+		this.unfinishedSettings = new BO3Config(reader, otherObjectsInDirectory, false);
+		this.reader = null;
 	}
 
 	/**
@@ -47,7 +65,7 @@ public class BO3 implements StructuredCustomObject {
 	 * @param extraSettings The settings to override
 	 */
 	public BO3(BO3 oldObject, SettingsReader extraSettings) {
-		this.settings = new BO3Config(extraSettings, oldObject.settings.otherObjectsInDirectory);
+		this.settings = new BO3Config(extraSettings, oldObject.getSettings().otherObjectsInDirectory);
 		FileSettingsWriter.writeToFile(this.settings, this.settings.settingsMode);
 		this.name = settings.getName();
 		this.file = settings.getFile();
@@ -56,11 +74,31 @@ public class BO3 implements StructuredCustomObject {
 	@Override
 	public String getName() { return name; }
 
-	public BO3Config getSettings() { return settings; }
+	/**
+	 * Gets the settings of this object, reading them first if that hasn't
+	 * happened yet.
+	 *
+	 * @return The settings.
+	 */
+	public BO3Config getSettings() {
+		BO3Config settings = this.settings;
+		if (settings == null) { settings = readSettings(); }
+		return settings;
+	}
+
+	private synchronized BO3Config readSettings() {
+		if (settings == null) {
+			if (unfinishedSettings == null) { onEnable(Collections.<String, CustomObject> emptyMap()); }
+			unfinishedSettings.readResources();
+			settings = unfinishedSettings;
+			unfinishedSettings = null;
+		}
+		return settings;
+	}
 
 	@Override
 	public boolean canSpawnAsTree() {
-		return settings.tree;
+		return getSettings().tree;
 	}
 
 	@Override
@@ -70,6 +108,7 @@ public class BO3 implements StructuredCustomObject {
 
 	@Override
 	public boolean canSpawnAt(LocalWorld world, Rotation rotation, int x, int y, int z) {
+		BO3Config settings = getSettings();
 		BlockFunction[] blocks = settings.blocks[rotation.getRotationId()];
 		BO3Check[] checks = settings.bo3Checks[rotation.getRotationId()];
 
@@ -91,7 +130,7 @@ public class BO3 implements StructuredCustomObject {
 				// Cannot spawn BO3, part of world is not loaded
 				return false;
 			}
-			if (!settings.sourceBlocks.contains(world.getMaterial(x + block.x, y + block.y, z + block.z))) { blocksOutsideSourceBlock++; }
+			if (!settings.sourceBlocks.contains(world.getPackedMaterial(x + block.x, y + block.y, z + block.z))) { blocksOutsideSourceBlock++; }
 		}
 		if ((((double) blocksOutsideSourceBlock / (double) blocks.length) * 100.0) > settings.maxPercentageOutsideSourceBlock) {
 			// Too many blocks outside source block
@@ -110,17 +149,18 @@ public class BO3 implements StructuredCustomObject {
 
 	@Override
 	public boolean canRotateRandomly() {
-		return settings.rotateRandomly;
+		return getSettings().rotateRandomly;
 	}
 
 	@Override
 	public boolean spawnForced(LocalWorld world, Random random, Rotation rotation, int x, int y, int z) {
+		BO3Config settings = getSettings();
 		BlockFunction[] blocks = settings.blocks[rotation.getRotationId()];
 
 		// Spawn
 		for (BlockFunction block : blocks) {
 			if (settings.outsideSourceBlock == OutsideSourceBlock.placeAnyway
-					|| settings.sourceBlocks.contains(world.getMaterial(x + block.x, y + block.y, z + block.z))) {
+					|| settings.sourceBlocks.contains(world.getPackedMaterial(x + block.x, y + block.y, z + block.z))) {
 				block.spawn(world, random, x + block.x, y + block.y, z + block.z);
 			}
 		}
@@ -128,6 +168,7 @@ public class BO3 implements StructuredCustomObject {
 	}
 
 	protected boolean spawn(LocalWorld world, Random random, int x, int z) {
+		BO3Config settings = getSettings();
 		Rotation rotation = settings.rotateRandomly ? Rotation.getRandomRotation(random) : Rotation.NORTH;
 		int y = 0;
 		if (settings.spawnHeight == SpawnHeightEnum.randomY) {
@@ -141,12 +182,13 @@ public class BO3 implements StructuredCustomObject {
 
 	@Override
 	public boolean spawnAsTree(LocalWorld world, Random random, int x, int z) {
-		if (settings.tree) { return spawn(world, random, x, z); }
+		if (getSettings().tree) { return spawn(world, random, x, z); }
 		return false;
 	}
 
 	@Override
 	public boolean process(LocalWorld world, Random random, ChunkCoordinate chunkCoord) {
+		BO3Config settings = getSettings();
 		boolean atLeastOneObjectHasSpawned = false;
 
 		int chunkMiddleX = chunkCoord.getBlockXCenter();
@@ -164,12 +206,13 @@ public class BO3 implements StructuredCustomObject {
 
 	@Override
 	public CustomObject applySettings(SettingsReader extraSettings) {
-		extraSettings.setFallbackReader(this.settings.reader);
+		extraSettings.setFallbackReader(getSettings().reader);
 		return new BO3(this, extraSettings);
 	}
 
 	@Override
 	public boolean hasPreferenceToSpawnIn(LocalBiome biome) {
+		BO3Config settings = getSettings();
 		if (settings.excludedBiomes.contains("All") || settings.excludedBiomes.contains("all")
 				|| settings.excludedBiomes.contains(biome.getName())) {
 			return false;
@@ -179,16 +222,17 @@ public class BO3 implements StructuredCustomObject {
 
 	@Override
 	public boolean hasBranches() {
-		return settings.branches[0].length != 0;
+		return getSettings().branches[0].length != 0;
 	}
 
 	@Override
 	public Branch[] getBranches(Rotation rotation) {
-		return settings.branches[rotation.getRotationId()];
+		return getSettings().branches[rotation.getRotationId()];
 	}
 
 	@Override
 	public CustomObjectCoordinate makeCustomObjectCoordinate(Random random, int chunkX, int chunkZ) {
+		BO3Config settings = getSettings();
 		if (settings.rarity > random.nextDouble() * 100.0) {
 			Rotation rotation = settings.rotateRandomly ? Rotation.getRandomRotation(random) : Rotation.NORTH;
 			int height = MathHelper.getRandomNumberInRange(random, settings.minHeight, settings.maxHeight);
@@ -199,13 +243,13 @@ public class BO3 implements StructuredCustomObject {
 	}
 
 	@Override
-	public int getMaxBranchDepth() { return settings.maxBranchDepth; }
+	public int getMaxBranchDepth() { return getSettings().maxBranchDepth; }
 
 	@Override
-	public StructurePartSpawnHeight getStructurePartSpawnHeight() { return this.settings.spawnHeight.toStructurePartSpawnHeight(); }
+	public StructurePartSpawnHeight getStructurePartSpawnHeight() { return getSettings().spawnHeight.toStructurePartSpawnHeight(); }
 
 	@Override
 	public BoundingBox getBoundingBox(Rotation rotation) {
-		return this.settings.boundingBoxes[rotation.getRotationId()];
+		return getSettings().boundingBoxes[rotation.getRotationId()];
 	}
 }
@@ -54,13 +54,27 @@ public class BO3Config extends ConfigFile {
 	 * @param file The file of the BO3.
 	 */
 	public BO3Config(SettingsReader reader, Map<String, CustomObject> otherObjectsInDirectory) {
+		this(reader, otherObjectsInDirectory, true);
+	}
+
+	/**
+	 * Creates a BO3Config from a file, optionally without reading the
+	 * blocks, checks and branches yet. In that case {@link #readResources()}
+	 * must be called before the object is spawned.
+	 *
+	 * @param reader                  The settings of the BO3.
+	 * @param otherObjectsInDirectory The objects the branches can refer to.
+	 * @param readResources           Whether the blocks, checks and branches
+	 *                                are read right away.
+	 */
+	BO3Config(SettingsReader reader, Map<String, CustomObject> otherObjectsInDirectory, boolean readResources) {
 		super(reader);
 
 		this.otherObjectsInDirectory = otherObjectsInDirectory;
 
 		readConfigSettings();
 		correctSettings();
-		rotateBlocksAndChecks();
+		if (readResources) { readResources(); }
 	}
 
 	@Override
@@ -151,12 +165,12 @@ public class BO3Config extends ConfigFile {
 		sourceBlocks = readSettings(BO3Settings.SOURCE_BLOCKS);
 		maxPercentageOutsideSourceBlock = readSettings(BO3Settings.MAX_PERCENTAGE_OUTSIDE_SOURCE_BLOCK);
 		outsideSourceBlock = readSettings(BO3Settings.OUTSIDE_SOURCE_BLOCK);
-
-		// Read the resources
-		readResources();
 	}
 
-	private void readResources() {
+	/**
+	 * Reads the blocks, checks and branches, and rotates them.
+	 */
+	void readResources() {
 		BoundingBox box = BoundingBox.newEmptyBox();
 		List<BlockFunction> tempBlocksList = new ArrayList<>();
 		List<BO3Check> tempChecksList = new ArrayList<>();
@@ -184,6 +198,8 @@ public class BO3Config extends ConfigFile {
 		bo3Checks[0] = tempChecksList.toArray(new BO3Check[0]);
 		branches[0] = tempBranchesList.toArray(new BranchFunction[0]);
 		boundingBoxes[0] = box;
+
+		rotateBlocksAndChecks();
 	}
 
 	public void writeResources(SettingsWriter writer) throws IOException {
@@ -7,16 +7,17 @@ import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.NamedBinaryTag;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BO3Loader implements CustomObjectLoader {
 
 	/**
 	 * A list of already loaded meta Tags. The path is the key, a NBT Tag is
-	 * the value.
+	 * the value. BO3s read their settings when they are first used, which
+	 * can happen on multiple threads at once.
 	 */
-	private static final Map<String, NamedBinaryTag> loadedTags = new HashMap<>();
+	private static final Map<String, NamedBinaryTag> loadedTags = new ConcurrentHashMap<>();
 
 	public BO3Loader() {
 		// Register BO3 ConfigFunctions
@@ -10,6 +10,7 @@ import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 import cpw.mods.fml.common.FMLCommonHandler;
 import cpw.mods.fml.common.Loader;
+import net.minecraft.world.World;
 
 import java.io.File;
 import java.lang.reflect.Field;
@@ -44,6 +45,42 @@ public class ForgeEngine extends TerrainControlEngine {
 	 */
 	public LocalWorld getWorld() { return worldType.worldTC; }
 
+	/**
+	 * Gets the world loaded by Terrain Control, if it is the given world.
+	 *
+	 * @param world The Minecraft world.
+	 * @return The world, or null if Terrain Control didn't load the given
+	 *         world.
+	 */
+	public ForgeWorld getWorld(World world) {
+		ForgeWorld worldTC = worldType.worldTC;
+		if (worldTC == null || worldTC.getWorld() != world) { return null; }
+		return worldTC;
+	}
+
+	/**
+	 * Unloads the world loaded by Terrain Control, if it is the given
+	 * world.
+	 *
+	 * @param world The Minecraft world that is being unloaded.
+	 */
+	public void onWorldUnload(World world) {
+		ForgeWorld worldTC = getWorld(world);
+		if (worldTC == null) { return; }
+		worldTC.unload();
+		worldType.worldTC = null;
+	}
+
+	@Override
+	public void onShutdown() {
+		ForgeWorld worldTC = worldType.worldTC;
+		if (worldTC != null) {
+			worldTC.unload();
+			worldType.worldTC = null;
+		}
+		super.onShutdown();
+	}
+
 	@Override
 	public File getTCDataFolder() {
 		File dataFolder;
@@ -107,4 +144,9 @@ public class ForgeEngine extends TerrainControlEngine {
 		return ForgeMaterialData.ofDefaultMaterial(defaultMaterial, blockData);
 	}
 
+	@Override
+	public LocalMaterialData toLocalMaterialData(int blockId, int blockData) {
+		return ForgeMaterialData.ofIds(blockId, blockData);
+	}
+
 }
@@ -27,6 +27,12 @@ public class ForgeMaterialData implements LocalMaterialData {
 	 * @return The {@code BukkitMateialData} instance.
 	 */
 	public static ForgeMaterialData ofIds(int id, int data) {
+		if (id >= 0 && id < MAX_BLOCK_IDS && data >= 0 && data < MAX_DATA) {
+			// Skip the block registry if possible, this is called for every
+			// block lookup in a chunk buffer
+			ForgeMaterialData cached = CACHE[id * MAX_DATA + data];
+			if (cached != null) { return cached; }
+		}
 		return ofMinecraftBlock(Block.getBlockById(id), data);
 	}
 
@@ -61,10 +67,12 @@ public class ForgeMaterialData implements LocalMaterialData {
 	}
 
 	private final Block block;
+	private final int blockId;
 	private final byte data;
 
 	private ForgeMaterialData(Block block, int data) {
 		this.block = block;
+		this.blockId = Block.getIdFromBlock(block);
 		this.data = (byte) data;
 	}
 
@@ -87,7 +95,7 @@ public class ForgeMaterialData implements LocalMaterialData {
 	public byte getBlockData() { return data; }
 
 	@Override
-	public int getBlockId() { return Block.getIdFromBlock(block); }
+	public int getBlockId() { return blockId; }
 
 	@Override
 	public String getName() {
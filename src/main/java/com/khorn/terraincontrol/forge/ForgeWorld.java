@@ -1,11 +1,15 @@
 package com.khorn.terraincontrol.forge;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import com.khorn.terraincontrol.BiomeIds;
 import com.khorn.terraincontrol.LocalBiome;
@@ -62,6 +66,7 @@ public class ForgeWorld implements LocalWorld {
 	private World world;
 	private WorldSettings settings;
 	private CustomObjectStructureCache structureCache;
+	private File saveFolder;
 	private final String name;
 	private long seed;
 	private BiomeGenerator biomeGenerator;
@@ -72,6 +77,12 @@ public class ForgeWorld implements LocalWorld {
 	private static final int MAX_SAVED_BIOMES_COUNT = 255;
 	private static final int STANDARD_WORLD_HEIGHT = 128;
 
+	/**
+	 * Tag in the saved chunk data, set for chunks that got their
+	 * SurfaceAndGroundControl blocks during generation.
+	 */
+	private static final String COMPLEX_SURFACE_TAG = "TerrainControlComplexSurface";
+
 	private static final BiomeGenBase[] biomesToRestore = new BiomeGenBase[BiomeGenBase.getBiomeGenArray().length];
 
 	private final HashMap<String, LocalBiome> biomeNames = new HashMap<>();
@@ -101,6 +112,13 @@ public class ForgeWorld implements LocalWorld {
 	private WorldGenTaiga2 taigaTree2;
 
 	private Chunk[] chunkCache;
+	private final PopulationBlockBatch populationBlockBatch = new PopulationBlockBatch();
+	/**
+	 * Loaded chunks that were generated by an older version, see
+	 * {@link #isComplexSurfaceGenerated(ChunkCoordinate)}. Unloaded chunks
+	 * are removed by the garbage collector.
+	 */
+	private final Set<Chunk> chunksWithoutComplexSurface = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
 	public static void restoreBiomes() {
 		BiomeGenBase[] biomeList = BiomeGenBase.getBiomeGenArray();
@@ -272,6 +290,32 @@ public class ForgeWorld implements LocalWorld {
 		this.replaceBlocks(cache[3], 0, 0);
 	}
 
+	@Override
+	public boolean isComplexSurfaceGenerated(ChunkCoordinate chunkCoord) {
+		Chunk chunk = this.world.getChunkFromChunkCoords(chunkCoord.getChunkX(), chunkCoord.getChunkZ());
+		return !this.chunksWithoutComplexSurface.contains(chunk);
+	}
+
+	/**
+	 * Called when a chunk of this world is loaded from the region files.
+	 *
+	 * @param chunk The chunk.
+	 * @param data  The saved data of the chunk.
+	 */
+	public void onChunkLoad(Chunk chunk, NBTTagCompound data) {
+		if (!data.getBoolean(COMPLEX_SURFACE_TAG)) { this.chunksWithoutComplexSurface.add(chunk); }
+	}
+
+	/**
+	 * Called when a chunk of this world is saved to the region files.
+	 *
+	 * @param chunk The chunk.
+	 * @param data  The data that is saved, may be modified.
+	 */
+	public void onChunkSave(Chunk chunk, NBTTagCompound data) {
+		if (!this.chunksWithoutComplexSurface.contains(chunk)) { data.setBoolean(COMPLEX_SURFACE_TAG, true); }
+	}
+
 	private void replaceBlocks(Chunk rawChunk, int startXInChunk, int startZInChunk) {
 		int endXInChunk = startXInChunk + 8;
 		int endZInChunk = startZInChunk + 8;
@@ -280,29 +324,30 @@ public class ForgeWorld implements LocalWorld {
 
 		ExtendedBlockStorage[] sectionsArray = rawChunk.getBlockStorageArray();
 
-		for (ExtendedBlockStorage section : sectionsArray) {
-			if (section == null) { continue; }
-
-			for (int sectionX = startXInChunk; sectionX < endXInChunk; sectionX++) {
-				for (int sectionZ = startZInChunk; sectionZ < endZInChunk; sectionZ++) {
-					LocalBiome biome = this.getBiome(worldStartX + sectionX, worldStartZ + sectionZ);
-					if (biome != null && biome.getBiomeConfig().replacedBlocks.hasReplaceSettings()) {
-						LocalMaterialData[][] replaceArray = biome.getBiomeConfig().replacedBlocks.compiledInstructions;
-						for (int sectionY = 0; sectionY < 16; sectionY++) {
-							Block block = section.getBlockByExtId(sectionX, sectionY, sectionZ);
-							int blockId = Block.getIdFromBlock(block);
-							if (replaceArray[blockId] == null) { continue; }
-
-							int y = section.getYLocation() + sectionY;
-							if (y >= replaceArray[blockId].length) { break; }
-
-							ForgeMaterialData replaceTo = (ForgeMaterialData) replaceArray[blockId][y];
-							if (replaceTo == null || replaceTo.getBlockId() == blockId) { continue; }
-
-							// section.setBlock(....)
-							section.func_150818_a(sectionX, sectionY, sectionZ, replaceTo.internalBlock());
-							section.setExtBlockMetadata(sectionX, sectionY, sectionZ, replaceTo.getBlockData());
-						}
+		for (int sectionX = startXInChunk; sectionX < endXInChunk; sectionX++) {
+			for (int sectionZ = startZInChunk; sectionZ < endZInChunk; sectionZ++) {
+				// Look up the biome once per column instead of once per section
+				LocalBiome biome = this.getBiome(worldStartX + sectionX, worldStartZ + sectionZ);
+				if (biome == null || !biome.getBiomeConfig().replacedBlocks.hasReplaceSettings()) { continue; }
+
+				LocalMaterialData[][] replaceArray = biome.getBiomeConfig().replacedBlocks.compiledInstructions;
+				for (ExtendedBlockStorage section : sectionsArray) {
+					if (section == null) { continue; }
+
+					for (int sectionY = 0; sectionY < 16; sectionY++) {
+						Block block = section.getBlockByExtId(sectionX, sectionY, sectionZ);
+						int blockId = Block.getIdFromBlock(block);
+						if (replaceArray[blockId] == null) { continue; }
+
+						int y = section.getYLocation() + sectionY;
+						if (y >= replaceArray[blockId].length) { break; }
+
+						ForgeMaterialData replaceTo = (ForgeMaterialData) replaceArray[blockId][y];
+						if (replaceTo == null || replaceTo.getBlockId() == blockId) { continue; }
+
+						// section.setBlock(....)
+						section.func_150818_a(sectionX, sectionY, sectionZ, replaceTo.internalBlock());
+						section.setExtBlockMetadata(sectionX, sectionY, sectionZ, replaceTo.getBlockData());
 					}
 				}
 			}
@@ -384,6 +429,17 @@ public class ForgeWorld implements LocalWorld {
 		return ForgeMaterialData.ofMinecraftBlock(chunk.getBlock(x, y, z), chunk.getBlockMetadata(x, y, z));
 	}
 
+	@Override
+	public int getPackedMaterial(int x, int y, int z) {
+		Chunk chunk = this.getChunk(x, y, z);
+		if (chunk == null) { return 0; }
+
+		z &= 0xF;
+		x &= 0xF;
+
+		return Block.getIdFromBlock(chunk.getBlock(x, y, z)) << 4 | chunk.getBlockMetadata(x, y, z);
+	}
+
 	@Override
 	public void setBlock(int x, int y, int z, LocalMaterialData material) {
 		/*
@@ -401,13 +457,22 @@ public class ForgeWorld implements LocalWorld {
 			return;
 		}
 
+		Block oldBlock = chunk.getBlock(x & 15, y, z & 15);
+		Block newBlock = ((ForgeMaterialData) material).internalBlock();
+
 		// Temporarily make remote, so that torches etc. don't pop off
 		boolean oldStatic = this.world.isRemote;
 		this.world.isRemote = true;
 		// chunk.setBlockAndMetadata(...)
-		chunk.func_150807_a(x & 15, y, z & 15, ((ForgeMaterialData) material).internalBlock(), material.getBlockData());
+		chunk.func_150807_a(x & 15, y, z & 15, newBlock, material.getBlockData());
 		this.world.isRemote = oldStatic;
 
+		if (this.chunkCache != null) {
+			// Relight and update players at the end of population
+			this.populationBlockBatch.blockChanged(x, y, z, oldBlock, newBlock);
+			return;
+		}
+
 		// Relight and update players
 		this.world.func_147451_t(x, y, z); // world.updateAllLightTypes
 		if (!this.world.isRemote) { this.world.markBlockForUpdate(x, y, z); }
@@ -439,6 +504,7 @@ public class ForgeWorld implements LocalWorld {
 
 		// Initialize cache
 		this.chunkCache = this.loadFourChunks(chunkCoord);
+
 	}
 
 	private Chunk[] getChunkCache(ChunkCoordinate topLeft) {
@@ -477,11 +543,14 @@ public class ForgeWorld implements LocalWorld {
 					+ " another mod that is poking in unloaded chunks. Set" + " PopulationBoundsCheck to false in the WorldConfig to"
 					+ " disable this error.");
 		}
+		this.populationBlockBatch.flush(this.world);
 		this.chunkCache = null;
 	}
 
 	@Override
 	public int getLightLevel(int x, int y, int z) {
+		// Blocks placed earlier in this population step may change the light
+		this.populationBlockBatch.flush(this.world);
 		// Actually, this calculates the block and skylight as it were day.
 		return this.world.getFullBlockLightValue(x, y, z);
 	}
@@ -523,7 +592,8 @@ public class ForgeWorld implements LocalWorld {
 
 		this.world = world;
 		this.seed = world.getSeed();
-		this.structureCache = new CustomObjectStructureCache(this);
+		this.saveFolder = getSaveFolder(world);
+		this.structureCache = new CustomObjectStructureCache(this, this.saveFolder);
 
 		this.dungeonGen = new WorldGenDungeons();
 		this.strongholdGen = new StrongholdGen(configs);
@@ -552,6 +622,34 @@ public class ForgeWorld implements LocalWorld {
 		this.generator = new ChunkProvider(this);
 	}
 
+	/**
+	 * Releases the resources of this world, like the threads of the chunk
+	 * generator. Called when the Minecraft world is unloaded. The world
+	 * can't generate chunks anymore after this.
+	 */
+	public void unload() {
+		if (this.generator != null) { this.generator.shutdown(); }
+		if (this.biomeGenerator != null) { this.biomeGenerator.close(); }
+	}
+
+	/**
+	 * Gets the folder this world is saved in.
+	 *
+	 * @return The folder, or null if the world is not saved.
+	 */
+	public File getSaveFolder() { return this.saveFolder; }
+
+	/**
+	 * Gets the folder the given world is saved in, or null if the world is
+	 * not saved.
+	 */
+	private static File getSaveFolder(World world) {
+		File worldDirectory = world.getSaveHandler().getWorldDirectory();
+		if (worldDirectory == null) { return null; }
+		String dimensionFolder = world.provider.getSaveFolder();
+		return dimensionFolder == null ? worldDirectory : new File(worldDirectory, dimensionFolder);
+	}
+
 	public void setBiomeManager(BiomeGenerator manager) { this.biomeGenerator = manager; }
 
 	public World getWorld() { return this.world; }
@@ -0,0 +1,77 @@
+package com.khorn.terraincontrol.forge;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import net.minecraft.block.Block;
+import net.minecraft.world.World;
+
+/**
+ * Collects the blocks that are placed during population, so that each block
+ * is relit and sent to the players only once, at the end of population.
+ * Blocks that have the same light opacity and light value as the block they
+ * replace (ores in stone, for example) are never relit, as the lighting
+ * can't have changed.
+ *
+ * @see ForgeWorld#startPopulation(com.khorn.terraincontrol.util.ChunkCoordinate)
+ * @see ForgeWorld#endPopulation()
+ */
+class PopulationBlockBatch {
+
+	private final LongOpenHashSet changedBlocks = new LongOpenHashSet();
+	private final LongOpenHashSet relightBlocks = new LongOpenHashSet();
+
+	private static long pack(int x, int y, int z) {
+		return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+	}
+
+	private static int unpackX(long packed) {
+		return (int) (packed >> 38);
+	}
+
+	private static int unpackY(long packed) {
+		return (int) (packed & 0xFFF);
+	}
+
+	private static int unpackZ(long packed) {
+		return (int) (packed << 26 >> 38);
+	}
+
+	/**
+	 * Records that a block was changed.
+	 *
+	 * @param x        X position of the block.
+	 * @param y        Y position of the block.
+	 * @param z        Z position of the block.
+	 * @param oldBlock The block that was there before.
+	 * @param newBlock The block that is there now.
+	 */
+	void blockChanged(int x, int y, int z, Block oldBlock, Block newBlock) {
+		long packed = pack(x, y, z);
+		changedBlocks.add(packed);
+		if (oldBlock.getLightOpacity() != newBlock.getLightOpacity() || oldBlock.getLightValue() != newBlock.getLightValue()) {
+			relightBlocks.add(packed);
+		}
+	}
+
+	/**
+	 * Relights all recorded blocks that need it and sends all recorded
+	 * blocks to the players. Afterwards, this batch is empty again.
+	 *
+	 * @param world The world the blocks were placed in.
+	 */
+	void flush(World world) {
+		for (LongIterator it = relightBlocks.iterator(); it.hasNext();) {
+			long packed = it.nextLong();
+			world.func_147451_t(unpackX(packed), unpackY(packed), unpackZ(packed)); // world.updateAllLightTypes
+		}
+		if (!world.isRemote) {
+			for (LongIterator it = changedBlocks.iterator(); it.hasNext();) {
+				long packed = it.nextLong();
+				world.markBlockForUpdate(unpackX(packed), unpackY(packed), unpackZ(packed));
+			}
+		}
+		relightBlocks.clear();
+		changedBlocks.clear();
+	}
+}
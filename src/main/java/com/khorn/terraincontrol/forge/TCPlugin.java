@@ -6,10 +6,12 @@ import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.standard.PluginStandardValues;
 import com.khorn.terraincontrol.events.EventPriority;
 import com.khorn.terraincontrol.forge.commands.GetSpawnsCommand;
+import com.khorn.terraincontrol.forge.commands.TCCommand;
 import com.khorn.terraincontrol.forge.events.EventManager;
 import com.khorn.terraincontrol.forge.events.PacketHandler;
 import com.khorn.terraincontrol.forge.events.PlayerTracker;
 import com.khorn.terraincontrol.forge.events.SaplingListener;
+import com.khorn.terraincontrol.forge.events.WorldListener;
 import com.khorn.terraincontrol.forge.generator.ForgeVanillaBiomeGenerator;
 import com.khorn.terraincontrol.forge.generator.structure.RareBuildingStart;
 import com.khorn.terraincontrol.forge.generator.structure.VillageStart;
@@ -37,7 +39,10 @@ public class TCPlugin {
 	public File terrainControlDirectory;
 	
 	@EventHandler
-	public static void serverLoad(FMLServerStartingEvent event) { event.registerServerCommand(new GetSpawnsCommand()); }
+	public static void serverLoad(FMLServerStartingEvent event) {
+		event.registerServerCommand(new GetSpawnsCommand());
+		event.registerServerCommand(new TCCommand());
+	}
 	
 	@EventHandler
 	public void load(FMLInitializationEvent event) {
@@ -71,6 +76,9 @@ public class TCPlugin {
 		MinecraftForge.TERRAIN_GEN_BUS.register(saplingListener);
 		MinecraftForge.EVENT_BUS.register(saplingListener);
 		
+		// Register world listener, for stopping the generator threads.
+		MinecraftForge.EVENT_BUS.register(new WorldListener());
+		
 		// Register to our own events, so that they can be fired again as
 		// Forge events.
 		TerrainControl.registerEventHandler(new EventManager(), EventPriority.CANCELABLE);
@@ -59,7 +59,8 @@ public class TCWorldType extends WorldType {
 		this.worldTC.Init(world, config);
 
 		Class<? extends BiomeGenerator> biomeGenClass = this.worldTC.getConfigs().getWorldConfig().biomeMode;
-		BiomeGenerator biomeManager = TerrainControl.getBiomeModeManager().createCached(biomeGenClass, this.worldTC);
+		BiomeGenerator biomeManager = TerrainControl.getBiomeModeManager().createCached(biomeGenClass, this.worldTC,
+				this.worldTC.getSaveFolder());
 		WorldChunkManager chunkManager = this.createWorldChunkManager(this.worldTC, biomeManager);
 		this.worldTC.setBiomeManager(biomeManager);
 
@@ -0,0 +1,120 @@
+package com.khorn.terraincontrol.forge.commands;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.customobjects.CustomObjectStructureCache;
+import com.khorn.terraincontrol.forge.ForgeWorld;
+import com.khorn.terraincontrol.generator.GenerationProfiler;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+import net.minecraft.world.World;
+
+/**
+ * The /tc command. The profile subcommand controls the
+ * {@link GenerationProfiler}:
+ *
+ * <ul>
+ * <li>/tc profile start [logIntervalSeconds]</li>
+ * <li>/tc profile stop</li>
+ * <li>/tc profile reset</li>
+ * <li>/tc profile show [stage]</li>
+ * <li>/tc profile log</li>
+ * </ul>
+ *
+ * <p>
+ * /tc cache shows the use of the caches of the world of the sender.
+ */
+public class TCCommand extends CommandBase {
+
+	private static final int DEFAULT_LOG_INTERVAL_SECONDS = 300;
+	private static final int MAX_LINES = 10;
+
+	@Override
+	public String getCommandName() {
+		return "tc";
+	}
+
+	@Override
+	public String getCommandUsage(ICommandSender sender) {
+		return "/tc profile <start [logIntervalSeconds]|stop|reset|show [stage]|log> or /tc cache";
+	}
+
+	@Override
+	public void processCommand(ICommandSender sender, String[] args) {
+		if (args.length == 1 && args[0].equalsIgnoreCase("cache")) {
+			showCaches(sender);
+			return;
+		}
+		if (args.length < 2 || !args[0].equalsIgnoreCase("profile")) {
+			throw new WrongUsageException(getCommandUsage(sender));
+		}
+
+		String action = args[1].toLowerCase();
+		switch (action) {
+			case "start":
+				int interval = args.length > 2 ? parseIntWithMin(sender, args[2], 0) : DEFAULT_LOG_INTERVAL_SECONDS;
+				GenerationProfiler.start(interval);
+				send(sender, "Profiling chunk generation" + (interval > 0 ? ", logging every " + interval + " seconds." : "."));
+				break;
+			case "stop":
+				GenerationProfiler.stop();
+				send(sender, "Stopped profiling chunk generation.");
+				break;
+			case "reset":
+				GenerationProfiler.reset();
+				send(sender, "Removed all recorded timings.");
+				break;
+			case "show":
+				if (args.length > 2) {
+					String stage = String.join(" ", Arrays.copyOfRange(args, 2, args.length));
+					showTimers(sender, "Slowest groups of " + stage + ":", GenerationProfiler.getGroups(stage));
+				} else {
+					showTimers(sender, "Slowest stages:", GenerationProfiler.getStages());
+				}
+				break;
+			case "log":
+				GenerationProfiler.logResults(Integer.MAX_VALUE);
+				send(sender, "Logged all recorded timings.");
+				break;
+			default:
+				throw new WrongUsageException(getCommandUsage(sender));
+		}
+	}
+
+	private static void showTimers(ICommandSender sender, String title, List<GenerationProfiler.Timer> timers) {
+		if (timers.isEmpty()) {
+			send(sender, "Nothing recorded yet." + (GenerationProfiler.isEnabled() ? "" : " Use /tc profile start first."));
+			return;
+		}
+		send(sender, title);
+		for (GenerationProfiler.Timer timer : timers.subList(0, Math.min(MAX_LINES, timers.size()))) {
+			send(sender, timer.format());
+		}
+	}
+
+	private static void showCaches(ICommandSender sender) {
+		World senderWorld = sender.getEntityWorld();
+		LocalWorld world = TerrainControl.getWorld(senderWorld.getSaveHandler().getWorldDirectoryName());
+		if (!(world instanceof ForgeWorld) || ((ForgeWorld) world).getWorld() != senderWorld) {
+			send(sender, "This world is not generated by TerrainControl.");
+			return;
+		}
+
+		CustomObjectStructureCache structureCache = world.getStructureCache();
+		long hits = structureCache.getHits();
+		long lookups = hits + structureCache.getMisses();
+		send(sender, "Structure cache: " + structureCache.getSize() + "/" + structureCache.getCapacity() + " used, " + hits + " of "
+				+ lookups + " lookups found" + (lookups > 0 ? " (" + (hits * 100 / lookups) + "%)" : "") + ".");
+	}
+
+	private static void send(ICommandSender sender, String message) {
+		sender.addChatMessage(new ChatComponentText(message));
+	}
+
+}
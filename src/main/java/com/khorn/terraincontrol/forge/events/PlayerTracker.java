@@ -8,16 +8,33 @@ import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.ConfigProvider;
 import com.khorn.terraincontrol.configuration.standard.PluginStandardValues;
+import com.khorn.terraincontrol.forge.generator.ChunkPrefetcher;
 import com.khorn.terraincontrol.forge.util.WorldHelper;
 import com.khorn.terraincontrol.logging.LogMarker;
 
 import cpw.mods.fml.common.eventhandler.SubscribeEvent;
 import cpw.mods.fml.common.gameevent.PlayerEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.network.play.server.S3FPacketCustomPayload;
 
 public class PlayerTracker {
 
+	private final ChunkPrefetcher chunkPrefetcher = new ChunkPrefetcher();
+
+	@SubscribeEvent
+	public void onPlayerTick(TickEvent.PlayerTickEvent event) {
+		// Server-side - generates the chunks in front of fast moving players
+		if (event.phase != TickEvent.Phase.END || !(event.player instanceof EntityPlayerMP)) { return; }
+		this.chunkPrefetcher.onPlayerTick((EntityPlayerMP) event.player);
+	}
+
+	@SubscribeEvent
+	public void onPlayerLogout(PlayerEvent.PlayerLoggedOutEvent event) {
+		if (!(event.player instanceof EntityPlayerMP)) { return; }
+		this.chunkPrefetcher.onPlayerLogout((EntityPlayerMP) event.player);
+	}
+
 	@SubscribeEvent
 	public void onPlayerLogin(PlayerEvent.PlayerLoggedInEvent event) {
 		// Server-side - called whenever a player logs in
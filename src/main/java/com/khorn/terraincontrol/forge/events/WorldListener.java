@@ -0,0 +1,40 @@
+package com.khorn.terraincontrol.forge.events;
+
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.TerrainControlEngine;
+import com.khorn.terraincontrol.forge.ForgeEngine;
+import com.khorn.terraincontrol.forge.ForgeWorld;
+
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import net.minecraft.world.World;
+import net.minecraftforge.event.world.ChunkDataEvent;
+import net.minecraftforge.event.world.WorldEvent;
+
+public class WorldListener {
+
+	@SubscribeEvent
+	public void onWorldUnload(WorldEvent.Unload event) {
+		// Server-side - stops the generator threads of the world
+		if (event.world.isRemote) { return; }
+		TerrainControlEngine engine = TerrainControl.getEngine();
+		if (engine instanceof ForgeEngine) { ((ForgeEngine) engine).onWorldUnload(event.world); }
+	}
+
+	@SubscribeEvent
+	public void onChunkLoad(ChunkDataEvent.Load event) {
+		ForgeWorld world = getWorld(event.world);
+		if (world != null) { world.onChunkLoad(event.getChunk(), event.getData()); }
+	}
+
+	@SubscribeEvent
+	public void onChunkSave(ChunkDataEvent.Save event) {
+		ForgeWorld world = getWorld(event.world);
+		if (world != null) { world.onChunkSave(event.getChunk(), event.getData()); }
+	}
+
+	private static ForgeWorld getWorld(World world) {
+		TerrainControlEngine engine = TerrainControl.getEngine();
+		if (!(engine instanceof ForgeEngine)) { return null; }
+		return ((ForgeEngine) engine).getWorld(world);
+	}
+}
@@ -0,0 +1,144 @@
+package com.khorn.terraincontrol.forge.generator;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.forge.ForgeWorld;
+import com.khorn.terraincontrol.forge.util.WorldHelper;
+import com.khorn.terraincontrol.util.helpers.MathHelper;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.World;
+
+/**
+ * Watches the position of players and lets the {@link ChunkProvider}
+ * generate the chunks in their direction of travel, before Minecraft asks for
+ * them. Only players that are faster than a sprinting player are followed,
+ * slower players never outrun the normal chunk generation.
+ */
+public class ChunkPrefetcher {
+
+	/**
+	 * Position of a player at a certain tick.
+	 */
+	private static class Sample {
+		private final World world;
+		private final double x;
+		private final double z;
+		private final long time;
+
+		Sample(World world, double x, double z, long time) {
+			this.world = world;
+			this.x = x;
+			this.z = z;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * Ticks between two samples of the position of a player.
+	 */
+	private static final int SAMPLE_INTERVAL = 10;
+
+	/**
+	 * Minimum speed in blocks per tick before chunks are prefetched. A
+	 * sprinting player moves about 0.28 blocks per tick.
+	 */
+	private static final double MIN_SPEED = 0.4;
+
+	/**
+	 * How far ahead in time the position of a player is predicted.
+	 */
+	private static final int LOOK_AHEAD_TICKS = 100;
+
+	/**
+	 * Maximum amount of chunks scheduled per player per sample, so that the
+	 * nearest chunks aren't pushed out of the buffer of the generator.
+	 */
+	private static final int MAX_REQUESTS_PER_SAMPLE = 32;
+
+	private final Map<EntityPlayerMP, Sample> samples = new WeakHashMap<>();
+
+	/**
+	 * Called every tick for every player on the server.
+	 *
+	 * @param player The player.
+	 */
+	public void onPlayerTick(EntityPlayerMP player) {
+		World world = player.worldObj;
+		long time = world.getTotalWorldTime();
+		if (time % SAMPLE_INTERVAL != 0) { return; }
+
+		Sample last = this.samples.put(player, new Sample(world, player.posX, player.posZ, time));
+		if (last == null || last.world != world) { return; }
+		long ticks = time - last.time;
+		if (ticks <= 0 || ticks > SAMPLE_INTERVAL * 2) {
+			// Player was teleported or the server lagged
+			return;
+		}
+
+		LocalWorld localWorld = WorldHelper.toLocalWorld(world);
+		if (!(localWorld instanceof ForgeWorld)) { return; }
+		ChunkProvider chunkProvider = ((ForgeWorld) localWorld).getChunkGenerator();
+		if (chunkProvider == null || !chunkProvider.canPrefetch()) { return; }
+
+		double motionX = (player.posX - last.x) / ticks;
+		double motionZ = (player.posZ - last.z) / ticks;
+		double speed = Math.sqrt(motionX * motionX + motionZ * motionZ);
+		if (speed < MIN_SPEED) { return; }
+
+		this.prefetchAhead(chunkProvider, player, motionX / speed, motionZ / speed, speed * LOOK_AHEAD_TICKS);
+	}
+
+	/**
+	 * Forgets the given player.
+	 *
+	 * @param player The player.
+	 */
+	public void onPlayerLogout(EntityPlayerMP player) {
+		this.samples.remove(player);
+	}
+
+	/**
+	 * Requests the chunks that will come into view when the player moves in
+	 * the given direction. The nearest chunks are requested first.
+	 *
+	 * @param chunkProvider The chunk provider of the world of the player.
+	 * @param player        The player.
+	 * @param directionX    X component of the normalized direction.
+	 * @param directionZ    Z component of the normalized direction.
+	 * @param distance      Distance in blocks to look ahead.
+	 */
+	private void prefetchAhead(ChunkProvider chunkProvider, EntityPlayerMP player, double directionX, double directionZ,
+			double distance) {
+		int viewDistance = MinecraftServer.getServer().getConfigurationManager().getViewDistance();
+		int previousX = MathHelper.floor(player.posX) >> 4;
+		int previousZ = MathHelper.floor(player.posZ) >> 4;
+		int steps = MathHelper.ceil((float) (distance / 16));
+		int requested = 0;
+
+		for (int step = 1; step <= steps; step++) {
+			int centerX = MathHelper.floor(player.posX + directionX * step * 16) >> 4;
+			int centerZ = MathHelper.floor(player.posZ + directionZ * step * 16) >> 4;
+			if (centerX == previousX && centerZ == previousZ) {
+				continue;
+			}
+
+			// Only the chunks that weren't in view at the previous position
+			for (int chunkX = centerX - viewDistance; chunkX <= centerX + viewDistance; chunkX++) {
+				for (int chunkZ = centerZ - viewDistance; chunkZ <= centerZ + viewDistance; chunkZ++) {
+					if (Math.abs(chunkX - previousX) <= viewDistance && Math.abs(chunkZ - previousZ) <= viewDistance) {
+						continue;
+					}
+					if (chunkProvider.prefetch(chunkX, chunkZ) && ++requested >= MAX_REQUESTS_PER_SAMPLE) { return; }
+				}
+			}
+
+			previousX = centerX;
+			previousZ = centerZ;
+		}
+	}
+
+}
@@ -5,12 +5,15 @@ import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
 
 import java.util.List;
 
+import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.ConfigProvider;
 import com.khorn.terraincontrol.configuration.WorldConfig;
 import com.khorn.terraincontrol.forge.ForgeWorld;
 import com.khorn.terraincontrol.generator.ChunkProviderTC;
 import com.khorn.terraincontrol.generator.ObjectSpawner;
+import com.khorn.terraincontrol.generator.ParallelChunkGenerator;
 import com.khorn.terraincontrol.generator.biome.OutputType;
+import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 
 import net.minecraft.block.BlockSand;
@@ -21,6 +24,8 @@ import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
+import net.minecraft.world.gen.ChunkProviderServer;
 
 public class ChunkProvider implements IChunkProvider {
 
@@ -30,6 +35,16 @@ public class ChunkProvider implements IChunkProvider {
 
 	private final ChunkProviderTC generator;
 	private final ObjectSpawner spawner;
+	/**
+	 * Generates the blocks of chunks in the background, null if disabled.
+	 */
+	private final ParallelChunkGenerator<ForgeChunkBuffer> parallelGenerator;
+	private final boolean prefetchChunks;
+	/**
+	 * Chunks saved in the region files, created on first use. Only used
+	 * when prefetching or generating in the background.
+	 */
+	private SavedChunksCache savedChunks;
 
 	/**
 	 * Used in {@link #fillBiomeArray(Chunk)}, to avoid creating
@@ -41,11 +56,23 @@ public class ChunkProvider implements IChunkProvider {
 		this.world = _world;
 		this.worldHandle = _world.getWorld();
 
-		this.TestMode = this.world.getConfigs().getWorldConfig().ModeTerrain == WorldConfig.TerrainMode.TerrainTest;
+		WorldConfig worldConfig = this.world.getConfigs().getWorldConfig();
+		this.TestMode = worldConfig.ModeTerrain == WorldConfig.TerrainMode.TerrainTest;
 
 		this.generator = new ChunkProviderTC(this.world.getConfigs(), this.world);
 		this.spawner = new ObjectSpawner(this.world.getConfigs(), this.world);
 
+		if (worldConfig.generationThreads > 0 && ParallelChunkGenerator.isSupported(worldConfig)) {
+			this.parallelGenerator = new ParallelChunkGenerator<>(this.world.getConfigs(), this.world,
+					worldConfig.generationThreads, worldConfig.generationBufferSize, ForgeChunkBuffer::new);
+		} else {
+			if (worldConfig.generationThreads > 0) {
+				TerrainControl.log(LogMarker.WARN, "GenerationThreads is not supported for the terrain and biome mode of {},"
+						+ " generating all chunks on the main thread.", this.world.getName());
+			}
+			this.parallelGenerator = null;
+		}
+		this.prefetchChunks = this.parallelGenerator != null && worldConfig.prefetchChunks;
 	}
 
 	@Override
@@ -56,16 +83,96 @@ public class ChunkProvider implements IChunkProvider {
 	@Override
 	public Chunk provideChunk(int chunkX, int chunkZ) {
 		ChunkCoordinate chunkCoord = ChunkCoordinate.fromChunkCoords(chunkX, chunkZ);
-		ForgeChunkBuffer chunkBuffer = new ForgeChunkBuffer(chunkCoord);
-		this.generator.generate(chunkBuffer);
+		ForgeChunkBuffer chunkBuffer;
+		if (this.parallelGenerator == null) {
+			chunkBuffer = new ForgeChunkBuffer(chunkCoord);
+			this.generator.generate(chunkBuffer);
+		} else {
+			ParallelChunkGenerator.GeneratedChunk<ForgeChunkBuffer> generated = this.parallelGenerator.take(chunkCoord);
+			chunkBuffer = generated.getChunkBuffer();
+			this.generator.prepareDefaultStructures(chunkCoord, generated.isDry());
+			if (this.savedChunks != null) { this.savedChunks.markGenerated(chunkX, chunkZ); }
+			this.requestNeighbors(chunkX, chunkZ);
+		}
 
 		Chunk chunk = chunkBuffer.toChunk(this.worldHandle);
+		chunkBuffer.release();
 		this.fillBiomeArray(chunk);
-		chunk.generateSkylightMap();
 
 		return chunk;
 	}
 
+	/**
+	 * Schedules the neighbors of a newly generated chunk for background
+	 * generation. New chunks are almost always requested next to each other,
+	 * so those neighbors are likely to be requested soon.
+	 *
+	 * @param chunkX X position of the chunk that was just generated.
+	 * @param chunkZ Z position of the chunk that was just generated.
+	 */
+	private void requestNeighbors(int chunkX, int chunkZ) {
+		for (int x = chunkX - 1; x <= chunkX + 1; x++) {
+			for (int z = chunkZ - 1; z <= chunkZ + 1; z++) {
+				if ((x != chunkX || z != chunkZ) && !this.isGenerated(x, z)) {
+					this.parallelGenerator.request(ChunkCoordinate.fromChunkCoords(x, z));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the background generation. Must be called when the world is
+	 * unloaded, on the server thread.
+	 */
+	public void shutdown() {
+		if (this.parallelGenerator != null) { this.parallelGenerator.shutdown(); }
+	}
+
+	/**
+	 * Gets whether chunks can be generated in the background before they are
+	 * needed.
+	 *
+	 * @return True if {@link #prefetch(int, int)} does something.
+	 * @see ChunkPrefetcher
+	 */
+	public boolean canPrefetch() { return this.prefetchChunks; }
+
+	/**
+	 * Schedules the given chunk for background generation, unless it already
+	 * exists.
+	 *
+	 * @param chunkX X position of the chunk.
+	 * @param chunkZ Z position of the chunk.
+	 * @return True if the chunk was scheduled, false if it exists, was
+	 *         scheduled already or if prefetching is disabled.
+	 */
+	public boolean prefetch(int chunkX, int chunkZ) {
+		if (!this.prefetchChunks || this.isGenerated(chunkX, chunkZ)) { return false; }
+		return this.parallelGenerator.request(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+	}
+
+	/**
+	 * Gets whether the chunk is already loaded or saved, so that it will
+	 * never be generated again.
+	 *
+	 * @param chunkX X position of the chunk.
+	 * @param chunkZ Z position of the chunk.
+	 * @return True if the chunk doesn't need to be generated.
+	 */
+	private boolean isGenerated(int chunkX, int chunkZ) {
+		IChunkProvider chunkProvider = this.worldHandle.getChunkProvider();
+		if (!(chunkProvider instanceof ChunkProviderServer)) { return false; }
+
+		ChunkProviderServer serverProvider = (ChunkProviderServer) chunkProvider;
+		if (serverProvider.chunkExists(chunkX, chunkZ)) { return true; }
+		if (this.savedChunks == null) {
+			if (!(serverProvider.currentChunkLoader instanceof AnvilChunkLoader)) { return false; }
+			this.savedChunks = new SavedChunksCache(this.worldHandle, serverProvider,
+					(AnvilChunkLoader) serverProvider.currentChunkLoader);
+		}
+		return this.savedChunks.isGenerated(chunkX, chunkZ);
+	}
+
 	/**
 	 * Fills the biome array of a chunk with the proper saved ids (no
 	 * generation ids).
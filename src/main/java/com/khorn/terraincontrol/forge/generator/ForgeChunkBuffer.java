@@ -8,26 +8,65 @@ import com.khorn.terraincontrol.LocalMaterialData;
 import com.khorn.terraincontrol.forge.ForgeMaterialData;
 import com.khorn.terraincontrol.generator.ChunkBuffer;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
-import net.minecraft.block.Block;
-import net.minecraft.init.Blocks;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * Implementation of {@link ChunkBuffer}. This implementation supports block
- * data, as well as extended ids. It uses a {@code Block[]} array to store
- * blocks internally, just like Minecraft does for chunk generation.
+ * data, as well as extended ids. Every block is stored as a single
+ * {@code char} of the block id and data, in the same order as Minecraft's
+ * {@link ExtendedBlockStorage}, so that the sections of the chunk can be
+ * created directly from the buffer. Sections that only contain air and the
+ * highest block of every column are tracked, so that the air above the
+ * terrain can be skipped.
  *
+ * <p>
+ * The arrays are reused for later chunks once the buffer is
+ * {@link #release() released}.
  */
 class ForgeChunkBuffer implements ChunkBuffer {
+	private static final int SECTION_HEIGHT = 16;
+	private static final int SECTION_VOLUME = CHUNK_X_SIZE * SECTION_HEIGHT * CHUNK_Z_SIZE;
+	private static final int SECTION_COUNT = CHUNK_Y_SIZE / SECTION_HEIGHT;
+
+	/**
+	 * Arrays of released buffers. Buffers are filled by the worker threads
+	 * and released on the server thread, so the pool is shared.
+	 */
+	private static final ArrayBlockingQueue<char[]> POOL = new ArrayBlockingQueue<>(16);
 
 	private final ChunkCoordinate chunkCoord;
 
-	private final Block[] blocks = new Block[CHUNK_X_SIZE * CHUNK_Y_SIZE * CHUNK_Z_SIZE];
-	private final byte[] blockData = new byte[CHUNK_X_SIZE * CHUNK_Y_SIZE * CHUNK_Z_SIZE];
+	/**
+	 * Block id and data of all blocks, {@code id << 4 | data}. Zero is air.
+	 */
+	private char[] blocks;
+	/**
+	 * Bit {@code n} is set if a block other than air was ever placed in
+	 * section {@code n}.
+	 */
+	private int usedSections;
+	/**
+	 * Highest y position a block other than air was ever placed at, for
+	 * every column in {@code z << 4 | x} order, or -1 if the column is
+	 * empty. All blocks above it are air.
+	 */
+	private final int[] highestBlocks = new int[CHUNK_X_SIZE * CHUNK_Z_SIZE];
 
 	ForgeChunkBuffer(ChunkCoordinate chunkCoord) {
 		this.chunkCoord = chunkCoord;
+		char[] pooled = POOL.poll();
+		this.blocks = pooled != null ? pooled : new char[CHUNK_X_SIZE * CHUNK_Y_SIZE * CHUNK_Z_SIZE];
+		Arrays.fill(highestBlocks, -1);
+	}
+
+	private static int getArrayPos(int blockX, int blockY, int blockZ) {
+		return (blockY >> 4) * SECTION_VOLUME | (blockY & 0xF) << 8 | blockZ << 4 | blockX;
 	}
 
 	@Override
@@ -35,29 +74,144 @@ class ForgeChunkBuffer implements ChunkBuffer {
 
 	@Override
 	public void setBlock(int blockX, int blockY, int blockZ, LocalMaterialData material) {
-		int arrayPos = (blockX * CHUNK_X_SIZE + blockZ) * CHUNK_Y_SIZE + blockY;
-		blocks[arrayPos] = ((ForgeMaterialData) material).internalBlock();
-		blockData[arrayPos] = material.getBlockData();
+		int packed = material.getBlockId() << 4 | (material.getBlockData() & 0xF);
+		blocks[getArrayPos(blockX, blockY, blockZ)] = (char) packed;
+		if (packed >> 4 != 0) {
+			usedSections |= 1 << (blockY >> 4);
+			int column = blockZ << 4 | blockX;
+			if (blockY > highestBlocks[column]) { highestBlocks[column] = blockY; }
+		}
 	}
 
 	@Override
 	public LocalMaterialData getBlock(int blockX, int blockY, int blockZ) {
-		int arrayPos = (blockX * CHUNK_X_SIZE + blockZ) * CHUNK_Y_SIZE + blockY;
-		Block block = blocks[arrayPos];
-		if (block == null) { block = Blocks.air; }
-		byte data = blockData[arrayPos];
-		return ForgeMaterialData.ofMinecraftBlock(block, data);
+		if ((usedSections & 1 << (blockY >> 4)) == 0) { return ForgeMaterialData.ofIds(0, 0); }
+		char packed = blocks[getArrayPos(blockX, blockY, blockZ)];
+		return ForgeMaterialData.ofIds(packed >> 4, packed & 0xF);
+	}
+
+	@Override
+	public int getPackedBlock(int blockX, int blockY, int blockZ) {
+		// Unused sections are always filled with air
+		return blocks[getArrayPos(blockX, blockY, blockZ)];
 	}
 
 	/**
-	 * Creates a Minecraft chunk of the data of this chunk buffer.
+	 * Creates a Minecraft chunk of the data of this chunk buffer, including
+	 * the height map and the sky light. Sections that only contain air are
+	 * left out.
 	 *
 	 * @param world
 	 *              The world the chunk will be in.
 	 * @return The chunk.
 	 */
 	Chunk toChunk(World world) {
-		return new Chunk(world, blocks, blockData, chunkCoord.getChunkX(), chunkCoord.getChunkZ());
+		Chunk chunk = new Chunk(world, chunkCoord.getChunkX(), chunkCoord.getChunkZ());
+		ExtendedBlockStorage[] sections = chunk.getBlockStorageArray();
+		boolean hasSky = !world.provider.hasNoSky;
+
+		for (int sectionY = 0; sectionY < SECTION_COUNT; sectionY++) {
+			if ((usedSections & 1 << sectionY) == 0) { continue; }
+
+			ExtendedBlockStorage section = new ExtendedBlockStorage(sectionY << 4, hasSky);
+			byte[] blockIds = section.getBlockLSBArray();
+			byte[] blockData = section.getMetadataArray().data;
+			NibbleArray extendedIds = null;
+
+			int offset = sectionY * SECTION_VOLUME;
+			for (int i = 0; i < SECTION_VOLUME; i++) {
+				int packed = blocks[offset + i];
+				int blockId = packed >> 4;
+				if (blockId == 0) { continue; }
+
+				int nibbleShift = (i & 1) << 2;
+				blockIds[i] = (byte) blockId;
+				blockData[i >> 1] |= (byte) ((packed & 0xF) << nibbleShift);
+				if (blockId > 0xFF) {
+					if (extendedIds == null) { extendedIds = section.createBlockMSBArray(); }
+					extendedIds.data[i >> 1] |= (byte) ((blockId >> 8) << nibbleShift);
+				}
+			}
+
+			// Counts the blocks, so that Minecraft knows whether the section is
+			// empty and whether it needs random ticks
+			section.removeInvalidBlocks();
+			if (!section.isEmpty()) { sections[sectionY] = section; }
+		}
+
+		generateHeightMapAndSkylight(chunk, hasSky);
+		return chunk;
+	}
+
+	/**
+	 * Does the same as {@link Chunk#generateSkylightMap()}, but starts every
+	 * column at its highest block instead of at the top of the highest
+	 * section. Also skips the render updates of every lit block, as no
+	 * client has the chunk yet.
+	 */
+	private void generateHeightMapAndSkylight(Chunk chunk, boolean hasSky) {
+		ExtendedBlockStorage[] sections = chunk.getBlockStorageArray();
+		chunk.heightMapMinimum = Integer.MAX_VALUE;
+
+		for (int blockX = 0; blockX < CHUNK_X_SIZE; blockX++) {
+			for (int blockZ = 0; blockZ < CHUNK_Z_SIZE; blockZ++) {
+				int highestBlock = highestBlocks[blockZ << 4 | blockX];
+
+				int height = highestBlock + 1;
+				while (height > 0 && chunk.func_150808_b(blockX, height - 1, blockZ) == 0) {
+					height--;
+				}
+				if (height > 0) {
+					chunk.heightMap[blockZ << 4 | blockX] = height;
+					if (height < chunk.heightMapMinimum) { chunk.heightMapMinimum = height; }
+				}
+
+				if (!hasSky) { continue; }
+
+				// Full sky light in the sections above the column, except at
+				// y = 0, which Minecraft never lights
+				for (int sectionY = (highestBlock + 1) >> 4; sectionY < SECTION_COUNT; sectionY++) {
+					ExtendedBlockStorage section = sections[sectionY];
+					if (section == null) { continue; }
+					int minY = Math.max(Math.max(highestBlock + 1, sectionY << 4), 1);
+					for (int y = minY; y < (sectionY + 1) << 4; y++) {
+						section.setExtSkylightValue(blockX, y & 0xF, blockZ, 15);
+					}
+				}
+
+				// Light fading into the column
+				int light = 15;
+				for (int y = highestBlock; y > 0 && light > 0; y--) {
+					int opacity = chunk.func_150808_b(blockX, y, blockZ);
+					if (opacity == 0 && light != 15) { opacity = 1; }
+					light -= opacity;
+					if (light > 0) {
+						ExtendedBlockStorage section = sections[y >> 4];
+						if (section != null) { section.setExtSkylightValue(blockX, y & 0xF, blockZ, light); }
+					}
+				}
+			}
+		}
+		chunk.setChunkModified();
+	}
+
+	/**
+	 * Returns the block array to the pool. The buffer must not be used
+	 * afterwards.
+	 */
+	void release() {
+		char[] blocks = this.blocks;
+		if (blocks == null) { return; }
+		this.blocks = null;
+
+		// Only the sections that were used can contain blocks
+		for (int sectionY = 0; sectionY < SECTION_COUNT; sectionY++) {
+			if ((usedSections & 1 << sectionY) != 0) {
+				Arrays.fill(blocks, sectionY * SECTION_VOLUME, (sectionY + 1) * SECTION_VOLUME, (char) 0);
+			}
+		}
+		usedSections = 0;
+		POOL.offer(blocks);
 	}
 
 }
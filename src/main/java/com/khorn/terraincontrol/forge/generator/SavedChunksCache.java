@@ -0,0 +1,116 @@
+package com.khorn.terraincontrol.forge.generator;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
+import net.minecraft.world.gen.ChunkProviderServer;
+
+/**
+ * Remembers which chunks are loaded or saved in the region files of a
+ * world, so that {@link ChunkProvider} doesn't need to ask the chunk loader
+ * for every neighbor of every new chunk. The chunks of a region are read
+ * once, the first time the region is needed. Chunks generated after that
+ * must be reported through {@link #markGenerated(int, int)}.
+ *
+ * <p>
+ * Only used on the server thread.
+ */
+class SavedChunksCache {
+
+	private static final int REGION_SHIFT = 5;
+	private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+	private static final int CHUNKS_PER_REGION = 1 << (REGION_SHIFT * 2);
+
+	/**
+	 * Amount of regions that are kept. Players usually only need a few
+	 * regions at once.
+	 */
+	private static final int MAX_REGIONS = 64;
+
+	private final World world;
+	private final ChunkProviderServer provider;
+	private final AnvilChunkLoader loader;
+	/**
+	 * One bit for every chunk in the region, set if the chunk was generated.
+	 */
+	private final Map<Long, long[]> regions = new LinkedHashMap<Long, long[]>(MAX_REGIONS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+			return size() > MAX_REGIONS;
+		}
+	};
+
+	SavedChunksCache(World world, ChunkProviderServer provider, AnvilChunkLoader loader) {
+		this.world = world;
+		this.provider = provider;
+		this.loader = loader;
+	}
+
+	private static long toKey(int regionX, int regionZ) {
+		return (long) regionX & 0xFFFFFFFFL | ((long) regionZ & 0xFFFFFFFFL) << 32;
+	}
+
+	private static int getIndex(int chunkX, int chunkZ) {
+		return (chunkX & REGION_MASK) | (chunkZ & REGION_MASK) << REGION_SHIFT;
+	}
+
+	/**
+	 * Gets whether the chunk is saved or was generated since the region was
+	 * read.
+	 *
+	 * @param chunkX X position of the chunk.
+	 * @param chunkZ Z position of the chunk.
+	 * @return True if the chunk exists.
+	 */
+	boolean isGenerated(int chunkX, int chunkZ) {
+		int index = getIndex(chunkX, chunkZ);
+		return (this.getRegion(chunkX, chunkZ)[index >> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Marks the given chunk as generated.
+	 *
+	 * @param chunkX X position of the chunk.
+	 * @param chunkZ Z position of the chunk.
+	 */
+	void markGenerated(int chunkX, int chunkZ) {
+		long[] region = this.regions.get(toKey(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT));
+		if (region == null) {
+			// Will be read from the region file when it is needed
+			return;
+		}
+		int index = getIndex(chunkX, chunkZ);
+		region[index >> 6] |= 1L << index;
+	}
+
+	private long[] getRegion(int chunkX, int chunkZ) {
+		int regionX = chunkX >> REGION_SHIFT;
+		int regionZ = chunkZ >> REGION_SHIFT;
+		long key = toKey(regionX, regionZ);
+		long[] region = this.regions.get(key);
+		if (region != null) { return region; }
+
+		region = new long[CHUNKS_PER_REGION / 64];
+		// Asking the loader for a chunk creates the region file, so check
+		// whether it exists first
+		File regionFile = new File(new File(this.loader.chunkSaveLocation, "region"), "r." + regionX + "." + regionZ + ".mca");
+		boolean saved = regionFile.exists();
+		int startX = regionX << REGION_SHIFT;
+		int startZ = regionZ << REGION_SHIFT;
+		for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+			int x = startX + (i & REGION_MASK);
+			int z = startZ + (i >> REGION_SHIFT);
+			// Loaded chunks may not be saved yet
+			if (this.provider.chunkExists(x, z) || (saved && this.loader.chunkExists(this.world, x, z))) {
+				region[i >> 6] |= 1L << i;
+			}
+		}
+		this.regions.put(key, region);
+		return region;
+	}
+}
@@ -42,4 +42,19 @@ public interface ChunkBuffer {
 	 * @return The block material.
 	 */
 	LocalMaterialData getBlock(int x, int y, int z);
+
+	/**
+	 * Gets the block id and data at the given position, packed like
+	 * {@code id << 4 | data}. Faster than {@link #getBlock(int, int, int)},
+	 * as no material needs to be looked up.
+	 *
+	 * @param blockX Block x, from 0 to ({@link ChunkCoordinate#CHUNK_X_SIZE}
+	 *               - 1), inclusive.
+	 * @param blockY Block y, from 0 to ({@link ChunkCoordinate#CHUNK_Y_SIZE}
+	 *               - 1), inclusive.
+	 * @param blockZ Block z, from 0 to ({@link ChunkCoordinate#CHUNK_Z_SIZE}
+	 *               - 1), inclusive.
+	 * @return The packed block id and data.
+	 */
+	int getPackedBlock(int blockX, int blockY, int blockZ);
 }
@@ -4,6 +4,7 @@ import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
 import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Y_SIZE;
 import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
 
+import com.khorn.terraincontrol.LocalBiome;
 import com.khorn.terraincontrol.LocalMaterialData;
 import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.TerrainControl;
@@ -48,15 +49,26 @@ public class ChunkProviderTC {
 	private final NoiseGeneratorNewOctaves noiseGen4;
 	private final NoiseGeneratorPerlinOctaves noiseGen5;
 	private final NoiseGeneratorPerlinOctaves noiseGen6;
+	private final NoiseGeneratorNewOctaves surfaceNoiseGen;
 	private double[] rawTerrain;
 	private double[] noise4 = new double[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+	private double[] surfaceNoise = new double[CHUNK_X_SIZE * CHUNK_Z_SIZE];
 
 	private double[] noise3;
 	private double[] noise1;
 	private double[] noise2;
 	private double[] noise5;
+	// Time spent in generateTerrainNoise for the current chunk, for the
+	// GenerationProfiler
+	private long noiseNanos;
 	private double[] noise6;
 	private final float[] nearBiomeWeightArray;
+	// Biome properties of every noise column in the smoothing window of the
+	// chunk, indexed like biomeArray
+	private float[] windowBiomeHeight;
+	private float[] windowBiomeVolatility;
+	private float[] windowRiverHeight;
+	private float[] windowRiverVolatility;
 
 	private double riverVol;
 	private double riverHeight;
@@ -69,8 +81,8 @@ public class ChunkProviderTC {
 
 	private final ConfigProvider configProvider;
 
-	private final TerrainGenBase caveGen;
-	private final TerrainGenBase canyonGen;
+	private final TerrainGenBase<?> caveGen;
+	private final TerrainGenBase<?> canyonGen;
 
 	private int[] biomeArray;
 	private int[] riverArray;
@@ -99,6 +111,7 @@ public class ChunkProviderTC {
 		this.noiseGen4 = new NoiseGeneratorNewOctaves(this.random, 4);
 		this.noiseGen5 = new NoiseGeneratorPerlinOctaves(this.random, 10);
 		this.noiseGen6 = new NoiseGeneratorPerlinOctaves(this.random, 16);
+		this.surfaceNoiseGen = new NoiseGeneratorNewOctaves(new Random(world.getSeed()), 4);
 
 		this.caveGen = new CavesGen(configs.getWorldConfig(), this.localWorld);
 		this.canyonGen = new CanyonsGen(configs.getWorldConfig(), this.localWorld);
@@ -123,23 +136,73 @@ public class ChunkProviderTC {
 	}
 
 	public void generate(ChunkBuffer chunkBuffer) {
+		boolean dry = generateBlocks(chunkBuffer);
+		prepareDefaultStructures(chunkBuffer.getChunkCoordinate(), dry);
+	}
+
+	/**
+	 * Generates the terrain, the biome blocks, the caves, the canyons and the
+	 * SurfaceAndGroundControl blocks of the chunk. Unlike
+	 * {@link #generate(ChunkBuffer)} this method doesn't touch the world
+	 * itself, so it may be called from another thread, as long as each
+	 * thread uses its own instance of this class.
+	 *
+	 * @param chunkBuffer The chunk to generate the blocks in.
+	 * @return Whether there is a lot of water in this chunk, see
+	 *         {@link #addBiomeBlocksAndCheckWater(ChunkBuffer)}.
+	 * @see ParallelChunkGenerator
+	 */
+	public boolean generateBlocks(ChunkBuffer chunkBuffer) {
 		ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
 		int x = chunkCoord.getChunkX();
 		int z = chunkCoord.getChunkZ();
 		this.random.setSeed(x * 341873128712L + z * 132897987541L);
 
+		boolean profile = GenerationProfiler.isEnabled();
+		long start = profile ? System.nanoTime() : 0;
+
 		generateTerrain(chunkBuffer);
+		long terrainEnd = profile ? System.nanoTime() : 0;
 
 		boolean dry = addBiomeBlocksAndCheckWater(chunkBuffer);
+		long biomeBlocksEnd = profile ? System.nanoTime() : 0;
 
 		this.caveGen.generate(chunkBuffer);
+		long cavesEnd = profile ? System.nanoTime() : 0;
+
 		this.canyonGen.generate(chunkBuffer);
+		long canyonsEnd = profile ? System.nanoTime() : 0;
+
+		addComplexSurfaceBlocks(chunkBuffer);
+
+		if (profile) {
+			// Same biome as the one used for population
+			LocalBiome biome = this.configProvider.getBiomeByIdOrNull(this.biomeArray[CHUNK_X_SIZE * CHUNK_Z_SIZE - 1]);
+			String biomeName = biome == null ? "Unknown" : biome.getName();
+			GenerationProfiler.record("Noise", biomeName, this.noiseNanos);
+			GenerationProfiler.record("Terrain", biomeName, terrainEnd - start - this.noiseNanos);
+			GenerationProfiler.record("Biome blocks", biomeName, biomeBlocksEnd - terrainEnd);
+			GenerationProfiler.record("Caves", biomeName, cavesEnd - biomeBlocksEnd);
+			GenerationProfiler.record("Canyons", biomeName, canyonsEnd - cavesEnd);
+			GenerationProfiler.lap("Complex surface", biomeName, canyonsEnd);
+		}
+
+		return dry;
+	}
 
+	/**
+	 * Lets the world prepare its default structures (villages, strongholds,
+	 * etc.) for the given chunk. Must be called on the thread that owns the
+	 * world.
+	 *
+	 * @param chunkCoord The chunk.
+	 * @param dry        Value returned by {@link #generateBlocks(ChunkBuffer)}.
+	 */
+	public void prepareDefaultStructures(ChunkCoordinate chunkCoord, boolean dry) {
 		WorldConfig worldConfig = configProvider.getWorldConfig();
 		if (worldConfig.ModeTerrain == WorldConfig.TerrainMode.Normal || worldConfig.ModeTerrain == WorldConfig.TerrainMode.OldGenerator) {
-			this.localWorld.prepareDefaultStructures(x, z, dry);
+			this.localWorld.prepareDefaultStructures(chunkCoord.getChunkX(), chunkCoord.getChunkZ(), dry);
 		}
-
 	}
 
 	protected void generateTerrain(ChunkBuffer chunkBuffer) {
@@ -168,7 +231,10 @@ public class ChunkProviderTC {
 					CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
 		}
 
+		boolean profile = GenerationProfiler.isEnabled();
+		long noiseStart = profile ? System.nanoTime() : 0;
 		generateTerrainNoise(chunkX * four, 0, chunkZ * four, maxYSections, usedYSections);
+		this.noiseNanos = profile ? System.nanoTime() - noiseStart : 0;
 
 		// Now that the raw terrain is generated, replace raw biome array with
 		// fine-tuned one.
@@ -388,6 +454,10 @@ public class ChunkProviderTC {
 		this.noise2 = this.noiseGen2.Noise3D(this.noise2, xOffset, yOffset, zOffset, NOISE_MAX_X, maxYSections, NOISE_MAX_Z, xzScale,
 				yScale, xzScale);
 
+		if (!worldConfig.oldTerrainGenerator) {
+			prepareBiomeFactors();
+		}
+
 		int i3D = 0;
 		int i2D = 0;
 
@@ -501,6 +571,37 @@ public class ChunkProviderTC {
 		this.heightFactor = ySections * (2.0D + noiseHeight) / 4.0D;
 	}
 
+	/**
+	 * Looks up the biome properties that are needed for smoothing, for every
+	 * column in the smoothing window of the chunk. Each column is used for up
+	 * to 25 noise columns, so this avoids looking up the BiomeConfig over and
+	 * over again.
+	 */
+	private void prepareBiomeFactors() {
+		final int windowSize = NOISE_MAX_X + this.maxSmoothDiameter;
+		if (this.windowBiomeHeight == null) {
+			this.windowBiomeHeight = new float[windowSize * windowSize];
+			this.windowBiomeVolatility = new float[windowSize * windowSize];
+			this.windowRiverHeight = new float[windowSize * windowSize];
+			this.windowRiverVolatility = new float[windowSize * windowSize];
+		}
+
+		// Only the columns that can be reached from the noise columns. Biome
+		// generators that cannot generate unzoomed biomes provide a smaller
+		// array, so stop at its end.
+		for (int z = 0; z < NOISE_MAX_Z + this.maxSmoothDiameter - 1; z++) {
+			for (int x = 0; x < NOISE_MAX_X + this.maxSmoothDiameter - 1; x++) {
+				final int index = x + z * windowSize;
+				if (index >= this.biomeArray.length) { return; }
+				final BiomeConfig biomeConfig = toBiomeConfig(this.biomeArray[index]);
+				this.windowBiomeHeight[index] = biomeConfig.biomeHeight;
+				this.windowBiomeVolatility[index] = biomeConfig.biomeVolatility;
+				this.windowRiverHeight[index] = biomeConfig.riverHeight;
+				this.windowRiverVolatility[index] = biomeConfig.riverVolatility;
+			}
+		}
+	}
+
 	private void biomeFactor(int x, int z, int ySections, double noiseHeight) {
 		float volatilitySum = 0.0F;
 		double heightSum = 0.0F;
@@ -510,20 +611,26 @@ public class ChunkProviderTC {
 				this.biomeArray[(x + this.maxSmoothRadius + (z + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))]);
 		final int lookRadius = centerBiomeConfig.smoothRadius;
 
+		final float centerBiomeHeight = centerBiomeConfig.biomeHeight;
+		final int windowSize = NOISE_MAX_X + this.maxSmoothDiameter;
+		final float[] biomeHeights = this.windowBiomeHeight;
+		final float[] biomeVolatilities = this.windowBiomeVolatility;
+		final float[] weights = this.nearBiomeWeightArray;
+
 		float nextBiomeHeight, biomeWeight;
 
 		for (int nextX = -lookRadius; nextX <= lookRadius; nextX++) {
+			final int windowColumn = x + nextX + this.maxSmoothRadius + (z + this.maxSmoothRadius) * windowSize;
+			final int weightColumn = nextX + this.maxSmoothRadius + this.maxSmoothRadius * this.maxSmoothDiameter;
 			for (int nextZ = -lookRadius; nextZ <= lookRadius; nextZ++) {
-				final BiomeConfig nextBiomeConfig = toBiomeConfig(this.biomeArray[(x + nextX + this.maxSmoothRadius
-						+ (z + nextZ + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))]);
+				final int windowIndex = windowColumn + nextZ * windowSize;
 
-				nextBiomeHeight = nextBiomeConfig.biomeHeight;
+				nextBiomeHeight = biomeHeights[windowIndex];
 
-				biomeWeight = this.nearBiomeWeightArray[(nextX + this.maxSmoothRadius
-						+ (nextZ + this.maxSmoothRadius) * this.maxSmoothDiameter)] / (nextBiomeHeight + 2.0F);
+				biomeWeight = weights[weightColumn + nextZ * this.maxSmoothDiameter] / (nextBiomeHeight + 2.0F);
 				biomeWeight = Math.abs(biomeWeight);
-				if (nextBiomeHeight > centerBiomeConfig.biomeHeight) { biomeWeight /= 2.0F; }
-				volatilitySum += nextBiomeConfig.biomeVolatility * biomeWeight;
+				if (nextBiomeHeight > centerBiomeHeight) { biomeWeight /= 2.0F; }
+				volatilitySum += biomeVolatilities[windowIndex] * biomeWeight;
 				heightSum += nextBiomeHeight * biomeWeight;
 				biomeWeightSum += biomeWeight;
 			}
@@ -560,40 +667,45 @@ public class ChunkProviderTC {
 
 		final float riverCenterHeight = this.riverFound ? biomeConfig.riverHeight : biomeConfig.biomeHeight;
 
-		BiomeConfig nextBiomeConfig;
-		float nextBiomeHeight, biomeWeight, nextRiverHeight, riverWeight;
+		final float centerBiomeHeight = biomeConfig.biomeHeight;
+		final int windowSize = NOISE_MAX_X + this.maxSmoothDiameter;
+		final float[] biomeHeights = this.windowBiomeHeight;
+		final float[] biomeVolatilities = this.windowBiomeVolatility;
+		final float[] weights = this.nearBiomeWeightArray;
+
+		float nextBiomeHeight, biomeWeight, nextBiomeVolatility, nextRiverHeight, riverWeight, nearWeight;
 
 		for (int nextX = -lookRadius; nextX <= lookRadius; nextX++) {
+			final int windowColumn = x + nextX + this.maxSmoothRadius + (z + this.maxSmoothRadius) * windowSize;
+			final int weightColumn = nextX + this.maxSmoothRadius + this.maxSmoothRadius * this.maxSmoothDiameter;
 			for (int nextZ = -lookRadius; nextZ <= lookRadius; nextZ++) {
+				final int windowIndex = windowColumn + nextZ * windowSize;
 
-				nextBiomeConfig = toBiomeConfig(this.biomeArray[(x + nextX + this.maxSmoothRadius
-						+ (z + nextZ + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))]);
-				nextBiomeHeight = nextBiomeConfig.biomeHeight;
-				biomeWeight = this.nearBiomeWeightArray[(nextX + this.maxSmoothRadius
-						+ (nextZ + this.maxSmoothRadius) * this.maxSmoothDiameter)] / (nextBiomeHeight + 2.0F);
+				nextBiomeHeight = biomeHeights[windowIndex];
+				nextBiomeVolatility = biomeVolatilities[windowIndex];
+				nearWeight = weights[weightColumn + nextZ * this.maxSmoothDiameter];
+				biomeWeight = nearWeight / (nextBiomeHeight + 2.0F);
 
 				biomeWeight = Math.abs(biomeWeight);
-				if (nextBiomeHeight > biomeConfig.biomeHeight) { biomeWeight /= 2.0F; }
-				volatilitySum += nextBiomeConfig.biomeVolatility * biomeWeight;
+				if (nextBiomeHeight > centerBiomeHeight) { biomeWeight /= 2.0F; }
+				volatilitySum += nextBiomeVolatility * biomeWeight;
 				heightSum += nextBiomeHeight * biomeWeight;
 				WeightSum += biomeWeight;
 
 				// River part
 
 				boolean isRiver = false;
-				if (this.riverArray[(x + nextX + this.maxSmoothRadius
-						+ (z + nextZ + this.maxSmoothRadius) * (NOISE_MAX_X + this.maxSmoothDiameter))] == 1) {
+				if (this.riverArray[windowIndex] == 1) {
 					this.riverFound = true;
 					isRiver = true;
 				}
 
-				nextRiverHeight = (isRiver) ? nextBiomeConfig.riverHeight : nextBiomeHeight;
-				riverWeight = this.nearBiomeWeightArray[(nextX + this.maxSmoothRadius
-						+ (nextZ + this.maxSmoothRadius) * this.maxSmoothDiameter)] / (nextRiverHeight + 2.0F);
+				nextRiverHeight = (isRiver) ? this.windowRiverHeight[windowIndex] : nextBiomeHeight;
+				riverWeight = nearWeight / (nextRiverHeight + 2.0F);
 
 				riverWeight = Math.abs(riverWeight);
 				if (nextRiverHeight > riverCenterHeight) { nextRiverHeight = riverCenterHeight; }
-				riverVolatilitySum += (isRiver ? nextBiomeConfig.riverVolatility : nextBiomeConfig.biomeVolatility) * riverWeight;
+				riverVolatilitySum += (isRiver ? this.windowRiverVolatility[windowIndex] : nextBiomeVolatility) * riverWeight;
 				riverHeightSum += nextRiverHeight * riverWeight;
 				riverWeightSum += riverWeight;
 			}
@@ -621,6 +733,29 @@ public class ChunkProviderTC {
 		this.riverHeight = ySections * (2.0D + riverHeightSum + noiseHeight * 0.2D) / 4.0D;
 	}
 
+	/**
+	 * Places the blocks of the SurfaceAndGroundControl setting of the biome
+	 * of each column.
+	 *
+	 * @param chunkBuffer The generated chunk.
+	 */
+	protected void addComplexSurfaceBlocks(ChunkBuffer chunkBuffer) {
+		ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
+		// These blocks used to be placed during population, which used the
+		// noise of the top left chunk for the population area. Keep using
+		// the same noise by offsetting it half a chunk.
+		this.surfaceNoise = this.surfaceNoiseGen.a(this.surfaceNoise, chunkCoord.getBlockX() - CHUNK_X_SIZE / 2,
+				chunkCoord.getBlockZ() - CHUNK_Z_SIZE / 2, CHUNK_X_SIZE, CHUNK_Z_SIZE, 0.0625D, 0.0625D, 1.0D);
+
+		long worldSeed = this.localWorld.getSeed();
+		for (int x = 0; x < CHUNK_X_SIZE; x++) {
+			for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+				BiomeConfig biomeConfig = toBiomeConfig(this.biomeArray[x + z * CHUNK_X_SIZE]);
+				biomeConfig.surfaceAndGroundControl.spawn(worldSeed, chunkBuffer, biomeConfig, this.surfaceNoise[x + z * CHUNK_X_SIZE], x, z);
+			}
+		}
+	}
+
 	/**
 	 * Gets the BiomeConfig with the given id.
 	 * 
@@ -0,0 +1,280 @@
+package com.khorn.terraincontrol.generator;
+
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.logging.LogMarker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how long each stage of terrain generation and population takes.
+ * Every stage is split up in groups, usually the biome the chunk is in, so
+ * that slow biomes or resources can be found.
+ *
+ * <p>
+ * Profiling is disabled by default. While disabled, the generators only
+ * check {@link #isEnabled()}, so that there is no overhead. Timings can be
+ * recorded from any thread.
+ */
+public final class GenerationProfiler {
+	/**
+	 * Bucket i of the histogram holds the timings shorter than 2^i
+	 * microseconds, the last bucket holds everything longer.
+	 */
+	private static final int HISTOGRAM_BUCKETS = 24;
+
+	/**
+	 * Timings of a single stage or group.
+	 */
+	public static final class Timer {
+		private final String name;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+		Timer(String name) {
+			this.name = name;
+		}
+
+		void add(long nanos) {
+			count.increment();
+			totalNanos.add(nanos);
+			long max;
+			do {
+				max = maxNanos.get();
+			} while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+
+			long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+			int bucket = 64 - Long.numberOfLeadingZeros(micros);
+			histogram.incrementAndGet(Math.min(bucket, HISTOGRAM_BUCKETS - 1));
+		}
+
+		/**
+		 * Gets the name of the stage or group.
+		 *
+		 * @return The name.
+		 */
+		public String getName() { return name; }
+
+		/**
+		 * Gets how many times the stage was executed.
+		 *
+		 * @return The amount.
+		 */
+		public long getCount() { return count.sum(); }
+
+		/**
+		 * Gets the total time spent in the stage.
+		 *
+		 * @return The time, in nanoseconds.
+		 */
+		public long getTotalNanos() { return totalNanos.sum(); }
+
+		/**
+		 * Gets the longest time spent in the stage at once.
+		 *
+		 * @return The time, in nanoseconds.
+		 */
+		public long getMaxNanos() { return maxNanos.get(); }
+
+		/**
+		 * Estimates the time that the given fraction of all executions of
+		 * the stage stays below. The estimate is rounded up to the next power
+		 * of two.
+		 *
+		 * @param fraction The fraction, for example 0.99.
+		 * @return The time, in microseconds.
+		 */
+		public long getPercentileMicros(double fraction) {
+			long total = 0;
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+				total += histogram.get(i);
+			}
+			long wanted = (long) Math.ceil(total * fraction);
+			long seen = 0;
+			for (int i = 0; i < HISTOGRAM_BUCKETS - 1; i++) {
+				seen += histogram.get(i);
+				if (seen >= wanted) { return 1L << i; }
+			}
+			return TimeUnit.NANOSECONDS.toMicros(getMaxNanos());
+		}
+
+		/**
+		 * Gets a single line describing the timings.
+		 *
+		 * @return The line.
+		 */
+		public String format() {
+			long count = getCount();
+			long total = getTotalNanos();
+			return String.format(Locale.ROOT, "%s: %d times, %.1f ms total, %.1f us avg, p99 < %d us, max %.1f us", name, count,
+					total / 1e6, count == 0 ? 0.0 : total / 1e3 / count, getPercentileMicros(0.99), getMaxNanos() / 1e3);
+		}
+	}
+
+	private static final class Stage {
+		private final Timer total;
+		private final ConcurrentHashMap<String, Timer> groups = new ConcurrentHashMap<>();
+
+		Stage(String name) {
+			this.total = new Timer(name);
+		}
+	}
+
+	private static final ConcurrentHashMap<String, Stage> stages = new ConcurrentHashMap<>();
+	private static final AtomicLong nextLogTime = new AtomicLong();
+	private static volatile boolean enabled = false;
+	private static volatile long logIntervalNanos = 0;
+
+	private GenerationProfiler() {}
+
+	/**
+	 * Gets whether timings should be recorded.
+	 *
+	 * @return True if profiling is enabled.
+	 */
+	public static boolean isEnabled() { return enabled; }
+
+	/**
+	 * Starts recording timings. Timings recorded earlier are kept.
+	 *
+	 * @param logIntervalSeconds The results are logged every this amount of
+	 *                           seconds. Use 0 to never log the results.
+	 */
+	public static void start(int logIntervalSeconds) {
+		logIntervalNanos = TimeUnit.SECONDS.toNanos(Math.max(0, logIntervalSeconds));
+		nextLogTime.set(System.nanoTime() + logIntervalNanos);
+		enabled = true;
+	}
+
+	/**
+	 * Stops recording timings. The recorded timings are kept.
+	 */
+	public static void stop() {
+		enabled = false;
+	}
+
+	/**
+	 * Removes all recorded timings.
+	 */
+	public static void reset() {
+		stages.clear();
+	}
+
+	/**
+	 * Records the time spent in a stage.
+	 *
+	 * @param stage The name of the stage.
+	 * @param group The name of the group, usually the biome.
+	 * @param nanos The time spent, in nanoseconds.
+	 */
+	public static void record(String stage, String group, long nanos) {
+		Stage timers = stages.computeIfAbsent(stage, Stage::new);
+		timers.total.add(nanos);
+		timers.groups.computeIfAbsent(group, Timer::new).add(nanos);
+
+		long interval = logIntervalNanos;
+		if (interval > 0) {
+			long now = System.nanoTime();
+			long next = nextLogTime.get();
+			if (now - next >= 0 && nextLogTime.compareAndSet(next, now + interval)) {
+				logResults(10);
+			}
+		}
+	}
+
+	/**
+	 * Records the time spent in a stage that started at the given time.
+	 *
+	 * @param stage      The name of the stage.
+	 * @param group      The name of the group, usually the biome.
+	 * @param startNanos The start time, from {@link System#nanoTime()}.
+	 * @return The current time, so that it can be used as the start time of
+	 *         the next stage.
+	 */
+	public static long lap(String stage, String group, long startNanos) {
+		long now = System.nanoTime();
+		record(stage, group, now - startNanos);
+		return now;
+	}
+
+	/**
+	 * Gets the timings of all stages, slowest first.
+	 *
+	 * @return The timings.
+	 */
+	public static List<Timer> getStages() {
+		List<Timer> timers = new ArrayList<>();
+		for (Stage stage : stages.values()) {
+			timers.add(stage.total);
+		}
+		return sortByTotal(timers);
+	}
+
+	/**
+	 * Gets the timings of all groups of a stage, slowest first.
+	 *
+	 * @param stage Name of the stage.
+	 * @return The timings, or an empty list if the stage was never recorded.
+	 */
+	public static List<Timer> getGroups(String stage) {
+		Stage timers = stages.get(stage);
+		if (timers == null) { return new ArrayList<>(); }
+		return sortByTotal(timers.groups.values());
+	}
+
+	/**
+	 * Gets the timings of all groups of all stages, slowest first.
+	 *
+	 * @return The timings, named after both the stage and the group.
+	 */
+	public static List<Timer> getAllGroups() {
+		List<Timer> timers = new ArrayList<>();
+		for (Stage stage : stages.values()) {
+			for (Timer group : stage.groups.values()) {
+				Timer named = new Timer(stage.total.name + " (" + group.name + ")");
+				named.count.add(group.getCount());
+				named.totalNanos.add(group.getTotalNanos());
+				named.maxNanos.set(group.getMaxNanos());
+				for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+					named.histogram.set(i, group.histogram.get(i));
+				}
+				timers.add(named);
+			}
+		}
+		return sortByTotal(timers);
+	}
+
+	private static List<Timer> sortByTotal(Collection<Timer> timers) {
+		List<Timer> sorted = new ArrayList<>(timers);
+		sorted.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+		return sorted;
+	}
+
+	/**
+	 * Logs the timings of all stages and of the slowest groups.
+	 *
+	 * @param maxGroups Maximum amount of groups to log.
+	 */
+	public static void logResults(int maxGroups) {
+		List<String> lines = new ArrayList<>();
+		lines.add("Generation profiler results:");
+		for (Timer stage : getStages()) {
+			lines.add("  " + stage.format());
+		}
+		lines.add("Slowest stages per group:");
+		List<Timer> groups = getAllGroups();
+		for (Timer group : groups.subList(0, Math.min(maxGroups, groups.size()))) {
+			lines.add("  " + group.format());
+		}
+		TerrainControl.log(LogMarker.INFO, lines);
+	}
+}
@@ -55,52 +55,90 @@ public class ObjectSpawner {
 		long l2 = this.rand.nextLong() / 2L * 2L + 1L;
 		this.rand.setSeed(chunkCoord.getChunkX() * l1 + chunkCoord.getChunkZ() * l2 ^ resourcesSeed);
 
+		boolean profile = GenerationProfiler.isEnabled();
+		String biomeName = biome.getName();
+		long time = profile ? System.nanoTime() : 0;
+
 		// Generate structures
 		boolean hasGeneratedAVillage = world.placeDefaultStructures(rand, chunkCoord);
+		if (profile) { time = GenerationProfiler.lap("Structures", biomeName, time); }
 
 		// Mark population started
 		world.startPopulation(chunkCoord);
 		TerrainControl.firePopulationStartEvent(world, rand, hasGeneratedAVillage, chunkCoord);
 
-		// Complex surface blocks
+		// Complex surface blocks of chunks generated by older versions
 		placeComplexSurfaceBlocks(chunkCoord);
+		if (profile) { time = GenerationProfiler.lap("Complex surface", biomeName, time); }
 
 		// Resource sequence
 		for (Resource res : biomeConfig.resourceSequence) {
 			res.process(world, rand, hasGeneratedAVillage, chunkCoord);
+			if (profile) { time = GenerationProfiler.lap("Resource " + res.getClass().getSimpleName(), biomeName, time); }
 		}
 
 		// Animals
 		world.placePopulationMobs(biome, rand, chunkCoord);
+		if (profile) { time = GenerationProfiler.lap("Mobs", biomeName, time); }
 
 		// Snow and ice
 		freezeChunk(chunkCoord);
+		if (profile) { time = GenerationProfiler.lap("Freeze", biomeName, time); }
 
 		// Replace blocks
 		world.replaceBlocks(chunkCoord);
+		if (profile) { GenerationProfiler.lap("Replace", biomeName, time); }
 
 		// Mark population ended
 		TerrainControl.firePopulationEndEvent(world, rand, hasGeneratedAVillage, chunkCoord);
 		world.endPopulation();
 	}
 
+	/**
+	 * Places the SurfaceAndGroundControl blocks in the parts of the
+	 * population area that belong to chunks generated by an older version.
+	 * Those versions placed these blocks during population, and newer
+	 * versions during generation, see
+	 * {@link LocalWorld#isComplexSurfaceGenerated(ChunkCoordinate)}.
+	 *
+	 * @param chunkCoord The top left chunk of the population area.
+	 */
 	protected void placeComplexSurfaceBlocks(ChunkCoordinate chunkCoord) {
+		// The four chunks of the population area, null if they already have
+		// their surface
+		ChunkBuffer[] oldChunks = new ChunkBuffer[4];
+		boolean hasOldChunks = false;
+		for (int index = 0; index < 4; index++) {
+			ChunkCoordinate oldChunk = ChunkCoordinate.fromChunkCoords(chunkCoord.getChunkX() + (index & 1), chunkCoord.getChunkZ() + (index >> 1));
+			if (!world.isComplexSurfaceGenerated(oldChunk)) {
+				oldChunks[index] = new WorldChunkBuffer(world, oldChunk);
+				hasOldChunks = true;
+			}
+		}
+		if (!hasOldChunks) { return; }
+
 		this.reusableChunkNoiseArray = this.noiseGen.a(this.reusableChunkNoiseArray, chunkCoord.getChunkX() * 16,
 				chunkCoord.getChunkZ() * 16, 16, 16, 0.0625D, 0.0625D, 1.0D);
 
+		long worldSeed = world.getSeed();
 		int x = chunkCoord.getBlockXCenter();
 		int z = chunkCoord.getBlockZCenter();
 		for (int i = 0; i < ChunkCoordinate.CHUNK_X_SIZE; i++) {
 			for (int j = 0; j < ChunkCoordinate.CHUNK_Z_SIZE; j++) {
+				// The area starts in the middle of the top left chunk
+				ChunkBuffer chunk = oldChunks[(i + 8) >> 4 | ((j + 8) >> 4) << 1];
+				if (chunk == null) { continue; }
+
 				int blockToReplaceX = x + i;
 				int blockToReplaceZ = z + j;
+
 				// Using the calculated biome id so that ReplaceToBiomeName can't mess up the
 				// ids
 				LocalBiome biome = this.world.getBiome(blockToReplaceX, blockToReplaceZ);
 				if (biome != null) {
 					double noise = this.reusableChunkNoiseArray[i + j * 16];
 					BiomeConfig biomeConfig = biome.getBiomeConfig();
-					biomeConfig.surfaceAndGroundControl.spawn(world, biomeConfig, noise, blockToReplaceX, blockToReplaceZ);
+					biomeConfig.surfaceAndGroundControl.spawn(worldSeed, chunk, biomeConfig, noise, blockToReplaceX & 0xF, blockToReplaceZ & 0xF);
 				}
 			}
 		}
@@ -0,0 +1,213 @@
+package com.khorn.terraincontrol.generator;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.configuration.ConfigProvider;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.generator.biome.VanillaBiomeGenerator;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Generates the blocks of chunks on a pool of worker threads. Every worker
+ * thread gets its own {@link ChunkProviderTC}, so that the noise arrays of
+ * the terrain generator are never shared between threads.
+ *
+ * <p>
+ * Only {@link ChunkProviderTC#generateBlocks(ChunkBuffer)} is executed on the
+ * workers. Everything that touches the world (structures, converting the
+ * buffer to a real chunk, lighting) must be done by the caller of
+ * {@link #take(ChunkCoordinate)}.
+ *
+ * <p>
+ * Chunks that are requested, but never taken, are kept in a buffer of a fixed
+ * size. When the buffer is full, the chunk that was requested or taken the
+ * longest ago is discarded, or cancelled if no worker has started on it yet.
+ *
+ * @param <T> Type of the chunk buffers.
+ */
+public class ParallelChunkGenerator<T extends ChunkBuffer> {
+
+	/**
+	 * Blocks of a chunk that were generated by the worker threads.
+	 *
+	 * @param <T> Type of the chunk buffer.
+	 */
+	public static class GeneratedChunk<T extends ChunkBuffer> {
+		private final T chunkBuffer;
+		private final boolean dry;
+
+		GeneratedChunk(T chunkBuffer, boolean dry) {
+			this.chunkBuffer = chunkBuffer;
+			this.dry = dry;
+		}
+
+		/**
+		 * Gets the chunk buffer holding the generated blocks.
+		 *
+		 * @return The chunk buffer.
+		 */
+		public T getChunkBuffer() { return chunkBuffer; }
+
+		/**
+		 * Gets whether there is a lot of water in this chunk.
+		 *
+		 * @return The value returned by
+		 *         {@link ChunkProviderTC#generateBlocks(ChunkBuffer)}.
+		 */
+		public boolean isDry() { return dry; }
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final ThreadLocal<ChunkProviderTC> generators;
+	private final Function<ChunkCoordinate, T> bufferFactory;
+	/**
+	 * Requested chunks, in access order. Guarded by itself.
+	 */
+	private final Map<ChunkCoordinate, FutureTask<GeneratedChunk<T>>> pending;
+
+	/**
+	 * Creates a new generator.
+	 *
+	 * @param configs       The settings of the world.
+	 * @param world         The world.
+	 * @param threads       Amount of worker threads.
+	 * @param bufferSize    Maximum amount of requested chunks that are kept.
+	 * @param bufferFactory Creates an empty chunk buffer for a chunk.
+	 * @see #isSupported(WorldConfig)
+	 */
+	public ParallelChunkGenerator(final ConfigProvider configs, final LocalWorld world, int threads, final int bufferSize,
+			Function<ChunkCoordinate, T> bufferFactory) {
+		this.bufferFactory = bufferFactory;
+		this.generators = ThreadLocal.withInitial(() -> new ChunkProviderTC(configs, world));
+		this.pending = new LinkedHashMap<ChunkCoordinate, FutureTask<GeneratedChunk<T>>>(bufferSize, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ChunkCoordinate, FutureTask<GeneratedChunk<T>>> eldest) {
+				if (size() <= bufferSize) { return false; }
+				// Does nothing if the chunk is already generated
+				eldest.getValue().cancel(false);
+				return true;
+			}
+		};
+
+		this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				new WorkerThreadFactory(world.getName()));
+		// Let the threads die when no chunks are being generated, so that
+		// idle worlds don't keep them around
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Gets whether the blocks can be generated off the main thread for the
+	 * given settings. The vanilla biome generator isn't thread safe, the old
+	 * terrain generator shares its noise arrays with the old biome generator
+	 * and the saved biomes can only be read on the main thread.
+	 *
+	 * @param worldConfig The settings of the world.
+	 * @return True if this generator can be used, false otherwise.
+	 */
+	public static boolean isSupported(WorldConfig worldConfig) {
+		if (worldConfig.ModeTerrain != WorldConfig.TerrainMode.Normal && worldConfig.ModeTerrain != WorldConfig.TerrainMode.TerrainTest) {
+			return false;
+		}
+		if (VanillaBiomeGenerator.class.isAssignableFrom(worldConfig.biomeMode)) { return false; }
+		return !worldConfig.populateUsingSavedBiomes;
+	}
+
+	/**
+	 * Schedules the given chunk for generation, if it isn't scheduled
+	 * already. If the buffer is full, the least recently used chunk is
+	 * discarded.
+	 *
+	 * @param chunkCoord The chunk.
+	 * @return True if the chunk was scheduled, false if it already was.
+	 */
+	public boolean request(final ChunkCoordinate chunkCoord) {
+		FutureTask<GeneratedChunk<T>> task;
+		synchronized (pending) {
+			// Also marks the chunk as recently used
+			if (pending.get(chunkCoord) != null) { return false; }
+			task = new FutureTask<>(() -> generateOnCurrentThread(chunkCoord));
+			pending.put(chunkCoord, task);
+		}
+		executor.execute(task);
+		return true;
+	}
+
+	/**
+	 * Gets the generated blocks of the given chunk. If the chunk was
+	 * requested, this method waits for the worker thread to finish it.
+	 * Otherwise, or if no worker has started on it yet, the chunk is
+	 * generated on the current thread.
+	 *
+	 * @param chunkCoord The chunk.
+	 * @return The generated chunk.
+	 */
+	public GeneratedChunk<T> take(ChunkCoordinate chunkCoord) {
+		FutureTask<GeneratedChunk<T>> task;
+		synchronized (pending) {
+			task = pending.remove(chunkCoord);
+		}
+		if (task == null) { return generateOnCurrentThread(chunkCoord); }
+
+		// Does nothing if a worker is already busy with it
+		task.run();
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return generateOnCurrentThread(chunkCoord);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Failed to generate chunk " + chunkCoord, e.getCause());
+		}
+	}
+
+	/**
+	 * Stops all worker threads. Chunks that are still pending are discarded.
+	 * Must be called when the world is unloaded. The generator of the
+	 * calling thread is released too, so this should be called from the
+	 * thread that calls {@link #take(ChunkCoordinate)}.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		synchronized (pending) {
+			pending.clear();
+		}
+		generators.remove();
+	}
+
+	private GeneratedChunk<T> generateOnCurrentThread(ChunkCoordinate chunkCoord) {
+		T chunkBuffer = bufferFactory.apply(chunkCoord);
+		boolean dry = generators.get().generateBlocks(chunkBuffer);
+		return new GeneratedChunk<>(chunkBuffer, dry);
+	}
+
+	private static class WorkerThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+		private final String worldName;
+
+		WorkerThreadFactory(String worldName) {
+			this.worldName = worldName;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "TerrainControl generator " + threadNumber.getAndIncrement() + " (" + worldName + ")");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		}
+	}
+
+}
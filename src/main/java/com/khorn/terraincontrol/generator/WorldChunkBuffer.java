@@ -0,0 +1,39 @@
+package com.khorn.terraincontrol.generator;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+/**
+ * A chunk buffer that reads and writes the blocks of a chunk that is
+ * already in the world. Used to run generation code that works on chunk
+ * buffers during population.
+ */
+final class WorldChunkBuffer implements ChunkBuffer {
+	private final LocalWorld world;
+	private final ChunkCoordinate chunkCoord;
+
+	WorldChunkBuffer(LocalWorld world, ChunkCoordinate chunkCoord) {
+		this.world = world;
+		this.chunkCoord = chunkCoord;
+	}
+
+	@Override
+	public ChunkCoordinate getChunkCoordinate() { return this.chunkCoord; }
+
+	@Override
+	public void setBlock(int blockX, int blockY, int blockZ, LocalMaterialData material) {
+		this.world.setBlock(this.chunkCoord.getBlockX() + blockX, blockY, this.chunkCoord.getBlockZ() + blockZ, material);
+	}
+
+	@Override
+	public LocalMaterialData getBlock(int blockX, int blockY, int blockZ) {
+		return this.world.getMaterial(this.chunkCoord.getBlockX() + blockX, blockY, this.chunkCoord.getBlockZ() + blockZ);
+	}
+
+	@Override
+	public int getPackedBlock(int blockX, int blockY, int blockZ) {
+		LocalMaterialData material = this.getBlock(blockX, blockY, blockZ);
+		return material.getBlockId() << 4 | (material.getBlockData() & 0xF);
+	}
+}
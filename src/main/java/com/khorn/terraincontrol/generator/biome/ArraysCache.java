@@ -10,9 +10,20 @@ public class ArraysCache {
 	private int bigArraysNext = 0;
 
 	public boolean isFree = true;
+	/**
+	 * Thread that got this cache, see {@link ArraysCacheManager}.
+	 */
+	Thread owner;
 
 	public OutputType outputType = OutputType.FULL;
 
+	/**
+	 * Random state of the layer that is currently being evaluated. The
+	 * layers themselves don't hold any state while generating, so that they
+	 * can be used by multiple threads, each with their own cache.
+	 */
+	public long chunkSeed;
+
 	public ArraysCache() {
 
 	}
@@ -21,7 +32,9 @@ public class ArraysCache {
 		smallArraysNext = 0;
 		bigArraysNext = 0;
 		isFree = true;
+		owner = null;
 		outputType = OutputType.FULL;
+		chunkSeed = 0;
 	}
 
 	public int[] getArray(int size) {
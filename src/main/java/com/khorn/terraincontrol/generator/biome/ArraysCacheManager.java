@@ -1,27 +1,80 @@
 package com.khorn.terraincontrol.generator.biome;
 
-@SuppressWarnings("rawtypes")
-public class ArraysCacheManager {
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.logging.LogMarker;
+
+import java.util.ArrayDeque;
 
-	private static final ArraysCache[] ARRAYS_CACHES = new ArraysCache[4];
+/**
+ * Hands out {@link ArraysCache} instances. Every thread has its own pool of
+ * caches, so the layers can be evaluated on any number of threads at once,
+ * and a thread never has to wait for a cache. The arrays of a released cache
+ * are reused by the next call on the same thread.
+ */
+public class ArraysCacheManager {
 
-	static {
-		for (int i = 0; i < ARRAYS_CACHES.length; i++)
-			ARRAYS_CACHES[i] = new ArraysCache();
+	/**
+	 * Holds the caches of a single thread.
+	 */
+	private static class ThreadPool {
+		private final ArrayDeque<ArraysCache> free = new ArrayDeque<>();
+		private int inUse;
+		private boolean leakReported;
 	}
 
+	/**
+	 * A single biome lookup needs one cache, nested lookups need a few more.
+	 * More caches in use at once on a single thread means that caches are
+	 * not released.
+	 */
+	private static final int LEAK_WARNING_THRESHOLD = 16;
+
+	private static final ThreadLocal<ThreadPool> POOLS = ThreadLocal.withInitial(ThreadPool::new);
+
+	/**
+	 * Gets a cache for the current thread. The cache must be released using
+	 * {@link #ReleaseCache(ArraysCache)} on the same thread.
+	 *
+	 * @return The cache, never null.
+	 */
 	public static ArraysCache GetCache() {
-		for (ArraysCache cache : ARRAYS_CACHES) {
-			if (cache.isFree) {
-				cache.isFree = false;
-				return cache;
-			}
+		ThreadPool pool = POOLS.get();
+		ArraysCache cache = pool.free.pollFirst();
+		if (cache == null) { cache = new ArraysCache(); }
+		cache.isFree = false;
+		cache.owner = Thread.currentThread();
+
+		pool.inUse++;
+		if (pool.inUse > LEAK_WARNING_THRESHOLD && !pool.leakReported) {
+			pool.leakReported = true;
+			TerrainControl.log(LogMarker.WARN, "{} biome array caches are in use on thread {}, some caches are never released",
+					pool.inUse, Thread.currentThread().getName());
 		}
-		return null;
+		return cache;
 	}
 
+	/**
+	 * Releases a cache, so that its arrays can be reused.
+	 *
+	 * @param cache The cache, must be obtained on the current thread.
+	 */
 	public static void ReleaseCache(ArraysCache cache) {
+		if (cache.isFree) {
+			TerrainControl.log(LogMarker.WARN, "Biome array cache is released twice on thread {}", Thread.currentThread().getName());
+			return;
+		}
+		if (cache.owner != Thread.currentThread()) {
+			// Don't mix up the pools, just let this cache be garbage collected
+			TerrainControl.log(LogMarker.WARN, "Biome array cache of thread {} is released on thread {}", cache.owner.getName(),
+					Thread.currentThread().getName());
+			cache.release();
+			return;
+		}
+
+		ThreadPool pool = POOLS.get();
 		cache.release();
+		pool.inUse--;
+		pool.free.addFirst(cache);
 	}
 
 	private ArraysCacheManager() {}
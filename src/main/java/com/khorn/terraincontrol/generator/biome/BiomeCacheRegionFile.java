@@ -0,0 +1,141 @@
+package com.khorn.terraincontrol.generator.biome;
+
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapped file holding the biomes of a region of 32x32 chunks. For
+ * every chunk both the biomes (16x16) and the unzoomed biomes (4x4) are
+ * stored, each with a flag whether they are present.
+ *
+ * <p>
+ * The file starts with a header holding the seed and a fingerprint of the
+ * settings that the biomes were generated with. If those don't match the
+ * current world, the file is cleared.
+ *
+ * <p>
+ * This class is not thread safe, {@link PersistentBiomeCache} takes care of
+ * that.
+ *
+ * @see PersistentBiomeCache
+ */
+class BiomeCacheRegionFile {
+	static final int REGION_CHUNKS_BITS = 5;
+	static final int REGION_CHUNKS = 1 << REGION_CHUNKS_BITS;
+
+	private static final int MAGIC = 0x54434243; // "TCBC"
+	private static final int VERSION = 1;
+
+	private static final int CHUNKS = REGION_CHUNKS * REGION_CHUNKS;
+	private static final int BIOMES_PER_CHUNK = ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Z_SIZE;
+	private static final int UNZOOMED_BIOMES_PER_CHUNK = BIOMES_PER_CHUNK / 16;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+	private static final int PRESENT_OFFSET = HEADER_SIZE;
+	private static final int PRESENT_UNZOOMED_OFFSET = PRESENT_OFFSET + CHUNKS / 8;
+	private static final int BIOMES_OFFSET = PRESENT_UNZOOMED_OFFSET + CHUNKS / 8;
+	private static final int UNZOOMED_BIOMES_OFFSET = BIOMES_OFFSET + CHUNKS * BIOMES_PER_CHUNK * 2;
+	private static final int FILE_SIZE = UNZOOMED_BIOMES_OFFSET + CHUNKS * UNZOOMED_BIOMES_PER_CHUNK * 2;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * Opens or creates the region file.
+	 *
+	 * @param file        The file.
+	 * @param seed        Seed of the world.
+	 * @param fingerprint Fingerprint of the settings of the world.
+	 * @throws IOException If the file cannot be opened.
+	 */
+	BiomeCacheRegionFile(File file, long seed, long fingerprint) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		boolean valid = channel.size() == FILE_SIZE;
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+
+		if (!valid || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != seed
+				|| buffer.getLong(16) != fingerprint) {
+			// New file, or generated with other settings
+			for (int i = PRESENT_OFFSET; i < BIOMES_OFFSET; i++) {
+				buffer.put(i, (byte) 0);
+			}
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putLong(8, seed);
+			buffer.putLong(16, fingerprint);
+		}
+	}
+
+	private static int chunkIndex(int chunkX, int chunkZ) {
+		return (chunkX & (REGION_CHUNKS - 1)) | (chunkZ & (REGION_CHUNKS - 1)) << REGION_CHUNKS_BITS;
+	}
+
+	private boolean isPresent(int flagsOffset, int chunkIndex) {
+		return (buffer.get(flagsOffset + (chunkIndex >> 3)) & (1 << (chunkIndex & 7))) != 0;
+	}
+
+	private void setPresent(int flagsOffset, int chunkIndex) {
+		int position = flagsOffset + (chunkIndex >> 3);
+		buffer.put(position, (byte) (buffer.get(position) | (1 << (chunkIndex & 7))));
+	}
+
+	/**
+	 * Reads the biomes of a chunk.
+	 *
+	 * @param chunkX   X position of the chunk.
+	 * @param chunkZ   Z position of the chunk.
+	 * @param unzoomed True to read the unzoomed (4x4) biomes, false to read
+	 *                 the normal (16x16) biomes.
+	 * @return The biomes, or null if they aren't saved.
+	 */
+	int[] read(int chunkX, int chunkZ, boolean unzoomed) {
+		int chunkIndex = chunkIndex(chunkX, chunkZ);
+		if (!isPresent(unzoomed ? PRESENT_UNZOOMED_OFFSET : PRESENT_OFFSET, chunkIndex)) { return null; }
+
+		int size = unzoomed ? UNZOOMED_BIOMES_PER_CHUNK : BIOMES_PER_CHUNK;
+		int position = (unzoomed ? UNZOOMED_BIOMES_OFFSET : BIOMES_OFFSET) + chunkIndex * size * 2;
+		int[] biomes = new int[size];
+		for (int i = 0; i < size; i++) {
+			biomes[i] = buffer.getShort(position + i * 2);
+		}
+		return biomes;
+	}
+
+	/**
+	 * Saves the biomes of a chunk.
+	 *
+	 * @param chunkX   X position of the chunk.
+	 * @param chunkZ   Z position of the chunk.
+	 * @param unzoomed True if the biomes are unzoomed (4x4), false if they
+	 *                 are normal (16x16).
+	 * @param biomes   The biomes.
+	 */
+	void write(int chunkX, int chunkZ, boolean unzoomed, int[] biomes) {
+		int chunkIndex = chunkIndex(chunkX, chunkZ);
+		int size = unzoomed ? UNZOOMED_BIOMES_PER_CHUNK : BIOMES_PER_CHUNK;
+		int position = (unzoomed ? UNZOOMED_BIOMES_OFFSET : BIOMES_OFFSET) + chunkIndex * size * 2;
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(position);
+		for (int i = 0; i < size; i++) {
+			slice.putShort((short) biomes[i]);
+		}
+		setPresent(unzoomed ? PRESENT_UNZOOMED_OFFSET : PRESENT_OFFSET, chunkIndex);
+	}
+
+	/**
+	 * Closes the file. The mapping itself stays valid until it is garbage
+	 * collected, the operating system writes the changes to disk.
+	 *
+	 * @throws IOException If closing fails.
+	 */
+	void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+}
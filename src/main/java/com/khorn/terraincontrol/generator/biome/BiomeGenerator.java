@@ -106,6 +106,15 @@ public abstract class BiomeGenerator {
 		}
 	}
 
+	/**
+	 * Releases the resources of this biome generator, like open files.
+	 * Called when the world is unloaded. The default implementation does
+	 * nothing.
+	 */
+	public void close() {
+		// Nothing to release
+	}
+
 	public boolean canGenerateUnZoomed() {
 		return false;
 	}
@@ -119,6 +128,15 @@ public abstract class BiomeGenerator {
 	 */
 	public boolean isCached() { return false; }
 
+	/**
+	 * Gets whether this biome generator can be used by multiple threads at
+	 * the same time. Generators that are not thread safe are only called by
+	 * one thread at a time.
+	 * 
+	 * @return True if this biome generator is thread safe, false otherwise.
+	 */
+	public boolean isThreadSafe() { return false; }
+
 	/**
 	 * Biome generators can be wrapped, for example to cache another biome
 	 * generator. This method returns the unwrapped biome generator. If this
@@ -4,6 +4,7 @@ import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.logging.LogMarker;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -73,14 +74,28 @@ public class BiomeModeManager {
 	/**
 	 * Same as {@link #create(Class, LocalWorld)}, but the returned biome
 	 * generator is now guaranteed to be cached: if the generator with the
-	 * given class isn't cached, it is wrapped in a cache.
+	 * given class isn't cached, it is wrapped in a cache. The biomes are
+	 * never saved to disk.
 	 * 
 	 * @param biomeModeClass Class to create a biome generator from.
 	 * @param world          World the biome generates for.
 	 * @return The cached biome generator.
 	 */
 	public BiomeGenerator createCached(Class<? extends BiomeGenerator> biomeModeClass, LocalWorld world) {
-		return CachedBiomeGenerator.makeCached(create(biomeModeClass, world));
+		return createCached(biomeModeClass, world, null);
+	}
+
+	/**
+	 * Same as {@link #createCached(Class, LocalWorld)}, but if enabled in the
+	 * WorldConfig the biomes are also saved in the given world save.
+	 * 
+	 * @param biomeModeClass Class to create a biome generator from.
+	 * @param world          World the biome generates for.
+	 * @param saveFolder     The folder the world is saved in, may be null.
+	 * @return The cached biome generator.
+	 */
+	public BiomeGenerator createCached(Class<? extends BiomeGenerator> biomeModeClass, LocalWorld world, File saveFolder) {
+		return CachedBiomeGenerator.makeCached(create(biomeModeClass, world), saveFolder);
 	}
 
 	/**
@@ -3,16 +3,31 @@ package com.khorn.terraincontrol.generator.biome;
 import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-
-import java.util.Iterator;
+import java.io.File;
 
-import net.minecraft.world.ChunkCoordIntPair;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 /**
  * Wraps uncached biome generators.
  *
+ * <p>
+ * The cache can be used from multiple threads at once. It is split in a
+ * number of stripes, each with its own lock, so that threads looking up
+ * biomes of different chunks rarely wait on each other. Every stripe holds
+ * a fixed amount of chunks and evicts them using the CLOCK algorithm: a
+ * chunk that wasn't looked up since the clock hand last passed it is
+ * replaced.
+ *
+ * <p>
+ * The wrapped generator is only called by two threads at once if it is
+ * {@link BiomeGenerator#isThreadSafe() thread safe}.
+ *
+ * <p>
+ * If enabled in the WorldConfig, chunks that aren't in memory are first
+ * looked up in the {@link PersistentBiomeCache} before they are generated.
+ * This also applies to unzoomed biomes, which are used by the structure
+ * generators to find suitable locations.
+ *
  * @see BiomeModeManager#createCached(Class, LocalWorld)
  */
 class CachedBiomeGenerator extends BiomeGenerator {
@@ -20,17 +35,18 @@ class CachedBiomeGenerator extends BiomeGenerator {
 	 * Caches the biomes of a single chunk.
 	 */
 	private static class Block {
-		private int[] biomes = new int[ChunkCoordinate.CHUNK_X_SIZE * ChunkCoordinate.CHUNK_Z_SIZE];
-		private long lastAccessGeneration;
+		private final long key;
+		private final int[] biomes;
+		private boolean referenced;
 
-		Block(BiomeGenerator generator, int chunkX, int chunkZ) {
-			biomes = generator.getBiomes(biomes, chunkX << 4, chunkZ << 4, ChunkCoordinate.CHUNK_X_SIZE,
-					ChunkCoordinate.CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
+		Block(long key, int[] biomes) {
+			this.key = key;
+			this.biomes = biomes;
 		}
 
 		/**
 		 * Gets the biome type id of the column at the given location.
-		 * 
+		 *
 		 * @param blockX X location of the column, must fall in this cache
 		 *               block.
 		 * @param blockZ Z location of the column, must fall in this cache
@@ -42,47 +58,114 @@ class CachedBiomeGenerator extends BiomeGenerator {
 		}
 	}
 
-	// Pre-size to avoid rehashing during typical worldgen (render distance worth of chunks)
-	private final Long2ObjectOpenHashMap<CachedBiomeGenerator.Block> cacheMap = new Long2ObjectOpenHashMap<>(256);
+	/**
+	 * Part of the cache, guarded by itself.
+	 */
+	private static class Stripe {
+		private final Long2ObjectOpenHashMap<Block> blocks;
+		private final Block[] clock;
+		private int clockHand;
+
+		Stripe(int capacity) {
+			this.blocks = new Long2ObjectOpenHashMap<>(capacity);
+			this.clock = new Block[capacity];
+		}
+
+		/**
+		 * Gets the cached block, or null if not cached.
+		 *
+		 * @param key The packed chunk coordinates.
+		 * @return The block, or null.
+		 */
+		Block get(long key) {
+			Block block = blocks.get(key);
+			if (block != null) { block.referenced = true; }
+			return block;
+		}
+
+		/**
+		 * Adds the block to this stripe, evicting another block if the
+		 * stripe is full. If another thread added the same chunk in the
+		 * meantime, that block is returned instead.
+		 *
+		 * @param block The block.
+		 * @return The block that is now in the cache.
+		 */
+		Block add(Block block) {
+			Block existing = get(block.key);
+			if (existing != null) { return existing; }
+
+			// Advance the clock until a block is found that wasn't used
+			// since the last pass
+			while (clock[clockHand] != null && clock[clockHand].referenced) {
+				clock[clockHand].referenced = false;
+				clockHand = (clockHand + 1) % clock.length;
+			}
+			if (clock[clockHand] != null) { blocks.remove(clock[clockHand].key); }
+			clock[clockHand] = block;
+			clockHand = (clockHand + 1) % clock.length;
+			blocks.put(block.key, block);
+			return block;
+		}
+	}
+
+	private static final int STRIPE_COUNT = 16;
+
+	/**
+	 * Unzoomed biome lookups larger than this (in chunks) aren't read from
+	 * disk.
+	 */
+	private static final int MAX_SAVED_UNZOOMED_CHUNKS = 1024;
+
+	private final Stripe[] stripes;
 	private final BiomeGenerator generator;
-	private long generation;
-	private static final long CLEANUP_INTERVAL = 128;
-	private static final long EVICT_AGE = 512;
+	private final boolean generatorThreadSafe;
+	private final PersistentBiomeCache savedBiomes;
 
-	private CachedBiomeGenerator(BiomeGenerator generator) {
+	private CachedBiomeGenerator(BiomeGenerator generator, int capacity, File saveFolder) {
 		super(generator.world);
 		this.generator = generator;
+		this.generatorThreadSafe = generator.isThreadSafe();
+		this.savedBiomes = PersistentBiomeCache.open(generator.world, saveFolder);
+
+		int stripeCapacity = Math.max(1, (capacity + STRIPE_COUNT - 1) / STRIPE_COUNT);
+		this.stripes = new Stripe[STRIPE_COUNT];
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			this.stripes[i] = new Stripe(stripeCapacity);
+		}
 	}
 
 	/**
 	 * Gets a cached generator that generates biomes like the given generator.
 	 * If the given generator is already cached, it is returned immediately.
 	 * If it isn't cached it is wrapped inside a {@link CachedBiomeGenerator}.
-	 * 
-	 * @param generator A potentially uncached biome generator.
+	 * The size of the cache is read from the WorldConfig of the world of the
+	 * generator.
+	 *
+	 * @param generator  A potentially uncached biome generator.
+	 * @param saveFolder The folder the world is saved in, used to save the
+	 *                   biomes. May be null.
 	 * @return A cached biome generator.
-	 * @see BiomeModeManager#createCached(Class, LocalWorld)
+	 * @see BiomeModeManager#createCached(Class, LocalWorld, File)
 	 */
-	static BiomeGenerator makeCached(BiomeGenerator generator) {
+	static BiomeGenerator makeCached(BiomeGenerator generator, File saveFolder) {
 		if (generator.isCached()) { return generator; }
-		return new CachedBiomeGenerator(generator);
+		return new CachedBiomeGenerator(generator, generator.world.getConfigs().getWorldConfig().biomeCacheSize, saveFolder);
 	}
 
 	private static long packChunk(int chunkX, int chunkZ) {
-		return ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+		return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+	}
+
+	private Stripe getStripe(long key) {
+		// Spread the bits of both coordinates over the stripe index
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return stripes[(int) (hash >>> 60) & (STRIPE_COUNT - 1)];
 	}
 
 	@Override
 	public void cleanupCache() {
-		generation++;
-		if (generation % CLEANUP_INTERVAL != 0) { return; }
-
-		Iterator<Long2ObjectMap.Entry<CachedBiomeGenerator.Block>> it = cacheMap.long2ObjectEntrySet().fastIterator();
-		while (it.hasNext()) {
-			Long2ObjectMap.Entry<CachedBiomeGenerator.Block> entry = it.next();
-			long age = generation - entry.getValue().lastAccessGeneration;
-			if (age > EVICT_AGE) { it.remove(); }
-		}
+		// Eviction happens when new chunks are added, nothing to do here
 	}
 
 	@Override
@@ -95,15 +178,24 @@ class CachedBiomeGenerator extends BiomeGenerator {
 
 	private CachedBiomeGenerator.Block getBiomeCacheBlock(int chunkX, int chunkZ) {
 		long key = packChunk(chunkX, chunkZ);
-		CachedBiomeGenerator.Block block = this.cacheMap.get(key);
-
-		if (block == null) {
-			block = new CachedBiomeGenerator.Block(generator, chunkX, chunkZ);
-			this.cacheMap.put(key, block);
+		Stripe stripe = getStripe(key);
+		CachedBiomeGenerator.Block block;
+		synchronized (stripe) {
+			block = stripe.get(key);
 		}
+		if (block != null) { return block; }
 
-		block.lastAccessGeneration = generation;
-		return block;
+		// Generate outside the lock of the stripe, so that other chunks in
+		// this stripe can still be looked up
+		int[] biomes = savedBiomes == null ? null : savedBiomes.read(chunkX, chunkZ, false);
+		if (biomes == null) {
+			biomes = generateBiomes(null, chunkX << 4, chunkZ << 4, ChunkCoordinate.CHUNK_X_SIZE, ChunkCoordinate.CHUNK_Z_SIZE,
+					OutputType.DEFAULT_FOR_WORLD);
+			if (savedBiomes != null) { savedBiomes.write(chunkX, chunkZ, false, biomes); }
+		}
+		synchronized (stripe) {
+			return stripe.add(new CachedBiomeGenerator.Block(key, biomes));
+		}
 	}
 
 	@Override
@@ -114,12 +206,85 @@ class CachedBiomeGenerator extends BiomeGenerator {
 			System.arraycopy(cachedBiomes, 0, biomeArray, 0, xSize * zSize);
 			return biomeArray;
 		}
-		return generator.getBiomes(biomeArray, x, z, xSize, zSize, type);
+		return generateBiomes(biomeArray, x, z, xSize, zSize, type);
+	}
+
+	private int[] generateBiomes(int[] biomeArray, int x, int z, int xSize, int zSize, OutputType type) {
+		if (generatorThreadSafe) { return generator.getBiomes(biomeArray, x, z, xSize, zSize, type); }
+		synchronized (generator) {
+			return generator.getBiomes(biomeArray, x, z, xSize, zSize, type);
+		}
 	}
 
 	@Override
 	public int[] getBiomesUnZoomed(int[] biomeArray, int x, int z, int xSize, int zSize, OutputType type) {
-		return generator.getBiomesUnZoomed(biomeArray, x, z, xSize, zSize, type);
+		boolean useSaved = savedBiomes != null && type == OutputType.DEFAULT_FOR_WORLD && generator.canGenerateUnZoomed();
+		if (useSaved) {
+			int[] saved = readSavedUnZoomed(biomeArray, x, z, xSize, zSize);
+			if (saved != null) { return saved; }
+		}
+
+		int[] biomes;
+		if (generatorThreadSafe) {
+			biomes = generator.getBiomesUnZoomed(biomeArray, x, z, xSize, zSize, type);
+		}
+		else {
+			synchronized (generator) {
+				biomes = generator.getBiomesUnZoomed(biomeArray, x, z, xSize, zSize, type);
+			}
+		}
+		if (useSaved) { writeSavedUnZoomed(biomes, x, z, xSize, zSize); }
+		return biomes;
+	}
+
+	/**
+	 * Assembles the unzoomed biomes from the saved biomes of all chunks in
+	 * the area. Every chunk is 4x4 unzoomed biomes.
+	 *
+	 * @return The biomes, or null if not all chunks are saved.
+	 */
+	private int[] readSavedUnZoomed(int[] biomeArray, int x, int z, int xSize, int zSize) {
+		int startChunkX = x >> 2;
+		int startChunkZ = z >> 2;
+		int chunksX = ((x + xSize - 1) >> 2) - startChunkX + 1;
+		int chunksZ = ((z + zSize - 1) >> 2) - startChunkZ + 1;
+		if (chunksX * chunksZ > MAX_SAVED_UNZOOMED_CHUNKS) { return null; }
+
+		int[][] chunkBiomes = new int[chunksX * chunksZ][];
+		for (int i = 0; i < chunkBiomes.length; i++) {
+			chunkBiomes[i] = savedBiomes.read(startChunkX + i % chunksX, startChunkZ + i / chunksX, true);
+			if (chunkBiomes[i] == null) { return null; }
+		}
+
+		if (biomeArray == null || biomeArray.length < xSize * zSize) { biomeArray = new int[xSize * zSize]; }
+		for (int dz = 0; dz < zSize; dz++) {
+			int biomeZ = z + dz;
+			int chunkRow = ((biomeZ >> 2) - startChunkZ) * chunksX;
+			for (int dx = 0; dx < xSize; dx++) {
+				int biomeX = x + dx;
+				int[] biomes = chunkBiomes[chunkRow + (biomeX >> 2) - startChunkX];
+				biomeArray[dx + dz * xSize] = biomes[(biomeX & 3) | (biomeZ & 3) << 2];
+			}
+		}
+		return biomeArray;
+	}
+
+	/**
+	 * Saves the unzoomed biomes of all chunks that lie completely inside
+	 * the area.
+	 */
+	private void writeSavedUnZoomed(int[] biomeArray, int x, int z, int xSize, int zSize) {
+		int[] biomes = new int[16];
+		for (int chunkZ = (z + 3) >> 2; (chunkZ << 2) + 3 < z + zSize; chunkZ++) {
+			for (int chunkX = (x + 3) >> 2; (chunkX << 2) + 3 < x + xSize; chunkX++) {
+				for (int i = 0; i < 16; i++) {
+					int dx = (chunkX << 2) + (i & 3) - x;
+					int dz = (chunkZ << 2) + (i >> 2) - z;
+					biomes[i] = biomeArray[dx + dz * xSize];
+				}
+				savedBiomes.write(chunkX, chunkZ, true, biomes);
+			}
+		}
 	}
 
 	@Override
@@ -129,7 +294,7 @@ class CachedBiomeGenerator extends BiomeGenerator {
 
 	/**
 	 * Returns the array of cached biome types in the BiomeCacheBlock at the
-	 * given location.
+	 * given location. The array must not be modified.
 	 */
 	public int[] getCachedBiomes(ChunkCoordinate chunkCoord) {
 		return getCachedBiomes(chunkCoord.getChunkX(), chunkCoord.getChunkZ());
@@ -141,12 +306,24 @@ class CachedBiomeGenerator extends BiomeGenerator {
 
 	@Override
 	public float[] getRainfall(float[] paramArrayOfFloat, int x, int z, int xSize, int zSize) {
-		return generator.getRainfall(paramArrayOfFloat, x, z, xSize, zSize);
+		if (generatorThreadSafe) { return generator.getRainfall(paramArrayOfFloat, x, z, xSize, zSize); }
+		synchronized (generator) {
+			return generator.getRainfall(paramArrayOfFloat, x, z, xSize, zSize);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (savedBiomes != null) { savedBiomes.close(); }
+		generator.close();
 	}
 
 	@Override
 	public boolean isCached() { return true; }
 
+	@Override
+	public boolean isThreadSafe() { return true; }
+
 	@Override
 	public BiomeGenerator unwrap() {
 		return generator.unwrap();
@@ -7,6 +7,13 @@ import com.khorn.terraincontrol.generator.biome.layers.Layer;
  * This is the normal biome mode, which has all of Terrain Control's features.
  */
 public class NormalBiomeGenerator extends BiomeGenerator {
+	/**
+	 * Larger areas are generated in tiles of this size, so that the arrays
+	 * of the layers stay small. Every tile has its own padding on all
+	 * layers, so the tiles cannot be much smaller.
+	 */
+	private static final int MAX_TILE_SIZE = 256;
+
 	private final Layer unZoomedLayer;
 	private final Layer biomeLayer;
 	private OutputType defaultOutputType = OutputType.FULL;
@@ -26,15 +33,7 @@ public class NormalBiomeGenerator extends BiomeGenerator {
 	@Override
 	public int[] getBiomesUnZoomed(int[] biomeArray, int x, int z, int x_size, int z_size, OutputType outputType) {
 		if ((biomeArray == null) || (biomeArray.length < x_size * z_size)) { biomeArray = new int[x_size * z_size]; }
-		ArraysCache cache = ArraysCacheManager.GetCache();
-		if (outputType == OutputType.DEFAULT_FOR_WORLD)
-			cache.outputType = defaultOutputType;
-		else
-			cache.outputType = outputType;
-		int[] arrayOfInt = this.unZoomedLayer.getInts(cache, x, z, x_size, z_size);
-		ArraysCacheManager.ReleaseCache(cache);
-
-		System.arraycopy(arrayOfInt, 0, biomeArray, 0, x_size * z_size);
+		getInts(this.unZoomedLayer, outputType, biomeArray, x, z, x_size, z_size);
 
 		return biomeArray;
 	}
@@ -46,11 +45,11 @@ public class NormalBiomeGenerator extends BiomeGenerator {
 		cache.outputType = defaultOutputType;
 
 		int[] arrayOfInt = this.biomeLayer.getInts(cache, x, y, x_size, z_size);
-		ArraysCacheManager.ReleaseCache(cache);
 		for (int i = 0; i < x_size * z_size; i++) {
 			float f1 = world.getBiomeById(arrayOfInt[i]).getBiomeConfig().biomeWetness;
 			paramArrayOfFloat[i] = f1;
 		}
+		ArraysCacheManager.ReleaseCache(cache);
 
 		return paramArrayOfFloat;
 	}
@@ -58,23 +57,43 @@ public class NormalBiomeGenerator extends BiomeGenerator {
 	@Override
 	public int[] getBiomes(int[] biomeArray, int x, int z, int x_size, int z_size, OutputType outputType) {
 		if ((biomeArray == null) || (biomeArray.length < x_size * z_size)) { biomeArray = new int[x_size * z_size]; }
-
-		ArraysCache cache = ArraysCacheManager.GetCache();
-		if (outputType == OutputType.DEFAULT_FOR_WORLD)
-			cache.outputType = defaultOutputType;
-		else
-			cache.outputType = outputType;
-		int[] arrayOfInt = this.biomeLayer.getInts(cache, x, z, x_size, z_size);
-		ArraysCacheManager.ReleaseCache(cache);
-
-		System.arraycopy(arrayOfInt, 0, biomeArray, 0, x_size * z_size);
+		getInts(this.biomeLayer, outputType, biomeArray, x, z, x_size, z_size);
 
 		return biomeArray;
 
 	}
 
+	/**
+	 * Evaluates the layer for the given area, one tile at a time.
+	 */
+	private void getInts(Layer layer, OutputType outputType, int[] biomeArray, int x, int z, int x_size, int z_size) {
+		if (outputType == OutputType.DEFAULT_FOR_WORLD)
+			outputType = defaultOutputType;
+
+		for (int tileZ = 0; tileZ < z_size; tileZ += MAX_TILE_SIZE) {
+			int tileZSize = Math.min(MAX_TILE_SIZE, z_size - tileZ);
+			for (int tileX = 0; tileX < x_size; tileX += MAX_TILE_SIZE) {
+				int tileXSize = Math.min(MAX_TILE_SIZE, x_size - tileX);
+
+				ArraysCache cache = ArraysCacheManager.GetCache();
+				cache.outputType = outputType;
+				int[] arrayOfInt = layer.getInts(cache, x + tileX, z + tileZ, tileXSize, tileZSize);
+				for (int row = 0; row < tileZSize; row++)
+					System.arraycopy(arrayOfInt, row * tileXSize, biomeArray, tileX + (tileZ + row) * x_size, tileXSize);
+				ArraysCacheManager.ReleaseCache(cache);
+			}
+		}
+	}
+
 	@Override
 	public boolean canGenerateUnZoomed() {
 		return true;
 	}
+
+	@Override
+	public boolean isThreadSafe() {
+		// The layers keep their random state in the ArraysCache, which is
+		// owned by the calling thread
+		return true;
+	}
 }
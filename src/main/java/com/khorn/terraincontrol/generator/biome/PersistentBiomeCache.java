@@ -0,0 +1,247 @@
+package com.khorn.terraincontrol.generator.biome;
+
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.configuration.standard.PluginStandardValues;
+import com.khorn.terraincontrol.configuration.standard.WorldStandardValues;
+import com.khorn.terraincontrol.logging.LogMarker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Saves generated biomes to disk, so that they don't need to be generated
+ * again after a restart. The biomes are stored in one
+ * {@link BiomeCacheRegionFile} per 32x32 chunks, in the data folder of the
+ * world save.
+ *
+ * <p>
+ * The saved biomes are only used if the seed and all files in the settings
+ * folder of the world (except for the custom objects) and the GlobalBiomes
+ * folder are still the same.
+ *
+ * <p>
+ * The cache can be used from multiple threads at once. The open region
+ * files are split in a number of stripes by region, each with its own lock,
+ * so that threads reading or saving biomes of different regions rarely wait
+ * on each other.
+ */
+class PersistentBiomeCache {
+	/**
+	 * Part of the open region files, guarded by itself. Every stripe keeps
+	 * a few regions open, and closes the least recently used one when
+	 * another region is needed.
+	 */
+	private static class Stripe {
+		private final Map<Long, BiomeCacheRegionFile> regions = new LinkedHashMap<Long, BiomeCacheRegionFile>(
+				REGIONS_PER_STRIPE + 1, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, BiomeCacheRegionFile> eldest) {
+				if (size() <= REGIONS_PER_STRIPE) { return false; }
+				close(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	private static final String DIRECTORY_NAME = "data" + File.separator + "TerrainControlBiomes";
+	private static final String FILE_EXTENSION = ".tcbiomes";
+	private static final int STRIPE_COUNT = 8;
+	private static final int REGIONS_PER_STRIPE = 4;
+
+	private final File directory;
+	private final long seed;
+	private final long fingerprint;
+	private final Stripe[] stripes;
+	private volatile boolean failed = false;
+
+	private PersistentBiomeCache(File directory, long seed, long fingerprint) {
+		this.directory = directory;
+		this.seed = seed;
+		this.fingerprint = fingerprint;
+		this.stripes = new Stripe[STRIPE_COUNT];
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			this.stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Opens the biome cache of the given world.
+	 *
+	 * @param world      The world.
+	 * @param saveFolder The folder the world is saved in, may be null.
+	 * @return The cache, or null if the cache is disabled or cannot be used.
+	 */
+	static PersistentBiomeCache open(LocalWorld world, File saveFolder) {
+		WorldConfig worldConfig = world.getConfigs().getWorldConfig();
+		if (saveFolder == null || !worldConfig.biomeCacheOnDisk) { return null; }
+
+		File directory = new File(saveFolder, DIRECTORY_NAME);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			TerrainControl.log(LogMarker.WARN, "Cannot create folder {}, biomes will not be saved", directory.getAbsolutePath());
+			return null;
+		}
+
+		List<File> settingsDirs = new ArrayList<>(2);
+		settingsDirs.add(worldConfig.settingsDir);
+		settingsDirs.add(new File(TerrainControl.getEngine().getTCDataFolder(), PluginStandardValues.BiomeConfigDirectoryName));
+		try {
+			return new PersistentBiomeCache(directory, world.getSeed(), computeFingerprint(settingsDirs));
+		} catch (IOException e) {
+			TerrainControl.log(LogMarker.WARN, "Cannot read the settings of {}, biomes will not be saved", world.getName());
+			TerrainControl.printStackTrace(LogMarker.WARN, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Computes a checksum of all files that may influence the biomes.
+	 *
+	 * @param settingsDirs The folders to read.
+	 * @return The checksum.
+	 * @throws IOException If a file cannot be read.
+	 */
+	private static long computeFingerprint(List<File> settingsDirs) throws IOException {
+		CRC32 crc = new CRC32();
+		for (File settingsDir : settingsDirs) {
+			if (!settingsDir.isDirectory()) { continue; }
+			Path root = settingsDir.toPath();
+
+			List<Path> files;
+			try (Stream<Path> stream = Files.walk(root)) {
+				files = stream.filter(Files::isRegularFile).filter(path -> !isIgnored(root.relativize(path)))
+						.collect(Collectors.toList());
+			}
+			Collections.sort(files);
+			for (Path file : files) {
+				crc.update(root.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+				crc.update(Files.readAllBytes(file));
+			}
+		}
+		return crc.getValue();
+	}
+
+	private static boolean isIgnored(Path relativePath) {
+		String firstFolder = relativePath.getName(0).toString();
+		return firstFolder.equals(WorldStandardValues.WORLD_OBJECTS_DIRECTORY_NAME);
+	}
+
+	/**
+	 * Reads the saved biomes of a chunk.
+	 *
+	 * @param chunkX   X position of the chunk.
+	 * @param chunkZ   Z position of the chunk.
+	 * @param unzoomed True to read the unzoomed (4x4) biomes, false to read
+	 *                 the normal (16x16) biomes.
+	 * @return The biomes, or null if they aren't saved.
+	 */
+	int[] read(int chunkX, int chunkZ, boolean unzoomed) {
+		long key = packRegion(chunkX, chunkZ);
+		Stripe stripe = getStripe(key);
+		synchronized (stripe) {
+			BiomeCacheRegionFile region = getRegion(stripe, key);
+			if (region == null) { return null; }
+			return region.read(chunkX, chunkZ, unzoomed);
+		}
+	}
+
+	/**
+	 * Saves the biomes of a chunk.
+	 *
+	 * @param chunkX   X position of the chunk.
+	 * @param chunkZ   Z position of the chunk.
+	 * @param unzoomed True if the biomes are unzoomed (4x4), false if they
+	 *                 are normal (16x16).
+	 * @param biomes   The biomes.
+	 */
+	void write(int chunkX, int chunkZ, boolean unzoomed, int[] biomes) {
+		long key = packRegion(chunkX, chunkZ);
+		Stripe stripe = getStripe(key);
+		synchronized (stripe) {
+			BiomeCacheRegionFile region = getRegion(stripe, key);
+			if (region == null) { return; }
+			region.write(chunkX, chunkZ, unzoomed, biomes);
+		}
+	}
+
+	/**
+	 * Closes all region files. Biomes are no longer read or saved after
+	 * this.
+	 */
+	void close() {
+		// Don't open the regions again
+		failed = true;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				for (BiomeCacheRegionFile region : stripe.regions.values()) {
+					close(region);
+				}
+				stripe.regions.clear();
+			}
+		}
+	}
+
+	private static long packRegion(int chunkX, int chunkZ) {
+		int regionX = chunkX >> BiomeCacheRegionFile.REGION_CHUNKS_BITS;
+		int regionZ = chunkZ >> BiomeCacheRegionFile.REGION_CHUNKS_BITS;
+		return (long) regionX & 0xFFFFFFFFL | ((long) regionZ & 0xFFFFFFFFL) << 32;
+	}
+
+	private Stripe getStripe(long key) {
+		// Spread the bits of both coordinates over the stripe index
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return stripes[(int) (hash >>> 61) & (STRIPE_COUNT - 1)];
+	}
+
+	/**
+	 * Gets the region file, opening it if needed. Must be called while
+	 * holding the lock of the stripe.
+	 *
+	 * @param stripe The stripe of the region.
+	 * @param key    The packed region coordinates.
+	 * @return The region file, or null if biomes can no longer be saved.
+	 */
+	private BiomeCacheRegionFile getRegion(Stripe stripe, long key) {
+		if (failed) { return null; }
+
+		BiomeCacheRegionFile region = stripe.regions.get(key);
+		if (region == null) {
+			int regionX = (int) key;
+			int regionZ = (int) (key >>> 32);
+			File file = new File(directory, "r." + regionX + "." + regionZ + FILE_EXTENSION);
+			try {
+				region = new BiomeCacheRegionFile(file, seed, fingerprint);
+			} catch (IOException e) {
+				// Don't keep trying on every biome lookup
+				failed = true;
+				TerrainControl.log(LogMarker.WARN, "Cannot open {}, biomes will no longer be saved", file.getAbsolutePath());
+				TerrainControl.printStackTrace(LogMarker.WARN, e);
+				return null;
+			}
+			stripe.regions.put(key, region);
+		}
+		return region;
+	}
+
+	private static void close(BiomeCacheRegionFile region) {
+		try {
+			region.close();
+		} catch (IOException e) {
+			TerrainControl.printStackTrace(LogMarker.WARN, e);
+		}
+	}
+}
@@ -15,7 +15,6 @@ public abstract class Layer {
 
 	protected long worldGenSeed;
 	protected Layer child;
-	private long chunkSeed;
 	protected long baseSeed;
 
 	/*
@@ -242,34 +241,46 @@ public abstract class Layer {
 		this.worldGenSeed += this.baseSeed;
 	}
 
-	protected void initChunkSeed(long x, long z) {
-		this.chunkSeed = this.worldGenSeed;
-		this.chunkSeed *= (this.chunkSeed * 6364136223846793005L + 1442695040888963407L);
-		this.chunkSeed += x;
-		this.chunkSeed *= (this.chunkSeed * 6364136223846793005L + 1442695040888963407L);
-		this.chunkSeed += z;
-		this.chunkSeed *= (this.chunkSeed * 6364136223846793005L + 1442695040888963407L);
-		this.chunkSeed += x;
-		this.chunkSeed *= (this.chunkSeed * 6364136223846793005L + 1442695040888963407L);
-		this.chunkSeed += z;
+	/**
+	 * Starts the random numbers for the given position. The random state is
+	 * stored in the cache of the caller, so that one layer can be used by
+	 * multiple threads at the same time.
+	 *
+	 * @param cache The cache of the caller.
+	 * @param x     X position.
+	 * @param z     Z position.
+	 */
+	protected void initChunkSeed(ArraysCache cache, long x, long z) {
+		long chunkSeed = this.worldGenSeed;
+		chunkSeed *= (chunkSeed * 6364136223846793005L + 1442695040888963407L);
+		chunkSeed += x;
+		chunkSeed *= (chunkSeed * 6364136223846793005L + 1442695040888963407L);
+		chunkSeed += z;
+		chunkSeed *= (chunkSeed * 6364136223846793005L + 1442695040888963407L);
+		chunkSeed += x;
+		chunkSeed *= (chunkSeed * 6364136223846793005L + 1442695040888963407L);
+		chunkSeed += z;
+		cache.chunkSeed = chunkSeed;
 	}
 
-	protected int nextInt(int x) {
-		int i = (int) ((this.chunkSeed >> 24) % x);
+	protected int nextInt(ArraysCache cache, int x) {
+		long chunkSeed = cache.chunkSeed;
+		int i = (int) ((chunkSeed >> 24) % x);
 		if (i < 0)
 			i += x;
-		this.chunkSeed *= (this.chunkSeed * 6364136223846793005L + 1442695040888963407L);
-		this.chunkSeed += this.worldGenSeed;
+		chunkSeed *= (chunkSeed * 6364136223846793005L + 1442695040888963407L);
+		chunkSeed += this.worldGenSeed;
+		cache.chunkSeed = chunkSeed;
 		return i;
 	}
 
 	public abstract int[] getInts(ArraysCache cache, int x, int z, int xSize, int zSize);
 
-	protected int getRandomInArray(int... biomes) {
-		return biomes[this.nextInt(biomes.length)];
+	protected int getRandomInArray(ArraysCache cache, int... biomes) {
+		return biomes[this.nextInt(cache, biomes.length)];
 	}
 
-	protected int getRandomOf4(int a, int b, int c, int d) {
+	protected int getRandomOf4(ArraysCache cache, int a, int b, int c, int d) {
 		return b == c && c == d ? b
 				: (a == b && a == c ? a
 						: (a == b && a == d ? a
@@ -280,7 +291,7 @@ public abstract class Layer {
 																: (b == c && a != d ? b
 																		: (b == d && a != c ? b
 																				: (c == d && a != b ? c
-																						: this.getRandomInArray(a, b, c, d))))))))));
+																						: this.getRandomInArray(cache, a, b, c, d))))))))));
 	}
 
 }
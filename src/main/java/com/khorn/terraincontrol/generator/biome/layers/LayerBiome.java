@@ -3,7 +3,7 @@ package com.khorn.terraincontrol.generator.biome.layers;
 import com.khorn.terraincontrol.LocalBiome;
 import com.khorn.terraincontrol.generator.biome.ArraysCache;
 
-public class LayerBiome extends Layer {
+public class LayerBiome extends LayerPointwise {
 
 	private final LocalBiome[] biomes;
 	private final LocalBiome[] ice_biomes;
@@ -16,34 +16,26 @@ public class LayerBiome extends Layer {
 	}
 
 	@Override
-	public int[] getInts(ArraysCache cache, int x, int z, int xSize, int zSize) {
-		int[] childInts = this.child.getInts(cache, x, z, xSize, zSize);
-		int[] thisInts = cache.getArray(xSize * zSize);
-
-		for (int i = 0; i < zSize; i++) {
-			for (int j = 0; j < xSize; j++) {
-				initChunkSeed(j + x, i + z);
-				int currentPiece = childInts[(j + i * xSize)];
-
-				if ((currentPiece & BiomeBits) == 0) // without biome
-				{
-					if (this.biomes.length > 0 && (currentPiece & IceBit) == 0) // Normal Biome
-					{
-						LocalBiome biome = this.biomes[nextInt(this.biomes.length)];
-						if (biome != null)
-							currentPiece |= biome.getIds().getGenerationId();
-					}
-					else if (this.ice_biomes.length > 0 && (currentPiece & IceBit) != 0) // Ice biome
-					{
-						LocalBiome biome = this.ice_biomes[nextInt(this.ice_biomes.length)];
-						if (biome != null)
-							currentPiece |= biome.getIds().getGenerationId();
-					}
-				}
-				thisInts[(j + i * xSize)] = currentPiece;
+	protected int getInt(ArraysCache cache, int childInt, int x, int z) {
+		initChunkSeed(cache, x, z);
+		int currentPiece = childInt;
+
+		if ((currentPiece & BiomeBits) == 0) // without biome
+		{
+			if (this.biomes.length > 0 && (currentPiece & IceBit) == 0) // Normal Biome
+			{
+				LocalBiome biome = this.biomes[nextInt(cache, this.biomes.length)];
+				if (biome != null)
+					currentPiece |= biome.getIds().getGenerationId();
+			}
+			else if (this.ice_biomes.length > 0 && (currentPiece & IceBit) != 0) // Ice biome
+			{
+				LocalBiome biome = this.ice_biomes[nextInt(cache, this.ice_biomes.length)];
+				if (biome != null)
+					currentPiece |= biome.getIds().getGenerationId();
 			}
 		}
-		return thisInts;
+		return currentPiece;
 	}
 
 }
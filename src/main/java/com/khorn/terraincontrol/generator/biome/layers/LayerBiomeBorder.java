@@ -32,7 +32,7 @@ public class LayerBiomeBorder extends Layer {
 
 		for (int zi = 0; zi < zSize; zi++) {
 			for (int xi = 0; xi < xSize; xi++) {
-				initChunkSeed(xi + x, zi + z);
+				initChunkSeed(cache, xi + x, zi + z);
 				int selection = childInts[(xi + 1 + (zi + 1) * (xSize + 2))];
 
 				int biomeId = GetBiomeFromLayer(selection);
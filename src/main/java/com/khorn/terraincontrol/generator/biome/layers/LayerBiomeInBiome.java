@@ -30,7 +30,7 @@ public class LayerBiomeInBiome extends Layer {
 
 		for (int zi = 0; zi < zSize; zi++) {
 			for (int xi = 0; xi < xSize; xi++) {
-				this.initChunkSeed(xi + x, zi + z);
+				this.initChunkSeed(cache, xi + x, zi + z);
 				int selection = childInts[(xi + 1 + (zi + 1) * xSize0)];
 
 				boolean spawn = false;
@@ -41,7 +41,7 @@ public class LayerBiomeInBiome extends Layer {
 					int seCheck = childInts[(xi + 2 + (zi + 2) * xSize0)] & LandBit;
 
 					if (((selection & LandBit) == 0) && (nwCheck == 0) && (neCheck == 0) && (swCheck == 0) && (seCheck == 0)
-							&& this.nextInt(this.chance) == 0) {
+							&& this.nextInt(cache, this.chance) == 0) {
 						selection = (selection & IceBit) | (selection & RiverBits) | LandBit | this.biome.getIds().getGenerationId()
 								| IslandBit;
 						spawn = true;
@@ -54,7 +54,7 @@ public class LayerBiomeInBiome extends Layer {
 					int seCheck = childInts[(xi + 2 + (zi + 2) * xSize0)] & BiomeBits;
 
 					if (this.biomeIsles[(selection & BiomeBits)] && this.biomeIsles[nwCheck] && this.biomeIsles[neCheck]
-							&& this.biomeIsles[swCheck] && this.biomeIsles[seCheck] && this.nextInt(this.chance) == 0) {
+							&& this.biomeIsles[swCheck] && this.biomeIsles[seCheck] && this.nextInt(cache, this.chance) == 0) {
 						selection = (selection & LandBit) | (selection & IceBit) | (selection & RiverBits)
 								| this.biome.getIds().getGenerationId() | IslandBit;
 					}
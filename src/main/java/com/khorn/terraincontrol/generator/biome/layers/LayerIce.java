@@ -2,7 +2,7 @@ package com.khorn.terraincontrol.generator.biome.layers;
 
 import com.khorn.terraincontrol.generator.biome.ArraysCache;
 
-public class LayerIce extends Layer {
+public class LayerIce extends LayerPointwise {
 
 	public int rarity = 5;
 
@@ -13,18 +13,9 @@ public class LayerIce extends Layer {
 	}
 
 	@Override
-	public int[] getInts(ArraysCache cache, int x, int z, int xSize, int zSize) {
-		int[] childInts = this.child.getInts(cache, x, z, xSize, zSize);
-		int[] thisInts = cache.getArray(xSize * zSize);
-
-		for (int zi = 0; zi < zSize; zi++) {
-			for (int xi = 0; xi < xSize; xi++) {
-				initChunkSeed(z + zi, x + xi); // reversed
-				thisInts[(xi + zi * xSize)] = (nextInt(rarity) == 0 ? (childInts[(xi + zi * xSize)] | IceBit)
-						: childInts[(xi + zi * xSize)]);
-			}
-		}
-		return thisInts;
+	protected int getInt(ArraysCache cache, int childInt, int x, int z) {
+		initChunkSeed(cache, z, x); // reversed
+		return nextInt(cache, rarity) == 0 ? (childInt | IceBit) : childInt;
 	}
 
 }
@@ -2,7 +2,7 @@ package com.khorn.terraincontrol.generator.biome.layers;
 
 import com.khorn.terraincontrol.generator.biome.ArraysCache;
 
-public class LayerLand extends Layer {
+public class LayerLand extends LayerPointwise {
 
 	public int rarity = 5;
 
@@ -13,20 +13,12 @@ public class LayerLand extends Layer {
 	}
 
 	@Override
-	public int[] getInts(ArraysCache cache, int x, int z, int xSize, int zSize) {
-		int[] childInts = this.child.getInts(cache, x, z, xSize, zSize);
-		int[] thisInts = cache.getArray(xSize * zSize);
-
-		for (int zi = 0; zi < zSize; zi++) {
-			for (int xi = 0; xi < xSize; xi++) {
-				initChunkSeed(x + xi, z + zi);
-				if (nextInt(rarity) == 0)
-					thisInts[(xi + zi * xSize)] = childInts[(xi + zi * xSize)] | LandBit;
-				else
-					thisInts[(xi + zi * xSize)] = childInts[(xi + zi * xSize)];
-			}
-		}
-		return thisInts;
+	protected int getInt(ArraysCache cache, int childInt, int x, int z) {
+		initChunkSeed(cache, x, z);
+		if (nextInt(cache, rarity) == 0)
+			return childInt | LandBit;
+		else
+			return childInt;
 	}
 
 }
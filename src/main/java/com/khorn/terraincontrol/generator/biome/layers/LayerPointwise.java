@@ -0,0 +1,51 @@
+package com.khorn.terraincontrol.generator.biome.layers;
+
+import com.khorn.terraincontrol.generator.biome.ArraysCache;
+
+/**
+ * A layer of which every value only depends on the value of the child at the
+ * same position. When pointwise layers are stacked directly on top of each
+ * other, the whole stack is evaluated in a single pass over the array of the
+ * first other layer below it, without any intermediate arrays.
+ */
+public abstract class LayerPointwise extends Layer {
+
+	public LayerPointwise(long seed) {
+		super(seed);
+	}
+
+	/**
+	 * Gets the value of this layer at a single position.
+	 *
+	 * @param cache    The cache of the caller.
+	 * @param childInt The value of the child layer at that position.
+	 * @param x        X position.
+	 * @param z        Z position.
+	 * @return The value of this layer.
+	 */
+	protected abstract int getInt(ArraysCache cache, int childInt, int x, int z);
+
+	@Override
+	public int[] getInts(ArraysCache cache, int x, int z, int xSize, int zSize) {
+		Layer source = this.child;
+		while (source instanceof LayerPointwise)
+			source = source.child;
+
+		// Every value is read before it is replaced, so the array of the
+		// source can be modified in place
+		int[] ints = source.getInts(cache, x, z, xSize, zSize);
+		for (int zi = 0; zi < zSize; zi++) {
+			for (int xi = 0; xi < xSize; xi++) {
+				ints[xi + zi * xSize] = getStackedInt(cache, ints[xi + zi * xSize], x + xi, z + zi);
+			}
+		}
+		return ints;
+	}
+
+	private int getStackedInt(ArraysCache cache, int sourceInt, int x, int z) {
+		if (this.child instanceof LayerPointwise)
+			sourceInt = ((LayerPointwise) this.child).getStackedInt(cache, sourceInt, x, z);
+		return getInt(cache, sourceInt, x, z);
+	}
+
+}
@@ -2,7 +2,7 @@ package com.khorn.terraincontrol.generator.biome.layers;
 
 import com.khorn.terraincontrol.generator.biome.ArraysCache;
 
-public class LayerRiverInit extends Layer {
+public class LayerRiverInit extends LayerPointwise {
 
 	public LayerRiverInit(long paramLong, Layer paramGenLayer) {
 		super(paramLong);
@@ -10,23 +10,12 @@ public class LayerRiverInit extends Layer {
 	}
 
 	@Override
-	public int[] getInts(ArraysCache cache, int x, int z, int xSize, int zSize) {
-		int[] childInts = this.child.getInts(cache, x, z, xSize, zSize);
-		int[] thisInts = cache.getArray(xSize * zSize);
-
-		for (int zi = 0; zi < zSize; zi++) {
-			for (int xi = 0; xi < xSize; xi++) {
-				initChunkSeed(zi + z, xi + x); // reversed
-				int currentPiece = childInts[(xi + zi * xSize)];
-				if (nextInt(2) == 0)
-					currentPiece |= RiverBitOne;
-				else
-					currentPiece |= RiverBitTwo;
-
-				thisInts[(xi + zi * xSize)] = currentPiece;
-			}
-		}
-		return thisInts;
+	protected int getInt(ArraysCache cache, int childInt, int x, int z) {
+		initChunkSeed(cache, z, x); // reversed
+		if (nextInt(cache, 2) == 0)
+			return childInt | RiverBitOne;
+		else
+			return childInt | RiverBitTwo;
 	}
 
 }
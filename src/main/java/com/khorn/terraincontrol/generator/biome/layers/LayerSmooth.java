@@ -29,9 +29,9 @@ public class LayerSmooth extends Layer {
 				int centerCheck = childInts[xi + 1 + (zi + 1) * xSize0];
 
 				if (westCheck == eastCheck && northCheck == southCheck) {
-					this.initChunkSeed((long) (xi + x), (long) (zi + z));
+					this.initChunkSeed(cache, (long) (xi + x), (long) (zi + z));
 
-					if (this.nextInt(2) == 0)
+					if (this.nextInt(cache, 2) == 0)
 						centerCheck = westCheck;
 					else
 						centerCheck = northCheck;
@@ -11,42 +11,56 @@ public class LayerZoom extends Layer {
 
 	@Override
 	public int[] getInts(ArraysCache cache, int x, int z, int xSize, int zSize) {
+		// Every child value becomes a 2x2 square, of which the other three
+		// values also depend on the child values to the east and south
 		int x0 = x >> 1;
 		int z0 = z >> 1;
-		int xSize0 = (xSize >> 1) + 3;
-		int zSize0 = (zSize >> 1) + 3;
+		int xSize0 = ((x + xSize - 1) >> 1) - x0 + 2;
+		int zSize0 = ((z + zSize - 1) >> 1) - z0 + 2;
 		int[] childInts = this.child.getInts(cache, x0, z0, xSize0, zSize0);
-		int[] thisInts = cache.getArray(xSize0 * 2 * (zSize0 * 2));
+		int[] thisInts = cache.getArray(xSize * zSize);
 
-		int n = xSize0 << 1;
+		// Write the squares directly to the requested area, leaving out the
+		// values of the squares on the edges that fall outside of it
 		for (int zi = 0; zi < zSize0 - 1; zi++) {
-			int i2 = zi << 1;
-			int i3 = i2 * n;
-			int i4 = childInts[((zi) * xSize0)];
-			int i5 = childInts[((zi + 1) * xSize0)];
+			int outZ = (zi + z0 << 1) - z;
+			boolean northInside = outZ >= 0;
+			boolean southInside = outZ + 1 < zSize;
+			int nw = childInts[(zi * xSize0)];
+			int sw = childInts[((zi + 1) * xSize0)];
 			for (int xi = 0; xi < xSize0 - 1; xi++) {
-				initChunkSeed((long) (xi + x0 << 1), (long) (zi + z0 << 1));
-				int northCheck = childInts[(xi + 1 + (zi) * xSize0)];
-				int centerCheck = childInts[(xi + 1 + (zi + 1) * xSize0)];
+				initChunkSeed(cache, (long) (xi + x0 << 1), (long) (zi + z0 << 1));
+				int ne = childInts[(xi + 1 + zi * xSize0)];
+				int se = childInts[(xi + 1 + (zi + 1) * xSize0)];
 
-				thisInts[i3] = i4;
-				thisInts[(i3++ + n)] = RndParam(i4, i5);
-				thisInts[i3] = RndParam(i4, northCheck);
-				thisInts[(i3++ + n)] = getRandomOf4(i4, northCheck, i5, centerCheck);
+				int south = RndParam(cache, nw, sw);
+				int east = RndParam(cache, nw, ne);
+				int southEast = getRandomOf4(cache, nw, ne, sw, se);
 
-				i4 = northCheck;
-				i5 = centerCheck;
+				int outX = (xi + x0 << 1) - x;
+				int i = outX + outZ * xSize;
+				if (outX >= 0) {
+					if (northInside)
+						thisInts[i] = nw;
+					if (southInside)
+						thisInts[i + xSize] = south;
+				}
+				if (outX + 1 < xSize) {
+					if (northInside)
+						thisInts[i + 1] = east;
+					if (southInside)
+						thisInts[i + 1 + xSize] = southEast;
+				}
+
+				nw = ne;
+				sw = se;
 			}
 		}
-		int[] ret = cache.getArray(xSize * zSize);
-		for (int i2 = 0; i2 < zSize; i2++) {
-			System.arraycopy(thisInts, (i2 + (z & 0x1)) * (xSize0 << 1) + (x & 0x1), ret, i2 * xSize, xSize);
-		}
-		return ret;
+		return thisInts;
 	}
 
-	protected int RndParam(int a, int b) {
-		return nextInt(2) == 0 ? a : b;
+	protected int RndParam(ArraysCache cache, int a, int b) {
+		return nextInt(cache, 2) == 0 ? a : b;
 	}
 
 }
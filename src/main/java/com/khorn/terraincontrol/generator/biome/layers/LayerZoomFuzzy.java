@@ -1,5 +1,7 @@
 package com.khorn.terraincontrol.generator.biome.layers;
 
+import com.khorn.terraincontrol.generator.biome.ArraysCache;
+
 public class LayerZoomFuzzy extends LayerZoom {
 
 	public LayerZoomFuzzy(long seed, Layer childLayer) {
@@ -7,8 +9,8 @@ public class LayerZoomFuzzy extends LayerZoom {
 	}
 
 	@Override
-	protected int getRandomOf4(int a, int b, int c, int d) {
-		return this.getRandomInArray(a, b, c, d);
+	protected int getRandomOf4(ArraysCache cache, int a, int b, int c, int d) {
+		return this.getRandomInArray(cache, a, b, c, d);
 	}
 
 }
\ No newline at end of file
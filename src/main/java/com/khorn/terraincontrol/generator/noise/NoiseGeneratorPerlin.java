@@ -13,6 +13,16 @@ public class NoiseGeneratorPerlin {
 	private static final double[] GRAD_Y = {1, 1,-1,-1, 0, 0, 0, 0, 1,-1, 1,-1, 1,-1, 1,-1};
 	private static final double[] GRAD_Z = {0, 0, 0, 0, 1, 1,-1,-1, 1, 1,-1,-1, 0, 1, 0,-1};
 
+	// Scratch arrays for populateNoiseArray3D, so instances of this class
+	// must not be shared between threads
+	private double[] yFracCache;
+	private double[] yFadeCache;
+	private int[] yCellCache;
+	private int[] yRunEndCache;
+	private double[] zFracCache;
+	private double[] zFadeCache;
+	private int[] zCellCache;
+
 	public NoiseGeneratorPerlin(Random random) {
 		permutations = new short[512];
 		xCoord = random.nextDouble() * 256D;
@@ -47,15 +57,53 @@ public class NoiseGeneratorPerlin {
 		return GRAD_X[h] * d + GRAD_Y[h] * d1 + GRAD_Z[h] * d2;
 	}
 
+	/**
+	 * Adds the noise of this generator to the given array. The values that
+	 * only depend on the y or z position are calculated once for all columns
+	 * and stored in plain arrays, and for every run of y positions within the
+	 * same noise cell the corners are calculated once. This leaves a simple
+	 * loop over y that the JIT compiler can vectorize. The results are
+	 * exactly the same as calculating every position on its own.
+	 */
 	public void populateNoiseArray3D(double[] NoiseArray, double xOffset, double yOffset, double zOffset, int xSize, int ySize, int zSize,
 			double xScale, double yScale, double zScale, double noiseScale) {
 		final short[] perm = this.permutations;
+		ensureScratchSize(ySize, zSize);
+		final double[] yFrac = this.yFracCache;
+		final double[] yFade = this.yFadeCache;
+		final int[] yCell = this.yCellCache;
+		final int[] yRunEnd = this.yRunEndCache;
+		final double[] zFrac = this.zFracCache;
+		final double[] zFade = this.zFadeCache;
+		final int[] zCell = this.zCellCache;
+
+		// Values that only depend on the y position
+		for (int i7 = 0; i7 < ySize; i7++) {
+			double d26 = yOffset + (double) i7 * yScale + yCoord;
+			int j7 = (int) d26;
+			if (d26 < (double) j7) { j7--; }
+			d26 -= j7;
+			yCell[i7] = j7 & 0xff;
+			yFrac[i7] = d26;
+			yFade[i7] = d26 * d26 * d26 * (d26 * (d26 * 6D - 15D) + 10D);
+		}
+		// The corners of a noise cell are shared by all y positions in it
+		for (int i7 = ySize - 1; i7 >= 0; i7--) {
+			yRunEnd[i7] = (i7 + 1 < ySize && yCell[i7 + 1] == yCell[i7]) ? yRunEnd[i7 + 1] : i7 + 1;
+		}
+		// Values that only depend on the z position
+		for (int j6 = 0; j6 < zSize; j6++) {
+			double d24 = zOffset + (double) j6 * zScale + zCoord;
+			int k6 = (int) d24;
+			if (d24 < (double) k6) { k6--; }
+			d24 -= k6;
+			zCell[j6] = k6 & 0xff;
+			zFrac[j6] = d24;
+			zFade[j6] = d24 * d24 * d24 * (d24 * (d24 * 6D - 15D) + 10D);
+		}
+
 		int i1 = 0;
 		double d7 = 1.0D / noiseScale;
-		double d13 = 0.0D;
-		double d15 = 0.0D;
-		double d16 = 0.0D;
-		double d18 = 0.0D;
 		for (int i5 = 0; i5 < xSize; i5++) {
 			double d20 = xOffset + (double) i5 * xScale + xCoord;
 			int k5 = (int) d20;
@@ -67,21 +115,14 @@ public class NoiseGeneratorPerlin {
 			int perm_i6p1 = perm[i6 + 1];
 			double d20m1 = d20 - 1.0D;
 			for (int j6 = 0; j6 < zSize; j6++) {
-				double d24 = zOffset + (double) j6 * zScale + zCoord;
-				int k6 = (int) d24;
-				if (d24 < (double) k6) { k6--; }
-				int l6 = k6 & 0xff;
-				d24 -= k6;
-				double d25 = d24 * d24 * d24 * (d24 * (d24 * 6D - 15D) + 10D);
+				double d24 = zFrac[j6];
+				double d25 = zFade[j6];
+				int l6 = zCell[j6];
 				double d24m1 = d24 - 1.0D;
 				int i7 = 0;
 				while (i7 < ySize) {
-					double d26 = yOffset + (double) i7 * yScale + yCoord;
-					int j7 = (int) d26;
-					if (d26 < (double) j7) { j7--; }
-					int k7 = j7 & 0xff;
-					d26 -= j7;
-					double d27 = d26 * d26 * d26 * (d26 * (d26 * 6D - 15D) + 10D);
+					double d26 = yFrac[i7];
+					int k7 = yCell[i7];
 					double d26m1 = d26 - 1.0D;
 					int j2 = perm_i6 + k7;
 					int k2 = perm[j2] + l6;
@@ -89,36 +130,40 @@ public class NoiseGeneratorPerlin {
 					int i3 = perm_i6p1 + k7;
 					int k3 = perm[i3] + l6;
 					int l3 = perm[i3 + 1] + l6;
-					d13 = lerp(d22, grad(perm[k2], d20, d26, d24), grad(perm[k3], d20m1, d26, d24));
-					d15 = lerp(d22, grad(perm[l2], d20, d26m1, d24), grad(perm[l3], d20m1, d26m1, d24));
-					d16 = lerp(d22, grad(perm[k2 + 1], d20, d26, d24m1),
-							grad(perm[k3 + 1], d20m1, d26, d24m1));
-					d18 = lerp(d22, grad(perm[l2 + 1], d20, d26m1, d24m1),
-							grad(perm[l3 + 1], d20m1, d26m1, d24m1));
-					// First sample in this cell
-					double d28 = lerp(d27, d13, d15);
-					double d29 = lerp(d27, d16, d18);
-					double d30 = lerp(d25, d28, d29);
-					NoiseArray[i1++] += d30 * d7;
-					i7++;
-					while (i7 < ySize) {
-						d26 = yOffset + (double) i7 * yScale + yCoord;
-						j7 = (int) d26;
-						if (d26 < (double) j7) { j7--; }
-						if ((j7 & 0xff) != k7) break;
-						d26 -= j7;
-						d27 = d26 * d26 * d26 * (d26 * (d26 * 6D - 15D) + 10D);
-						d28 = lerp(d27, d13, d15);
-						d29 = lerp(d27, d16, d18);
-						d30 = lerp(d25, d28, d29);
-						NoiseArray[i1++] += d30 * d7;
-						i7++;
+					double d13 = lerp(d22, grad(perm[k2], d20, d26, d24), grad(perm[k3], d20m1, d26, d24));
+					double d15 = lerp(d22, grad(perm[l2], d20, d26m1, d24), grad(perm[l3], d20m1, d26m1, d24));
+					double d16 = lerp(d22, grad(perm[k2 + 1], d20, d26, d24m1), grad(perm[k3 + 1], d20m1, d26, d24m1));
+					double d18 = lerp(d22, grad(perm[l2 + 1], d20, d26m1, d24m1), grad(perm[l3 + 1], d20m1, d26m1, d24m1));
+
+					// All samples in this cell
+					int runEnd = yRunEnd[i7];
+					int offset = i1 - i7;
+					for (; i7 < runEnd; i7++) {
+						double d27 = yFade[i7];
+						double d28 = lerp(d27, d13, d15);
+						double d29 = lerp(d27, d16, d18);
+						NoiseArray[offset + i7] += lerp(d25, d28, d29) * d7;
 					}
+					i1 = offset + i7;
 				}
 			}
 		}
 	}
 
+	private void ensureScratchSize(int ySize, int zSize) {
+		if (yFracCache == null || yFracCache.length < ySize) {
+			yFracCache = new double[ySize];
+			yFadeCache = new double[ySize];
+			yCellCache = new int[ySize];
+			yRunEndCache = new int[ySize];
+		}
+		if (zFracCache == null || zFracCache.length < zSize) {
+			zFracCache = new double[zSize];
+			zFadeCache = new double[zSize];
+			zCellCache = new int[zSize];
+		}
+	}
+
 	public void populateNoiseArray2D(double[] NoiseArray, double xOffset, double zOffset, int xSize, int zSize, double xScale,
 			double zScale, double noiseScale) {
 		final short[] perm = this.permutations;
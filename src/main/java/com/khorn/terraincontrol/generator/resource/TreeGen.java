@@ -10,6 +10,7 @@ import com.khorn.terraincontrol.logging.LogMarker;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
@@ -55,6 +56,13 @@ public class TreeGen extends Resource {
 		}
 	}
 
+	/**
+	 * Gets the trees this resource can spawn.
+	 *
+	 * @return The trees, in the order they are tried.
+	 */
+	public List<CustomObject> getTrees() { return Collections.unmodifiableList(trees); }
+
 	@Override
 	public String makeString() {
 		StringBuilder output = new StringBuilder("Tree(" + frequency);
@@ -1,10 +1,11 @@
 package com.khorn.terraincontrol.generator.surface;
 
 import com.khorn.terraincontrol.LocalMaterialData;
-import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.generator.ChunkBuffer;
 import com.khorn.terraincontrol.generator.noise.NoiseGeneratorNewOctaves;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.helpers.MathHelper;
 import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
@@ -31,25 +32,28 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 		return null;
 	}
 
-	private byte[] blockDataValuesArray;
+	/**
+	 * Created on first use, together with the noise generators. Chunks may
+	 * be generated by multiple threads at once, so this is set last.
+	 */
+	private volatile byte[] blockDataValuesArray;
 	private final boolean isForestMesa;
 	private final boolean isBryceMesa;
 	private NoiseGeneratorNewOctaves noiseGenBryce1;
 	private NoiseGeneratorNewOctaves noiseGenBryce2;
 	private NoiseGeneratorNewOctaves noiseGenBlockData;
 
-	private final Random random;
-
+	private final LocalMaterialData stone;
 	private final LocalMaterialData hardenedClay;
 	private final LocalMaterialData redSand;
 	private final LocalMaterialData whiteStainedClay;
 	private final LocalMaterialData orangeStainedClay;
 
 	public MesaSurfaceGenerator(boolean mountainMesa, boolean forestMesa) {
-		this.random = new Random();
 		this.isBryceMesa = mountainMesa;
 		this.isForestMesa = forestMesa;
 
+		this.stone = TerrainControl.toLocalMaterialData(DefaultMaterial.STONE, 0);
 		this.hardenedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.HARD_CLAY, 0);
 		this.redSand = TerrainControl.toLocalMaterialData(DefaultMaterial.SAND, 1);
 		this.whiteStainedClay = TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, 0);
@@ -62,16 +66,18 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 		return this.blockDataValuesArray[(j + l + 64) % 64];
 	}
 
-	private void initializeSmallByteArray(long worldSeed) {
-		this.blockDataValuesArray = new byte[64];
-		Arrays.fill(this.blockDataValuesArray, (byte) 16);
+	private synchronized void initialize(long worldSeed) {
+		if (this.blockDataValuesArray != null) { return; }
+
+		byte[] blockDataValuesArray = new byte[64];
+		Arrays.fill(blockDataValuesArray, (byte) 16);
 		Random random = new Random(worldSeed);
 
 		this.noiseGenBlockData = new NoiseGeneratorNewOctaves(random, 1);
 
 		for (int i = 0; i < 64; ++i) {
 			i += random.nextInt(5) + 1;
-			if (i < 64) { this.blockDataValuesArray[i] = 1; }
+			if (i < 64) { blockDataValuesArray[i] = 1; }
 		}
 
 		int maxValues = random.nextInt(4) + 2;
@@ -80,7 +86,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 			int numberBelow64 = random.nextInt(64);
 
 			for (int j = 0; numberBelow64 + j < 64 && j < oneTwoOrThree; j++) {
-				this.blockDataValuesArray[numberBelow64 + j] = 4;
+				blockDataValuesArray[numberBelow64 + j] = 4;
 			}
 		}
 
@@ -90,7 +96,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 			int numberBelow64 = random.nextInt(64);
 
 			for (int j = 0; numberBelow64 + j < 64 && j < twoThreeOrFour; j++) {
-				this.blockDataValuesArray[numberBelow64 + j] = 12;
+				blockDataValuesArray[numberBelow64 + j] = 12;
 			}
 		}
 
@@ -101,7 +107,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 			int numberBelow64 = random.nextInt(64);
 
 			for (int j = 0; numberBelow64 + j < 64 && j < oneTwoOrThree; j++) {
-				this.blockDataValuesArray[numberBelow64 + j] = 14;
+				blockDataValuesArray[numberBelow64 + j] = 14;
 			}
 		}
 
@@ -112,18 +118,29 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 			increasingNumber += random.nextInt(16) + 4;
 
 			for (int j = 0; increasingNumber + j < 64 && j < 1; j++) {
-				this.blockDataValuesArray[increasingNumber + j] = 0;
-				if (increasingNumber + j > 1 && random.nextBoolean()) { this.blockDataValuesArray[increasingNumber + j - 1] = 8; }
+				blockDataValuesArray[increasingNumber + j] = 0;
+				if (increasingNumber + j > 1 && random.nextBoolean()) { blockDataValuesArray[increasingNumber + j - 1] = 8; }
 
-				if (increasingNumber + j < 63 && random.nextBoolean()) { this.blockDataValuesArray[increasingNumber + j + 1] = 8; }
+				if (increasingNumber + j < 63 && random.nextBoolean()) { blockDataValuesArray[increasingNumber + j + 1] = 8; }
 			}
 		}
+
+		if (this.isBryceMesa) {
+			Random newRandom = new Random(worldSeed);
+			this.noiseGenBryce1 = new NoiseGeneratorNewOctaves(newRandom, 4);
+			this.noiseGenBryce2 = new NoiseGeneratorNewOctaves(newRandom, 1);
+		}
+
+		this.blockDataValuesArray = blockDataValuesArray;
 	}
 
 	@Override
-	public void spawn(LocalWorld world, BiomeConfig biomeConfig, double noise, int x, int z) {
-		random.setSeed(world.getSeed() ^ x ^ z);
-		if (this.blockDataValuesArray == null) { this.initializeSmallByteArray(world.getSeed()); }
+	public void spawn(long worldSeed, ChunkBuffer chunkBuffer, BiomeConfig biomeConfig, double noise, int xInChunk, int zInChunk) {
+		ChunkCoordinate chunkCoord = chunkBuffer.getChunkCoordinate();
+		int x = chunkCoord.getBlockX() + xInChunk;
+		int z = chunkCoord.getBlockZ() + zInChunk;
+		Random random = new Random(worldSeed ^ x ^ z);
+		if (this.blockDataValuesArray == null) { this.initialize(worldSeed); }
 
 		LocalMaterialData biomeSurfaceBlock = biomeConfig.surfaceBlock;
 		LocalMaterialData biomeGroundBlock = biomeConfig.groundBlock;
@@ -134,19 +151,12 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 
 		// Check for river water
 		boolean foundWater = false;
-		int highestBlockY = world.getHighestBlockYAt(x, z) - 1;
+		int highestBlockY = SurfaceHelper.getHighestBlockYAt(chunkBuffer, xInChunk, zInChunk) - 1;
 		if (highestBlockY <= biomeConfig.riverWaterLevel) { foundWater = true; }
 
 		// Bryce spike calculations
 		double bryceHeight = 0.0D;
 		if (this.isBryceMesa && !foundWater) {
-			if (this.noiseGenBryce1 == null || this.noiseGenBryce2 == null) {
-				Random newRandom = new Random(world.getSeed());
-
-				this.noiseGenBryce1 = new NoiseGeneratorNewOctaves(newRandom, 4);
-				this.noiseGenBryce2 = new NoiseGeneratorNewOctaves(newRandom, 1);
-			}
-
 			double bryceNoiseValue = Math.min(Math.abs(noise), this.noiseGenBryce1.a(x * 0.25D, z * 0.25D));
 
 			if (bryceNoiseValue > 0.0D) {
@@ -169,18 +179,19 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 		int j1 = -1;
 		boolean belowSand = false;
 
-		int maxHeight = world.getSolidHeight(x, z) - 1;
+		int maxHeight = SurfaceHelper.getSolidHeight(chunkBuffer, xInChunk, zInChunk) - 1;
 		int minHeight = Math.min(maxHeight - 6, waterLevel - 4);
 
 		// Max height needs to be increased for the bryce spikes
 		if (this.isBryceMesa && !foundWater) { maxHeight = Math.max((int) bryceHeight, maxHeight); }
 
-		for (int y = maxHeight; y >= minHeight; y--) {
-			LocalMaterialData blockAtPosition = world.getMaterial(x, y, z);
+		// Below y = 0 there are only air blocks, which change nothing
+		for (int y = maxHeight; y >= Math.max(minHeight, 0); y--) {
+			LocalMaterialData blockAtPosition = chunkBuffer.getBlock(xInChunk, y, zInChunk);
 
 			if (!blockAtPosition.isSolid() && y < bryceHeight) {
 				// Lie about the current block to generate the Bryce spikes
-				blockAtPosition = TerrainControl.toLocalMaterialData(DefaultMaterial.STONE, 0);
+				blockAtPosition = stone;
 			}
 
 			if (blockAtPosition.isAir()) {
@@ -202,7 +213,7 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 							else {
 								currentGroundBlock = biomeSurfaceBlock;
 							}
-							world.setBlock(x, y, z, currentGroundBlock);
+							chunkBuffer.setBlock(xInChunk, y, zInChunk, currentGroundBlock);
 						}
 						else if (y > waterLevel + 3 + noisePlusRandomFactor) {
 							blockData = 16;
@@ -214,38 +225,38 @@ public class MesaSurfaceGenerator implements SurfaceGenerator {
 							}
 
 							if (blockData < 16) {
-								world.setBlock(x, y, z, TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, blockData));
+								chunkBuffer.setBlock(xInChunk, y, zInChunk, TerrainControl.toLocalMaterialData(DefaultMaterial.STAINED_CLAY, blockData));
 							}
 							else {
-								world.setBlock(x, y, z, hardenedClay);
+								chunkBuffer.setBlock(xInChunk, y, zInChunk, hardenedClay);
 							}
 						}
 						else {
-							world.setBlock(x, y, z, redSand);
+							chunkBuffer.setBlock(xInChunk, y, zInChunk, redSand);
 							belowSand = true;
 						}
 					}
 					else {
 						if (currentGroundBlock.isMaterial(DefaultMaterial.STAINED_CLAY)) {
-							world.setBlock(x, y, z, orangeStainedClay);
+							chunkBuffer.setBlock(xInChunk, y, zInChunk, orangeStainedClay);
 						}
 						else {
-							world.setBlock(x, y, z, currentGroundBlock.withBlockData(0));
+							chunkBuffer.setBlock(xInChunk, y, zInChunk, currentGroundBlock.withBlockData(0));
 						}
 					}
 				}
 				else if (j1 > 0) {
 					--j1;
 					if (belowSand) {
-						world.setBlock(x, y, z, orangeStainedClay);
+						chunkBuffer.setBlock(xInChunk, y, zInChunk, orangeStainedClay);
 					}
 					else {
 						blockData = this.getBlockData(x, y, z);
 						if (blockData < 16) {
-							world.setBlock(x, y, z, whiteStainedClay.withBlockData(blockData));
+							chunkBuffer.setBlock(xInChunk, y, zInChunk, whiteStainedClay.withBlockData(blockData));
 						}
 						else {
-							world.setBlock(x, y, z, hardenedClay);
+							chunkBuffer.setBlock(xInChunk, y, zInChunk, hardenedClay);
 						}
 					}
 				}
@@ -1,7 +1,7 @@
 package com.khorn.terraincontrol.generator.surface;
 
-import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.generator.ChunkBuffer;
 
 /**
  * Implementation of {@link SurfaceGenerator} that does absolutely nothing.
@@ -10,7 +10,7 @@ import com.khorn.terraincontrol.configuration.BiomeConfig;
 public class NullSurfaceGenerator implements SurfaceGenerator {
 
 	@Override
-	public void spawn(LocalWorld world, BiomeConfig biomeConfig, double noise, int x, int z) {
+	public void spawn(long worldSeed, ChunkBuffer chunkBuffer, BiomeConfig biomeConfig, double noise, int x, int z) {
 		// Empty!
 	}
 
@@ -1,10 +1,10 @@
 package com.khorn.terraincontrol.generator.surface;
 
 import com.khorn.terraincontrol.LocalMaterialData;
-import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.TerrainControl;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
 import com.khorn.terraincontrol.exception.InvalidConfigException;
+import com.khorn.terraincontrol.generator.ChunkBuffer;
 import com.khorn.terraincontrol.util.helpers.StringHelper;
 
 import java.util.ArrayList;
@@ -50,19 +50,19 @@ public class SimpleSurfaceGenerator implements SurfaceGenerator {
 	}
 
 	@Override
-	public void spawn(LocalWorld world, BiomeConfig config, double noise, int x, int z) {
-		int y = world.getSolidHeight(x, z) - 1;
-		if (config == null || !world.getMaterial(x, y, z).equals(config.surfaceBlock)) {
+	public void spawn(long worldSeed, ChunkBuffer chunkBuffer, BiomeConfig config, double noise, int x, int z) {
+		int y = SurfaceHelper.getSolidHeight(chunkBuffer, x, z) - 1;
+		if (config == null || y < 0 || !chunkBuffer.getBlock(x, y, z).equals(config.surfaceBlock)) {
 			// Not the correct surface block here, so don't replace it
-			// This can happen when another chunk populated part of this chunk
+			// This happens under water, for example
 			return;
 		}
 
 		for (LayerChoice layer : this.layerChoices) {
 			if (noise <= layer.maxNoise) {
-				world.setBlock(x, y, z, layer.surfaceBlock);
-				for (int i = 1; i < 4; i++) {
-					world.setBlock(x, y - i, z, layer.groundBlock);
+				chunkBuffer.setBlock(x, y, z, layer.surfaceBlock);
+				for (int i = 1; i < 4 && y - i >= 0; i++) {
+					chunkBuffer.setBlock(x, y - i, z, layer.groundBlock);
 				}
 				return;
 			}
@@ -1,31 +1,35 @@
 package com.khorn.terraincontrol.generator.surface;
 
-import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.generator.ChunkBuffer;
 
 /**
- * Minecraft 1.7 added block data support to the initial terrain generation.
- * CraftBukkit doesn't support this (yet), so all things with block data have
- * to be moved to the terrain population step.
+ * Places the surface blocks and the blocks just below that, using settings
+ * that are more complex than the surface and ground block of a biome. This
+ * includes blocks with block data.
  * <p />
- * The purpose of classes implementing this interface is to add the block data
- * to the surface blocks and the blocks just below that. At the moment, these
- * are the only blocks that require block data during the initial terrain
- * generation.
+ * Surface generators run during the initial terrain generation, on the
+ * chunk buffer, after the caves and canyons are carved. The chunk generator
+ * calls them for every column of the chunk, with the biome config of that
+ * column. Chunks generated by older versions don't have these blocks yet,
+ * so for them the generators run during population, on the blocks in the
+ * world.
  * 
  */
 public interface SurfaceGenerator {
 
 	/**
-	 * Spawns this surface layer in the world.
+	 * Spawns this surface layer in a column of a chunk that is being
+	 * generated.
 	 * 
-	 * @param world       The world to spawn in.
+	 * @param worldSeed   Seed of the world.
+	 * @param chunkBuffer The chunk that is being generated.
 	 * @param biomeConfig The biome config to use for the settings.
 	 * @param noise       The noise value, from -1 to 1.
-	 * @param x           X position in the world.
-	 * @param z           Z position in the world.
+	 * @param x           X position of the column in the chunk, 0 to 15.
+	 * @param z           Z position of the column in the chunk, 0 to 15.
 	 */
-	void spawn(LocalWorld world, BiomeConfig biomeConfig, double noise, int x, int z);
+	void spawn(long worldSeed, ChunkBuffer chunkBuffer, BiomeConfig biomeConfig, double noise, int x, int z);
 
 	/**
 	 * Writes the settings used to a string. There must be a constructor to
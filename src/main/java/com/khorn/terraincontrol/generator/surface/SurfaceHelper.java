@@ -0,0 +1,44 @@
+package com.khorn.terraincontrol.generator.surface;
+
+import com.khorn.terraincontrol.generator.ChunkBuffer;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+
+/**
+ * Finds the heights the surface generators need in a column of a chunk
+ * buffer. They work the same as the methods of
+ * {@link com.khorn.terraincontrol.LocalWorld} with the same name.
+ */
+final class SurfaceHelper {
+
+	/**
+	 * Gets the y position above the highest non-air block in the column.
+	 *
+	 * @param chunkBuffer The chunk.
+	 * @param x           X position of the column in the chunk.
+	 * @param z           Z position of the column in the chunk.
+	 * @return The y position, or 0 if the column is empty.
+	 */
+	static int getHighestBlockYAt(ChunkBuffer chunkBuffer, int x, int z) {
+		for (int y = ChunkCoordinate.CHUNK_Y_SIZE - 1; y >= 0; y--) {
+			if (chunkBuffer.getPackedBlock(x, y, z) != 0) { return y + 1; }
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the y position above the highest solid block in the column.
+	 *
+	 * @param chunkBuffer The chunk.
+	 * @param x           X position of the column in the chunk.
+	 * @param z           Z position of the column in the chunk.
+	 * @return The y position, or -1 if there is no solid block above y = 0.
+	 */
+	static int getSolidHeight(ChunkBuffer chunkBuffer, int x, int z) {
+		for (int y = getHighestBlockYAt(chunkBuffer, x, z) - 1; y > 0; y--) {
+			if (chunkBuffer.getBlock(x, y, z).isSolid()) { return y + 1; }
+		}
+		return -1;
+	}
+
+	private SurfaceHelper() {}
+}
@@ -1,51 +1,66 @@
 package com.khorn.terraincontrol.generator.terrain;
 
 import com.khorn.terraincontrol.LocalBiome;
-import com.khorn.terraincontrol.LocalMaterialData;
 import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
 import com.khorn.terraincontrol.configuration.WorldConfig;
 import com.khorn.terraincontrol.generator.ChunkBuffer;
 import com.khorn.terraincontrol.util.ChunkCoordinate;
 import com.khorn.terraincontrol.util.helpers.MathHelper;
-import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
 import com.gtnewhorizon.gtnhlib.util.StdLCG;
 
 import java.util.Random;
 
-public class CanyonsGen extends TerrainGenBase {
-	private final float[] a = new float[1024];
+/**
+ * Carves canyons. The plan of a chunk is the canyon that starts in that
+ * chunk.
+ */
+public class CanyonsGen extends TerrainGenBase<CanyonsGen.Canyon> {
 	private final WorldConfig worldSettings;
 	private final StdLCG nodeRandom = new StdLCG();
 
+	/**
+	 * A canyon, with its width at every height.
+	 */
+	static final class Canyon {
+		final CarverPath path;
+		final float[] a;
+
+		Canyon(CarverPath path, float[] a) {
+			this.path = path;
+			this.a = a;
+		}
+	}
+
 	public CanyonsGen(WorldConfig wrk, LocalWorld world) {
 		super(world);
 		this.worldSettings = wrk;
 	}
 
-	protected void a(long paramLong, ChunkBuffer generatingChunkBuffer, double paramDouble1, double paramDouble2, double paramDouble3,
-			float paramFloat1, float paramFloat2, float paramFloat3, int size, double paramDouble4) {
+	/**
+	 * Calculates the path of a canyon. This uses the random generator in
+	 * exactly the same way as carving the canyon would, so that the canyon
+	 * doesn't depend on the chunk that is being generated.
+	 */
+	protected Canyon a(long paramLong, double paramDouble1, double paramDouble2, double paramDouble3, float paramFloat1, float paramFloat2,
+			float paramFloat3, int size, double paramDouble4) {
 		Random localRandom = this.nodeRandom;
 		localRandom.setSeed(paramLong);
 
-		ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
-		double d1 = generatingChunk.getBlockXCenter();
-		double d2 = generatingChunk.getBlockZCenter();
-
 		float f1 = 0.0F;
 		float f2 = 0.0F;
 
-		int i = 0;
-
+		float[] a = new float[worldSettings.worldHeightCap];
 		float f3 = 1.0F;
 		for (int j = 0;; j++) {
 			if (j >= worldSettings.worldHeightCap)
 				break;
 			if ((j == 0) || (localRandom.nextInt(3) == 0)) { f3 = 1.0F + localRandom.nextFloat() * localRandom.nextFloat() * 1.0F; }
-			this.a[j] = (f3 * f3);
+			a[j] = (f3 * f3);
 		}
 
+		CarverPath path = new CarverPath(paramFloat1, 0, size);
 		for (int stepCount = 0; stepCount < size; stepCount++) {
 			double d3 = 1.5D + MathHelper.sin(stepCount * 3.141593F / size) * paramFloat1 * 1.0F;
 			double d4 = d3 * paramDouble4;
@@ -69,16 +84,38 @@ public class CanyonsGen extends TerrainGenBase {
 			f2 += (localRandom.nextFloat() - localRandom.nextFloat()) * localRandom.nextFloat() * 2.0F;
 			f1 += (localRandom.nextFloat() - localRandom.nextFloat()) * localRandom.nextFloat() * 4.0F;
 
-			if ((i == 0) && (localRandom.nextInt(4) == 0)) { continue; }
-			double d5 = paramDouble1 - d1;
-			double d6 = paramDouble3 - d2;
-			double d7 = size - stepCount;
-			double d8 = paramFloat1 + 2.0F + 16.0F;
-			if (d5 * d5 + d6 * d6 - d7 * d7 > d8 * d8) { return; }
+			path.addStep(paramDouble1, paramDouble2, paramDouble3, d3, d4, localRandom.nextInt(4) == 0);
+		}
+		return new Canyon(path, a);
+	}
+
+	@Override
+	protected int getPlanSize(Canyon canyon) {
+		return 32 + canyon.path.getMemorySize() + canyon.a.length * 4;
+	}
+
+	@Override
+	protected void carve(Canyon canyon, ChunkBuffer generatingChunkBuffer) {
+		ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
+		double d1 = generatingChunk.getBlockXCenter();
+		double d2 = generatingChunk.getBlockZCenter();
+
+		CarverPath path = canyon.path;
+		if (!path.mayCarve(d1, d2)) { return; }
 
-			if ((paramDouble1 < d1 - 16.0D - d3 * 2.0D) || (paramDouble3 < d2 - 16.0D - d3 * 2.0D)
-					|| (paramDouble1 > d1 + 16.0D + d3 * 2.0D) || (paramDouble3 > d2 + 16.0D + d3 * 2.0D))
+		for (int stepCount = 0; stepCount < path.size(); stepCount++) {
+			if (path.isSkipped(stepCount)) { continue; }
+			if (path.isOutOfReach(stepCount, d1, d2)) { return; }
+
+			if (path.isOutsideChunk(stepCount, d1, d2))
 				continue;
+
+			double paramDouble1 = path.getX(stepCount);
+			double paramDouble2 = path.getY(stepCount);
+			double paramDouble3 = path.getZ(stepCount);
+			double d3 = path.getHorizontalRadius(stepCount);
+			double d4 = path.getVerticalRadius(stepCount);
+
 			int k = MathHelper.floor(paramDouble1 - d3) - generatingChunk.getBlockX() - 1;
 			int m = MathHelper.floor(paramDouble1 + d3) - generatingChunk.getBlockX() + 1;
 
@@ -110,9 +147,8 @@ public class CanyonsGen extends TerrainGenBase {
 						if (localY < 0)
 							continue;
 						if (localY < worldSettings.worldHeightCap) {
-							LocalMaterialData materialAtPosition = generatingChunkBuffer.getBlock(localX, localY, localZ);
-							if (materialAtPosition.isMaterial(DefaultMaterial.WATER)
-									|| materialAtPosition.isMaterial(DefaultMaterial.STATIONARY_WATER)) {
+							int blockId = generatingChunkBuffer.getPackedBlock(localX, localY, localZ) >> 4;
+							if (blockId == WATER_ID || blockId == STATIONARY_WATER_ID) {
 								i4 = 1;
 							}
 							if ((localY != maxY - 1) && (localZ != k) && (localZ != m - 1) && (localX != i2) && (localX != i3 - 1))
@@ -127,24 +163,24 @@ public class CanyonsGen extends TerrainGenBase {
 				for (int localX = i2; localX < i3; localX++) {
 					LocalBiome biome = world.getBiome(localX + generatingChunk.getBlockX(), localZ + generatingChunk.getBlockZ());
 					BiomeConfig biomeConfig = biome.getBiomeConfig();
+					CarvableBlocks carvableBlocks = biomeConfig.carvableBlocks;
 					double d10 = (localX + generatingChunk.getBlockZ() + 0.5D - paramDouble3) / d3;
 					boolean grassFound = false;
 					if (d9 * d9 + d10 * d10 < 1.0D) {
 						for (int localY = minY; localY >= maxY; localY--) {
 							double d11 = ((localY - 1) + 0.5D - paramDouble2) / d4;
-							if ((d9 * d9 + d10 * d10) * this.a[localY - 1] + d11 * d11 / 6.0D < 1.0D) {
-								LocalMaterialData material = generatingChunkBuffer.getBlock(localX, localY, localZ);
-								if (material.isMaterial(DefaultMaterial.GRASS))
+							if ((d9 * d9 + d10 * d10) * canyon.a[localY - 1] + d11 * d11 / 6.0D < 1.0D) {
+								int block = generatingChunkBuffer.getPackedBlock(localX, localY, localZ);
+								if (block >> 4 == GRASS_ID)
 									grassFound = true;
-								if (material.equals(biomeConfig.stoneBlock) || material.isMaterial(DefaultMaterial.DIRT)
-										|| material.isMaterial(DefaultMaterial.GRASS)) {
+								if (carvableBlocks.canCanyonCarve(generatingChunkBuffer, localX, localY, localZ, block)) {
 									if (localY - 1 < 10) {
 										generatingChunkBuffer.setBlock(localX, localY, localZ, lava);
 									}
 									else {
 										generatingChunkBuffer.setBlock(localX, localY, localZ, air);
-										if ((grassFound != false) && (generatingChunkBuffer.getBlock(localX, localY - 1, localZ)
-												.isMaterial(DefaultMaterial.DIRT))) {
+										if ((grassFound != false)
+												&& (generatingChunkBuffer.getPackedBlock(localX, localY - 1, localZ) >> 4 == DIRT_ID)) {
 											generatingChunkBuffer.setBlock(localX, localY - 1, localZ, biomeConfig.surfaceBlock);
 										}
 									}
@@ -154,31 +190,25 @@ public class CanyonsGen extends TerrainGenBase {
 					}
 				}
 			}
-			if (i != 0)
-				break;
 		}
 	}
 
 	@Override
-	protected void generateChunk(ChunkCoordinate currentChunk, ChunkBuffer generatingChunkBuffer) {
+	protected Canyon createPlan(ChunkCoordinate currentChunk) {
 		if (this.random.nextInt(100) >= this.worldSettings.canyonRarity)
-			return;
+			return null;
 		double d1 = currentChunk.getBlockX() + this.random.nextInt(ChunkCoordinate.CHUNK_X_SIZE);
 		double d2 = this.random.nextInt(this.worldSettings.canyonMaxAltitude - this.worldSettings.canyonMinAltitude)
 				+ this.worldSettings.canyonMinAltitude;
 		double d3 = currentChunk.getBlockZ() + this.random.nextInt(ChunkCoordinate.CHUNK_Z_SIZE);
 
-		int i = 1;
-
-		for (int j = 0; j < i; j++) {
-			float f1 = this.random.nextFloat() * 3.141593F * 2.0F;
-			float f2 = (this.random.nextFloat() - 0.5F) * 2.0F / 8.0F;
-			float f3 = (this.random.nextFloat() * 2.0F + this.random.nextFloat()) * 2.0F;
+		float f1 = this.random.nextFloat() * 3.141593F * 2.0F;
+		float f2 = (this.random.nextFloat() - 0.5F) * 2.0F / 8.0F;
+		float f3 = (this.random.nextFloat() * 2.0F + this.random.nextFloat()) * 2.0F;
 
-			int size = this.random.nextInt(this.worldSettings.canyonMaxLength - this.worldSettings.canyonMinLength)
-					+ this.worldSettings.canyonMinLength;
+		int size = this.random.nextInt(this.worldSettings.canyonMaxLength - this.worldSettings.canyonMinLength)
+				+ this.worldSettings.canyonMinLength;
 
-			a(this.random.nextLong(), generatingChunkBuffer, d1, d2, d3, f3, f1, f2, size, this.worldSettings.canyonDepth);
-		}
+		return a(this.random.nextLong(), d1, d2, d3, f3, f1, f2, size, this.worldSettings.canyonDepth);
 	}
 }
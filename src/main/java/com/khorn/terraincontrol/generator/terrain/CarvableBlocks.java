@@ -0,0 +1,116 @@
+package com.khorn.terraincontrol.generator.terrain;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.generator.ChunkBuffer;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+/**
+ * Lookup table of the blocks that caves and canyons can carve in a biome, by
+ * packed block id and data, {@code id << 4 | data}. Every biome has its own
+ * table, as the stone, ground and surface blocks of the biome can be carved.
+ *
+ * <p>
+ * Block ids are not known up front, so the table is filled the first time a
+ * block is looked up, using the material of the block. After that, looking
+ * up the block is a single array access. The table may be used by multiple
+ * threads at once: a block that is looked up at the same time by two threads
+ * is simply calculated twice.
+ */
+public final class CarvableBlocks {
+	private static final int MAX_PACKED_BLOCKS = 4096 * 16;
+
+	private static final byte KNOWN = 1;
+	private static final byte CAVE_CARVABLE = 2;
+	private static final byte CAVE_CARVABLE_UNLESS_LIQUID_ABOVE = 4;
+	private static final byte CANYON_CARVABLE = 8;
+	private static final byte LIQUID = 16;
+
+	private final BiomeConfig biomeConfig;
+	/**
+	 * Flags of every packed block, created when needed. Zero for blocks that
+	 * were not looked up yet.
+	 */
+	private byte[] flags;
+
+	public CarvableBlocks(BiomeConfig biomeConfig) {
+		this.biomeConfig = biomeConfig;
+	}
+
+	/**
+	 * Gets whether a cave can carve the given block.
+	 *
+	 * @param chunkBuffer The chunk, used to get the materials of blocks that
+	 *                    were not looked up before.
+	 * @param blockX      X position of the block in the chunk.
+	 * @param blockY      Y position of the block in the chunk.
+	 * @param blockZ      Z position of the block in the chunk.
+	 * @param block       The packed block at the position.
+	 * @param blockAbove  The packed block above the position.
+	 * @return True if the block can be carved.
+	 */
+	public boolean canCaveCarve(ChunkBuffer chunkBuffer, int blockX, int blockY, int blockZ, int block, int blockAbove) {
+		int blockFlags = getFlags(chunkBuffer, blockX, blockY, blockZ, block);
+		if ((blockFlags & CAVE_CARVABLE) != 0) { return true; }
+		if ((blockFlags & CAVE_CARVABLE_UNLESS_LIQUID_ABOVE) == 0) { return false; }
+		return (getFlags(chunkBuffer, blockX, blockY + 1, blockZ, blockAbove) & LIQUID) == 0;
+	}
+
+	/**
+	 * Gets whether a canyon can carve the given block.
+	 *
+	 * @param chunkBuffer The chunk, used to get the material of the block if
+	 *                    it was not looked up before.
+	 * @param blockX      X position of the block in the chunk.
+	 * @param blockY      Y position of the block in the chunk.
+	 * @param blockZ      Z position of the block in the chunk.
+	 * @param block       The packed block at the position.
+	 * @return True if the block can be carved.
+	 */
+	public boolean canCanyonCarve(ChunkBuffer chunkBuffer, int blockX, int blockY, int blockZ, int block) {
+		return (getFlags(chunkBuffer, blockX, blockY, blockZ, block) & CANYON_CARVABLE) != 0;
+	}
+
+	private int getFlags(ChunkBuffer chunkBuffer, int blockX, int blockY, int blockZ, int block) {
+		byte[] flags = this.flags;
+		if (flags == null) {
+			flags = new byte[MAX_PACKED_BLOCKS];
+			this.flags = flags;
+		}
+		byte blockFlags = flags[block];
+		if (blockFlags == 0) {
+			blockFlags = calculateFlags(chunkBuffer.getBlock(blockX, blockY, blockZ));
+			flags[block] = blockFlags;
+		}
+		return blockFlags;
+	}
+
+	private byte calculateFlags(LocalMaterialData material) {
+		int blockFlags = KNOWN;
+		if (material.isLiquid()) { blockFlags |= LIQUID; }
+
+		// Caves
+		if (material.equals(biomeConfig.stoneBlock)) {
+			blockFlags |= CAVE_CARVABLE;
+		}
+		else if (material.canFall()) {
+			blockFlags |= CAVE_CARVABLE_UNLESS_LIQUID_ABOVE;
+		}
+		else if (material.equals(biomeConfig.groundBlock) || material.equals(biomeConfig.surfaceBlock)) {
+			blockFlags |= CAVE_CARVABLE;
+		}
+		// Few hardcoded cases
+		else if (material.isMaterial(DefaultMaterial.HARD_CLAY) || material.isMaterial(DefaultMaterial.SANDSTONE)
+				|| material.isMaterial(DefaultMaterial.SNOW)) {
+			// TODO: add red sandstone case in Minecraft 1.8
+			blockFlags |= CAVE_CARVABLE;
+		}
+
+		// Canyons
+		if (material.equals(biomeConfig.stoneBlock) || material.isMaterial(DefaultMaterial.DIRT)
+				|| material.isMaterial(DefaultMaterial.GRASS)) {
+			blockFlags |= CANYON_CARVABLE;
+		}
+		return (byte) blockFlags;
+	}
+}
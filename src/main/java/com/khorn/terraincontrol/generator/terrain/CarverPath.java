@@ -0,0 +1,171 @@
+package com.khorn.terraincontrol.generator.terrain;
+
+/**
+ * The path of a single cave tunnel or canyon: the center and the radii of
+ * every step. The path only depends on the chunk it starts in, so it can be
+ * reused for all chunks it passes through.
+ *
+ * <p>
+ * Steps that the random generator skipped are stored too, as the carvers
+ * check how far the remaining steps are from the generated chunk.
+ */
+final class CarverPath {
+	private static final int VALUES_PER_STEP = 5;
+
+	/**
+	 * The width of the path, used to check whether the remaining steps can
+	 * still reach the generated chunk.
+	 */
+	final float width;
+	/**
+	 * Number of the first step. Steps are numbered up to {@link #length}.
+	 */
+	final int firstStep;
+	/**
+	 * The number of steps of a complete path, used to check whether the
+	 * remaining steps can still reach the generated chunk.
+	 */
+	final int length;
+
+	private final double[] steps;
+	private final boolean[] skipped;
+	private int size;
+
+	/**
+	 * Area the center of a chunk must be in for any of the steps to carve
+	 * blocks in that chunk.
+	 */
+	private double minX = Double.POSITIVE_INFINITY;
+	private double maxX = Double.NEGATIVE_INFINITY;
+	private double minZ = Double.POSITIVE_INFINITY;
+	private double maxZ = Double.NEGATIVE_INFINITY;
+
+	CarverPath(float width, int firstStep, int length) {
+		this.width = width;
+		this.firstStep = firstStep;
+		this.length = length;
+		this.steps = new double[(length - firstStep) * VALUES_PER_STEP];
+		this.skipped = new boolean[length - firstStep];
+	}
+
+	/**
+	 * Adds a step to the path. At most {@code length - firstStep} steps can
+	 * be added.
+	 *
+	 * @param x                X position of the center.
+	 * @param y                Y position of the center.
+	 * @param z                Z position of the center.
+	 * @param horizontalRadius Radius on the x and z axis.
+	 * @param verticalRadius   Radius on the y axis.
+	 * @param skip             True if no blocks are carved for this step.
+	 */
+	void addStep(double x, double y, double z, double horizontalRadius, double verticalRadius, boolean skip) {
+		int offset = size * VALUES_PER_STEP;
+		steps[offset] = x;
+		steps[offset + 1] = y;
+		steps[offset + 2] = z;
+		steps[offset + 3] = horizontalRadius;
+		steps[offset + 4] = verticalRadius;
+		skipped[size] = skip;
+		size++;
+
+		if (!skip) {
+			// See isOutsideChunk, with some room for rounding errors
+			double reach = 17.0D + horizontalRadius * 2.0D;
+			include(x - reach, x + reach, z - reach, z + reach);
+		}
+	}
+
+	/**
+	 * Extends the area in which this path can carve blocks.
+	 *
+	 * @param minX Lowest x position of a chunk center.
+	 * @param maxX Highest x position of a chunk center.
+	 * @param minZ Lowest z position of a chunk center.
+	 * @param maxZ Highest z position of a chunk center.
+	 */
+	void include(double minX, double maxX, double minZ, double maxZ) {
+		this.minX = Math.min(this.minX, minX);
+		this.maxX = Math.max(this.maxX, maxX);
+		this.minZ = Math.min(this.minZ, minZ);
+		this.maxZ = Math.max(this.maxZ, maxZ);
+	}
+
+	/**
+	 * Extends the area in which this path can carve blocks with the area of
+	 * another path.
+	 *
+	 * @param other The other path.
+	 */
+	void include(CarverPath other) {
+		include(other.minX, other.maxX, other.minZ, other.maxZ);
+	}
+
+	/**
+	 * Gets whether this path can carve blocks in the chunk with the given
+	 * center. If not, the chunk can be skipped.
+	 *
+	 * @param centerX X position of the center of the chunk.
+	 * @param centerZ Z position of the center of the chunk.
+	 * @return False if the path certainly doesn't carve any blocks.
+	 */
+	boolean mayCarve(double centerX, double centerZ) {
+		return centerX >= minX && centerX <= maxX && centerZ >= minZ && centerZ <= maxZ;
+	}
+
+	int size() { return size; }
+
+	/**
+	 * Gets the approximate number of bytes used by this path.
+	 *
+	 * @return The number of bytes.
+	 */
+	int getMemorySize() { return 96 + steps.length * 8 + skipped.length; }
+
+	boolean isSkipped(int step) { return skipped[step]; }
+
+	double getX(int step) { return steps[step * VALUES_PER_STEP]; }
+
+	double getY(int step) { return steps[step * VALUES_PER_STEP + 1]; }
+
+	double getZ(int step) { return steps[step * VALUES_PER_STEP + 2]; }
+
+	double getHorizontalRadius(int step) { return steps[step * VALUES_PER_STEP + 3]; }
+
+	double getVerticalRadius(int step) { return steps[step * VALUES_PER_STEP + 4]; }
+
+	/**
+	 * Checks whether the remaining steps, starting at the given one, are too
+	 * far away to reach the chunk with the given center. The carvers stop
+	 * once this is the case.
+	 *
+	 * @param step    The step.
+	 * @param centerX X position of the center of the chunk.
+	 * @param centerZ Z position of the center of the chunk.
+	 * @return True if the carver should stop.
+	 */
+	boolean isOutOfReach(int step, double centerX, double centerZ) {
+		double dx = getX(step) - centerX;
+		double dz = getZ(step) - centerZ;
+		double remaining = length - (firstStep + step);
+		double reach = width + 2.0F + 16.0F;
+		return dx * dx + dz * dz - remaining * remaining > reach * reach;
+	}
+
+	/**
+	 * Checks whether the given step is too far away to carve blocks in the
+	 * chunk with the given center.
+	 *
+	 * @param step    The step.
+	 * @param centerX X position of the center of the chunk.
+	 * @param centerZ Z position of the center of the chunk.
+	 * @return True if the step carves no blocks in the chunk.
+	 */
+	boolean isOutsideChunk(int step, double centerX, double centerZ) {
+		double x = getX(step);
+		double z = getZ(step);
+		double radius = getHorizontalRadius(step);
+		return x < centerX - 16.0D - radius * 2.0D || z < centerZ - 16.0D - radius * 2.0D || x > centerX + 16.0D + radius * 2.0D
+				|| z > centerZ + 16.0D + radius * 2.0D;
+	}
+}
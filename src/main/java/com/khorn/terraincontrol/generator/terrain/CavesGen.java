@@ -1,7 +1,6 @@
 package com.khorn.terraincontrol.generator.terrain;
 
 import com.khorn.terraincontrol.LocalBiome;
-import com.khorn.terraincontrol.LocalMaterialData;
 import com.khorn.terraincontrol.LocalWorld;
 import com.khorn.terraincontrol.configuration.BiomeConfig;
 import com.khorn.terraincontrol.configuration.WorldConfig;
@@ -12,27 +11,62 @@ import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
 import com.gtnewhorizon.gtnhlib.util.StdLCG;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
-public class CavesGen extends TerrainGenBase {
+/**
+ * Carves caves. The plan of a chunk is the list of tunnels that start in
+ * that chunk.
+ */
+public class CavesGen extends TerrainGenBase<List<CavesGen.Tunnel>> {
+	private static final int MYCEL_ID = DefaultMaterial.MYCEL.id;
+	private static final int SAND_ID = DefaultMaterial.SAND.id;
+
 	private final WorldConfig worldSettings;
 	private final StdLCG nodeRandom = new StdLCG();
 
+	/**
+	 * A cave tunnel, which may split into two smaller tunnels.
+	 */
+	static final class Tunnel {
+		final CarverPath path;
+		final boolean isLargeCave;
+
+		/**
+		 * Step at which the tunnel splits, or -1 if it doesn't.
+		 */
+		int splitStep = -1;
+		Tunnel firstBranch;
+		long firstBranchSeed;
+		double splitX;
+		double splitY;
+		double splitZ;
+		float splitAngle;
+		float splitSlope;
+
+		Tunnel(CarverPath path, boolean isLargeCave) {
+			this.path = path;
+			this.isLargeCave = isLargeCave;
+		}
+	}
+
 	public CavesGen(WorldConfig wrk, LocalWorld world) {
 		super(world);
 		this.worldSettings = wrk;
 	}
 
-	protected void generateLargeCaveNode(long seed, ChunkBuffer generatingChunkBuffer, double x, double y, double z) {
-		generateCaveNode(seed, generatingChunkBuffer, x, y, z, 1.0F + this.random.nextFloat() * 6.0F, 0.0F, 0.0F, -1, -1, 0.5D);
+	protected Tunnel createLargeCaveNode(long seed, double x, double y, double z) {
+		return createCaveNode(seed, x, y, z, 1.0F + this.random.nextFloat() * 6.0F, 0.0F, 0.0F, -1, -1, 0.5D);
 	}
 
-	protected void generateCaveNode(long seed, ChunkBuffer generatingChunkBuffer, double x, double y, double z, float paramFloat1,
-			float paramFloat2, float paramFloat3, int angle, int maxAngle, double paramDouble4) {
-		ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
-		double real_x = generatingChunk.getBlockXCenter();
-		double real_z = generatingChunk.getBlockZCenter();
-
+	/**
+	 * Calculates the path of a tunnel. This uses the random generator in
+	 * exactly the same way as carving the tunnel would, so that the tunnels
+	 * don't depend on the chunk that is being generated.
+	 */
+	protected Tunnel createCaveNode(long seed, double x, double y, double z, float paramFloat1, float paramFloat2, float paramFloat3,
+			int angle, int maxAngle, double paramDouble4) {
 		float f1 = 0.0F;
 		float f2 = 0.0F;
 
@@ -53,6 +87,7 @@ public class CavesGen extends TerrainGenBase {
 		int j = localRandom.nextInt(maxAngle / 2) + maxAngle / 4;
 		int k = localRandom.nextInt(6) == 0 ? 1 : 0;
 
+		Tunnel tunnel = new Tunnel(new CarverPath(paramFloat1, angle, maxAngle), isLargeCave);
 		for (; angle < maxAngle; angle++) {
 			double d3 = 1.5D + MathHelper.sin(angle * 3.141593F / maxAngle) * paramFloat1 * 1.0F;
 			double d4 = d3 * paramDouble4;
@@ -77,13 +112,104 @@ public class CavesGen extends TerrainGenBase {
 			f1 += (localRandom.nextFloat() - localRandom.nextFloat()) * localRandom.nextFloat() * 4.0F;
 
 			if ((!isLargeCave) && (angle == j) && (paramFloat1 > 1.0F) && (maxAngle > 0)) {
-				generateCaveNode(localRandom.nextLong(), generatingChunkBuffer, x, y, z, localRandom.nextFloat() * 0.5F + 0.5F,
+				tunnel.splitStep = tunnel.path.size();
+				tunnel.firstBranchSeed = localRandom.nextLong();
+				tunnel.splitX = x;
+				tunnel.splitY = y;
+				tunnel.splitZ = z;
+				tunnel.splitAngle = paramFloat2;
+				tunnel.splitSlope = paramFloat3 / 3.0F;
+				tunnel.firstBranch = createCaveNode(tunnel.firstBranchSeed, x, y, z, localRandom.nextFloat() * 0.5F + 0.5F,
 						paramFloat2 - 1.570796F, paramFloat3 / 3.0F, angle, maxAngle, 1.0D);
-				generateCaveNode(localRandom.nextLong(), generatingChunkBuffer, x, y, z, localRandom.nextFloat() * 0.5F + 0.5F,
-						paramFloat2 + 1.570796F, paramFloat3 / 3.0F, angle, maxAngle, 1.0D);
-				return;
+
+				// Both branches are smaller than one, so they don't split, and
+				// they move at most one block per step
+				tunnel.path.include(tunnel.firstBranch.path);
+				double reach = (maxAngle - angle) + 16.0D + 2.5D * 2.0D + 1.0D;
+				tunnel.path.include(x - reach, x + reach, z - reach, z + reach);
+				return tunnel;
+			}
+			boolean skip = (!isLargeCave) && (localRandom.nextInt(4) == 0);
+			tunnel.path.addStep(x, y, z, d3, d4, skip);
+		}
+		return tunnel;
+	}
+
+	/**
+	 * Carves the second branch of a tunnel that splits. The second branch is
+	 * started with the random generator of the first branch, so it depends on
+	 * how many steps of the first branch were made before the first branch
+	 * stopped. The second branch is therefore calculated while it is carved,
+	 * instead of being part of the plan.
+	 *
+	 * @param tunnel           The tunnel.
+	 * @param firstBranchSteps The number of steps the first branch made.
+	 */
+	private void carveSecondBranch(Tunnel tunnel, int firstBranchSteps, ChunkBuffer generatingChunkBuffer) {
+		// Use the random generator like the first branch did
+		CarverPath firstBranchPath = tunnel.firstBranch.path;
+		Random localRandom = this.nodeRandom;
+		localRandom.setSeed(tunnel.firstBranchSeed);
+		localRandom.nextInt(firstBranchPath.length / 2);
+		localRandom.nextInt(6);
+		for (int step = 0; step < firstBranchSteps; step++) {
+			localRandom.nextFloat();
+			localRandom.nextFloat();
+			localRandom.nextFloat();
+			localRandom.nextFloat();
+			localRandom.nextFloat();
+			localRandom.nextFloat();
+			localRandom.nextInt(4);
+		}
+
+		generateBranch(localRandom.nextLong(), generatingChunkBuffer, tunnel.splitX, tunnel.splitY, tunnel.splitZ,
+				localRandom.nextFloat() * 0.5F + 0.5F, tunnel.splitAngle + 1.570796F, tunnel.splitSlope, firstBranchPath.firstStep,
+				firstBranchPath.length);
+	}
+
+	/**
+	 * Calculates and carves a branch of a tunnel. Branches are smaller than
+	 * one, so they never split.
+	 */
+	private void generateBranch(long seed, ChunkBuffer generatingChunkBuffer, double x, double y, double z, float paramFloat1,
+			float paramFloat2, float paramFloat3, int angle, int maxAngle) {
+		ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
+		double real_x = generatingChunk.getBlockXCenter();
+		double real_z = generatingChunk.getBlockZCenter();
+
+		float f1 = 0.0F;
+		float f2 = 0.0F;
+
+		Random localRandom = this.nodeRandom;
+		localRandom.setSeed(seed);
+
+		localRandom.nextInt(maxAngle / 2);
+		int k = localRandom.nextInt(6) == 0 ? 1 : 0;
+
+		for (; angle < maxAngle; angle++) {
+			double d3 = 1.5D + MathHelper.sin(angle * 3.141593F / maxAngle) * paramFloat1 * 1.0F;
+			double d4 = d3;
+
+			float f3 = MathHelper.cos(paramFloat3);
+			float f4 = MathHelper.sin(paramFloat3);
+			x += MathHelper.cos(paramFloat2) * f3;
+			y += f4;
+			z += MathHelper.sin(paramFloat2) * f3;
+
+			if (k != 0)
+				paramFloat3 *= 0.92F;
+			else {
+				paramFloat3 *= 0.7F;
 			}
-			if ((!isLargeCave) && (localRandom.nextInt(4) == 0)) { continue; }
+			paramFloat3 += f2 * 0.1F;
+			paramFloat2 += f1 * 0.1F;
+
+			f2 *= 0.9F;
+			f1 *= 0.75F;
+			f2 += (localRandom.nextFloat() - localRandom.nextFloat()) * localRandom.nextFloat() * 2.0F;
+			f1 += (localRandom.nextFloat() - localRandom.nextFloat()) * localRandom.nextFloat() * 4.0F;
+
+			if (localRandom.nextInt(4) == 0) { continue; }
 
 			// Check if distance to working point (x and z) too larger than working radius
 			// (maybe ??)
@@ -98,85 +224,138 @@ public class CavesGen extends TerrainGenBase {
 					|| (z > real_z + 16.0D + d3 * 2.0D))
 				continue;
 
-			int m = MathHelper.floor(x - d3) - generatingChunk.getBlockX() - 1;
-			int n = MathHelper.floor(x + d3) - generatingChunk.getBlockX() + 1;
-
-			int i1 = MathHelper.floor(y - d4) - 1;
-			int i2 = MathHelper.floor(y + d4) + 1;
-
-			int i3 = MathHelper.floor(z - d3) - generatingChunk.getBlockZ() - 1;
-			int i4 = MathHelper.floor(z + d3) - generatingChunk.getBlockZ() + 1;
-
-			if (m < 0)
-				m = 0;
-			if (n > 16)
-				n = 16;
-
-			if (i1 < 1)
-				i1 = 1;
-			if (i2 > this.worldSettings.worldHeightCap - 8) { i2 = this.worldSettings.worldHeightCap - 8; }
-			if (i3 < 0)
-				i3 = 0;
-			if (i4 > 16)
-				i4 = 16;
-
-			// Search for water
-			boolean waterFound = false;
-			for (int local_x = m; (!waterFound) && (local_x < n); local_x++) {
-				for (int local_z = i3; (!waterFound) && (local_z < i4); local_z++) {
-					for (int local_y = i2 + 1; (!waterFound) && (local_y >= i1 - 1); local_y--) {
-						if (local_y >= 0 && local_y < this.worldSettings.worldHeightCap) {
-							LocalMaterialData material = generatingChunkBuffer.getBlock(local_x, local_y, local_z);
-							if (material.isMaterial(DefaultMaterial.WATER) || material.isMaterial(DefaultMaterial.STATIONARY_WATER)) {
-								waterFound = true;
-							}
-							if ((local_y != i1 - 1) && (local_x != m) && (local_x != n - 1) && (local_z != i3) && (local_z != i4 - 1))
-								local_y = i1;
+			carveStep(generatingChunkBuffer, x, y, z, d3, d4);
+		}
+	}
+
+	/**
+	 * Carves the part of a tunnel that is in the generated chunk.
+	 *
+	 * @return The number of steps that were made, before the tunnel stopped
+	 *         or split.
+	 */
+	protected int carveCaveNode(Tunnel tunnel, ChunkBuffer generatingChunkBuffer) {
+		ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
+		double real_x = generatingChunk.getBlockXCenter();
+		double real_z = generatingChunk.getBlockZCenter();
+
+		CarverPath path = tunnel.path;
+		boolean isLargeCave = tunnel.isLargeCave;
+		int steps = tunnel.splitStep == -1 ? path.size() : tunnel.splitStep;
+		for (int step = 0; step < steps; step++) {
+			if (path.isSkipped(step)) { continue; }
+
+			// Check if distance to working point (x and z) too larger than working radius
+			// (maybe ??)
+			if (path.isOutOfReach(step, real_x, real_z)) { return step + 1; }
+
+			// Boundaries check.
+			if (path.isOutsideChunk(step, real_x, real_z))
+				continue;
+
+			if (!carveStep(generatingChunkBuffer, path.getX(step), path.getY(step), path.getZ(step), path.getHorizontalRadius(step),
+					path.getVerticalRadius(step)))
+				continue;
+
+			if (isLargeCave)
+				break;
+		}
+
+		if (tunnel.splitStep != -1) {
+			int firstBranchSteps = carveCaveNode(tunnel.firstBranch, generatingChunkBuffer);
+			carveSecondBranch(tunnel, firstBranchSteps, generatingChunkBuffer);
+		}
+		return steps;
+	}
+
+	/**
+	 * Carves a single step of a tunnel into the generated chunk, unless there
+	 * is water nearby.
+	 *
+	 * @return False if water was found, so that nothing was carved.
+	 */
+	private boolean carveStep(ChunkBuffer generatingChunkBuffer, double x, double y, double z, double d3, double d4) {
+		ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
+
+		int m = MathHelper.floor(x - d3) - generatingChunk.getBlockX() - 1;
+		int n = MathHelper.floor(x + d3) - generatingChunk.getBlockX() + 1;
+
+		int i1 = MathHelper.floor(y - d4) - 1;
+		int i2 = MathHelper.floor(y + d4) + 1;
+
+		int i3 = MathHelper.floor(z - d3) - generatingChunk.getBlockZ() - 1;
+		int i4 = MathHelper.floor(z + d3) - generatingChunk.getBlockZ() + 1;
+
+		if (m < 0)
+			m = 0;
+		if (n > 16)
+			n = 16;
+
+		if (i1 < 1)
+			i1 = 1;
+		if (i2 > this.worldSettings.worldHeightCap - 8) { i2 = this.worldSettings.worldHeightCap - 8; }
+		if (i3 < 0)
+			i3 = 0;
+		if (i4 > 16)
+			i4 = 16;
+
+		// Search for water
+		boolean waterFound = false;
+		for (int local_x = m; (!waterFound) && (local_x < n); local_x++) {
+			for (int local_z = i3; (!waterFound) && (local_z < i4); local_z++) {
+				for (int local_y = i2 + 1; (!waterFound) && (local_y >= i1 - 1); local_y--) {
+					if (local_y >= 0 && local_y < this.worldSettings.worldHeightCap) {
+						int blockId = generatingChunkBuffer.getPackedBlock(local_x, local_y, local_z) >> 4;
+						if (blockId == WATER_ID || blockId == STATIONARY_WATER_ID) {
+							waterFound = true;
 						}
+						if ((local_y != i1 - 1) && (local_x != m) && (local_x != n - 1) && (local_z != i3) && (local_z != i4 - 1))
+							local_y = i1;
 					}
 				}
 			}
-			if (waterFound)
-				continue;
-
-			// Generate cave
-			for (int local_x = m; local_x < n; local_x++) {
-				double d9 = (local_x + generatingChunk.getBlockX() + 0.5D - x) / d3;
-				for (int local_z = i3; local_z < i4; local_z++) {
-					LocalBiome biome = this.world.getBiome(local_x + generatingChunk.getBlockX(), local_z + generatingChunk.getBlockZ());
-					BiomeConfig biomeConfig = biome.getBiomeConfig();
-					double d10 = (local_z + generatingChunk.getBlockZ() + 0.5D - z) / d3;
-
-					boolean grassFound = false;
-					if (d9 * d9 + d10 * d10 < 1.0D) {
-						for (int local_y = i2; local_y > i1; local_y--) {
-							double d11 = ((local_y - 1) + 0.5D - y) / d4;
-							if ((d11 > -0.7D) && (d9 * d9 + d11 * d11 + d10 * d10 < 1.0D)) {
-								LocalMaterialData material = generatingChunkBuffer.getBlock(local_x, local_y, local_z);
-								LocalMaterialData materialAbove = generatingChunkBuffer.getBlock(local_x, local_y + 1, local_z);
-								if (material.isMaterial(DefaultMaterial.GRASS) || material.isMaterial(DefaultMaterial.MYCEL))
-									grassFound = true;
-								if (this.isSuitableBlock(material, materialAbove, biomeConfig)) {
-									if (local_y - 1 < 10) {
-										generatingChunkBuffer.setBlock(local_x, local_y, local_z, lava);
+		}
+		if (waterFound)
+			return false;
+
+		// Generate cave
+		for (int local_x = m; local_x < n; local_x++) {
+			double d9 = (local_x + generatingChunk.getBlockX() + 0.5D - x) / d3;
+			for (int local_z = i3; local_z < i4; local_z++) {
+				LocalBiome biome = this.world.getBiome(local_x + generatingChunk.getBlockX(), local_z + generatingChunk.getBlockZ());
+				BiomeConfig biomeConfig = biome.getBiomeConfig();
+				CarvableBlocks carvableBlocks = biomeConfig.carvableBlocks;
+				double d10 = (local_z + generatingChunk.getBlockZ() + 0.5D - z) / d3;
+
+				boolean grassFound = false;
+				if (d9 * d9 + d10 * d10 < 1.0D) {
+					for (int local_y = i2; local_y > i1; local_y--) {
+						double d11 = ((local_y - 1) + 0.5D - y) / d4;
+						if ((d11 > -0.7D) && (d9 * d9 + d11 * d11 + d10 * d10 < 1.0D)) {
+							int block = generatingChunkBuffer.getPackedBlock(local_x, local_y, local_z);
+							int blockAbove = generatingChunkBuffer.getPackedBlock(local_x, local_y + 1, local_z);
+							if (block >> 4 == GRASS_ID || block >> 4 == MYCEL_ID)
+								grassFound = true;
+							if (carvableBlocks.canCaveCarve(generatingChunkBuffer, local_x, local_y, local_z, block, blockAbove)) {
+								if (local_y - 1 < 10) {
+									generatingChunkBuffer.setBlock(local_x, local_y, local_z, lava);
+								}
+								else {
+									generatingChunkBuffer.setBlock(local_x, local_y, local_z, air);
+
+									// Replace supporting sand with
+									// sandstone. TODO: support red
+									// sand(stone) in Minecraft 1.8
+									if (blockAbove == SAND_ID << 4) {
+										generatingChunkBuffer.setBlock(local_x, local_y + 1, local_z, sandstone);
 									}
-									else {
-										generatingChunkBuffer.setBlock(local_x, local_y, local_z, air);
-
-										// Replace supporting sand with
-										// sandstone. TODO: support red
-										// sand(stone) in Minecraft 1.8
-										if (materialAbove.isMaterial(DefaultMaterial.SAND) && materialAbove.getBlockData() == 0) {
-											generatingChunkBuffer.setBlock(local_x, local_y + 1, local_z, sandstone);
-										}
-
-										// If grass was just deleted, try to
-										// move it down
-										if (grassFound && (generatingChunkBuffer.getBlock(local_x, local_y - 1, local_z)
-												.isMaterial(DefaultMaterial.DIRT))) {
-											generatingChunkBuffer.setBlock(local_x, local_y - 1, local_z,
-													biomeConfig.surfaceBlock);
-										}
+
+									// If grass was just deleted, try to
+									// move it down
+									if (grassFound
+											&& generatingChunkBuffer.getPackedBlock(local_x, local_y - 1, local_z) >> 4 == DIRT_ID) {
+										generatingChunkBuffer.setBlock(local_x, local_y - 1, local_z,
+												biomeConfig.surfaceBlock);
 									}
 								}
 							}
@@ -184,34 +363,21 @@ public class CavesGen extends TerrainGenBase {
 					}
 				}
 			}
-			if (isLargeCave)
-				break;
 		}
-	}
-
-	protected boolean isSuitableBlock(LocalMaterialData material, LocalMaterialData materialAbove, BiomeConfig biomeConfig) {
-		if (material.equals(biomeConfig.stoneBlock)) { return true; }
-		if (material.canFall()) { return !materialAbove.isLiquid(); }
-		if (material.equals(biomeConfig.groundBlock)) { return true; }
-		if (material.equals(biomeConfig.surfaceBlock)) { return true; }
-
-		// Few hardcoded cases
-		if (material.isMaterial(DefaultMaterial.HARD_CLAY)) { return true; }
-		if (material.isMaterial(DefaultMaterial.SANDSTONE)) { return true; }
-		// TODO: add red sandstone case in Minecraft 1.8
-		if (material.isMaterial(DefaultMaterial.SNOW)) { return true; }
-
-		return false;
+		return true;
 	}
 
 	@Override
-	protected void generateChunk(ChunkCoordinate chunkCoord, ChunkBuffer generatingChunkBuffer) {
+	protected List<Tunnel> createPlan(ChunkCoordinate chunkCoord) {
 		int i = this.random.nextInt(this.random.nextInt(this.random.nextInt(this.worldSettings.caveFrequency) + 1) + 1);
 		if (this.worldSettings.evenCaveDistribution)
 			i = this.worldSettings.caveFrequency;
 		if (this.random.nextInt(100) >= this.worldSettings.caveRarity)
 			i = 0;
 
+		if (i == 0) { return null; }
+
+		List<Tunnel> tunnels = new ArrayList<>();
 		for (int j = 0; j < i; j++) {
 			double x = chunkCoord.getBlockX() + this.random.nextInt(ChunkCoordinate.CHUNK_X_SIZE);
 
@@ -229,7 +395,7 @@ public class CavesGen extends TerrainGenBase {
 			int count = this.worldSettings.caveSystemFrequency;
 			boolean largeCaveSpawned = false;
 			if (this.random.nextInt(100) <= this.worldSettings.individualCaveRarity) {
-				generateLargeCaveNode(this.random.nextLong(), generatingChunkBuffer, x, y, z);
+				tunnels.add(createLargeCaveNode(this.random.nextLong(), x, y, z));
 				largeCaveSpawned = true;
 			}
 
@@ -243,9 +409,29 @@ public class CavesGen extends TerrainGenBase {
 				float f2 = (this.random.nextFloat() - 0.5F) * 2.0F / 8.0F;
 				float f3 = this.random.nextFloat() * 2.0F + this.random.nextFloat();
 
-				generateCaveNode(this.random.nextLong(), generatingChunkBuffer, x, y, z, f3, f1, f2, 0, 0, 1.0D);
+				tunnels.add(createCaveNode(this.random.nextLong(), x, y, z, f3, f1, f2, 0, 0, 1.0D));
 			}
 		}
+		return tunnels;
+	}
+
+	@Override
+	protected int getPlanSize(List<Tunnel> tunnels) {
+		int size = 32 + tunnels.size() * 4;
+		for (Tunnel tunnel : tunnels) {
+			size += 72 + tunnel.path.getMemorySize();
+			if (tunnel.firstBranch != null) { size += 72 + tunnel.firstBranch.path.getMemorySize(); }
+		}
+		return size;
 	}
 
+	@Override
+	protected void carve(List<Tunnel> tunnels, ChunkBuffer generatingChunkBuffer) {
+		ChunkCoordinate generatingChunk = generatingChunkBuffer.getChunkCoordinate();
+		double real_x = generatingChunk.getBlockXCenter();
+		double real_z = generatingChunk.getBlockZCenter();
+		for (Tunnel tunnel : tunnels) {
+			if (tunnel.path.mayCarve(real_x, real_z)) { carveCaveNode(tunnel, generatingChunkBuffer); }
+		}
+	}
 }
@@ -9,9 +9,49 @@ import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
 
 import com.gtnewhorizon.gtnhlib.util.StdLCG;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
 import java.util.Random;
 
-public abstract class TerrainGenBase {
+/**
+ * Base class of the carvers. Carving happens in two phases: first a plan is
+ * made for every chunk, which holds everything that only depends on the
+ * chunk the plan is for, like the paths of the caves that start in that
+ * chunk. Then the plans of all chunks around the generated chunk are carved
+ * into it.
+ *
+ * <p>
+ * Plans are reused for all chunks they reach. Generating a chunk needs the
+ * plans of the 17x17 chunks around it, so a row of chunks that are
+ * generated near each other needs a few hundred plans. The most recently
+ * used plans are kept, at most {@value #PLAN_CACHE_PLANS} plans and
+ * {@value #PLAN_CACHE_BYTES} bytes, see {@link #getPlanSize(Object)}. The
+ * plans of the last generated chunk are always kept, even if they are
+ * larger, otherwise they would be removed before the next chunk can reuse
+ * them. Every terrain generator has its own carvers, so these limits apply
+ * to every generation thread.
+ *
+ * @param <P> Type of the plans.
+ */
+public abstract class TerrainGenBase<P> {
+	private static final int PLAN_CACHE_PLANS = 4096;
+	private static final int PLAN_CACHE_BYTES = 32 << 20;
+	/**
+	 * Approximate number of bytes used by the cache for every plan.
+	 */
+	private static final int PLAN_ENTRY_BYTES = 32;
+
+	/**
+	 * Stored for chunks without a plan.
+	 */
+	private static final Object NO_PLAN = new Object();
+
+	// Block ids for the carve loops, which work on packed blocks
+	protected static final int WATER_ID = DefaultMaterial.WATER.id;
+	protected static final int STATIONARY_WATER_ID = DefaultMaterial.STATIONARY_WATER.id;
+	protected static final int GRASS_ID = DefaultMaterial.GRASS.id;
+	protected static final int DIRT_ID = DefaultMaterial.DIRT.id;
+
 	// Hardcoded materials that cannot be changed for now
 	protected final LocalMaterialData air = TerrainControl.toLocalMaterialData(DefaultMaterial.AIR, 0);
 	protected final LocalMaterialData lava = TerrainControl.toLocalMaterialData(DefaultMaterial.STATIONARY_LAVA, 0);
@@ -23,6 +63,13 @@ public abstract class TerrainGenBase {
 	private final long worldLong1;
 	private final long worldLong2;
 
+	/**
+	 * Plans, or {@link #NO_PLAN}, by packed chunk coordinate. The least
+	 * recently used plan comes first.
+	 */
+	private final Long2ObjectLinkedOpenHashMap<Object> plans = new Long2ObjectLinkedOpenHashMap<>();
+	private int plansSize;
+
 	public TerrainGenBase(LocalWorld world) {
 		this.world = world;
 		this.random.setSeed(this.world.getSeed());
@@ -38,21 +85,66 @@ public abstract class TerrainGenBase {
 
 		for (int x = chunkX - i; x <= chunkX + i; x++)
 			for (int z = chunkZ - i; z <= chunkZ + i; z++) {
-				long l3 = x * worldLong1;
-				long l4 = z * worldLong2;
-				this.random.setSeed(l3 ^ l4 ^ this.world.getSeed());
-				generateChunk(ChunkCoordinate.fromChunkCoords(x, z), chunkBuffer);
+				P plan = getPlan(x, z);
+				if (plan != null) { carve(plan, chunkBuffer); }
 			}
+
+		// Remove the least recently used plans, but never the plans of this
+		// chunk
+		int plansOfChunk = (2 * i + 1) * (2 * i + 1);
+		while ((plans.size() > PLAN_CACHE_PLANS || plansSize > PLAN_CACHE_BYTES) && plans.size() > plansOfChunk) {
+			plansSize -= getSize(plans.removeFirst());
+		}
 	}
 
+	@SuppressWarnings("unchecked")
+	private P getPlan(int chunkX, int chunkZ) {
+		long key = (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+		Object plan = plans.getAndMoveToLast(key);
+		if (plan == null) {
+			long l3 = chunkX * worldLong1;
+			long l4 = chunkZ * worldLong2;
+			this.random.setSeed(l3 ^ l4 ^ this.world.getSeed());
+			P newPlan = createPlan(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+
+			plan = newPlan == null ? NO_PLAN : newPlan;
+			plans.putAndMoveToLast(key, plan);
+			plansSize += getSize(plan);
+		}
+		return plan == NO_PLAN ? null : (P) plan;
+	}
+
+	@SuppressWarnings("unchecked")
+	private int getSize(Object plan) {
+		return plan == NO_PLAN ? PLAN_ENTRY_BYTES : PLAN_ENTRY_BYTES + getPlanSize((P) plan);
+	}
+
+	/**
+	 * Makes the plan for the given chunk. The terrain generator calls this
+	 * method for all chunks not more than {@link #checkAreaSize} chunks away
+	 * on either axis from the generated chunk, unless the plan of the chunk
+	 * is still cached. {@link #random} is seeded for the chunk.
+	 *
+	 * @param currentChunk The chunk we're searching.
+	 * @return The plan, or null if nothing needs to be carved.
+	 */
+	protected abstract P createPlan(ChunkCoordinate currentChunk);
+
+	/**
+	 * Gets the size of a plan, used to limit the memory used by the cached
+	 * plans.
+	 *
+	 * @param plan The plan.
+	 * @return The approximate number of bytes used by the plan.
+	 */
+	protected abstract int getPlanSize(P plan);
+
 	/**
-	 * Generates the structure for the given chunk. The terrain generator
-	 * calls this method for all chunks not more than {@link #checkAreaSize}
-	 * chunks away on either axis from the generatingChunk.
+	 * Carves the parts of a plan that are in the generated chunk.
 	 *
-	 * @param currentChunk          The chunk we're searching.
+	 * @param plan                  The plan.
 	 * @param generatingChunkBuffer The chunk that is currently being
 	 *                              generated.
 	 */
-	protected abstract void generateChunk(ChunkCoordinate currentChunk, ChunkBuffer generatingChunkBuffer);
+	protected abstract void carve(P plan, ChunkBuffer generatingChunkBuffer);
 }
@@ -0,0 +1,377 @@
+package com.khorn.terraincontrol.standalone;
+
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.khorn.terraincontrol.LocalBiome;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.generator.biome.OutputType;
+import com.khorn.terraincontrol.logging.LogMarker;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.NamedBinaryTag;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates and populates a square of chunks on all cores, without a
+ * Minecraft server, and saves the chunks directly to the region files of
+ * the world.
+ *
+ * <p>
+ * Chunks are generated in rows. A chunk is populated as soon as the 2x2
+ * chunks of its population area are generated and no other thread is
+ * populating an overlapping area, so populations of different areas run in
+ * parallel. A chunk is saved and removed from memory once all populations
+ * that touch it are finished.
+ *
+ * <p>
+ * Chunks that are already saved in the region files are generated again
+ * (their neighbors may need them for population), but they are not
+ * overwritten.
+ *
+ * <p>
+ * The standalone world can't place vanilla trees, dungeons, structures or
+ * mobs. If the settings of the world use one of the first three, see
+ * {@link StandaloneWorld#getUnsupportedSettings()}, chunks are only
+ * generated and saved as not populated, so that Minecraft populates them.
+ * Otherwise chunks are saved as populated, without any mobs.
+ */
+public final class Pregenerator {
+	private static final long LOG_INTERVAL_SECONDS = 10;
+
+	/**
+	 * Chunks that are generated and populated, but not yet saved, per
+	 * worker thread. Only a lower bound: a full row of chunks is always
+	 * allowed in memory.
+	 */
+	private static final int CHUNKS_IN_MEMORY_PER_THREAD = 64;
+
+	/**
+	 * Scheduling state of a chunk. Guarded by the lock of the
+	 * {@link Pregenerator}.
+	 */
+	private static final class ChunkState {
+		/**
+		 * Number of generated chunks of the population area of this chunk.
+		 */
+		int generatedInArea;
+		/**
+		 * Number of finished populations that touch this chunk.
+		 */
+		int populationsDone;
+		/**
+		 * Whether a population that touches this chunk is running.
+		 */
+		boolean busy;
+	}
+
+	private final StandaloneWorld world;
+	private final RegionWriter regionWriter;
+	private final int threads;
+	private boolean populate;
+
+	// Square of chunks to populate
+	private int minX;
+	private int minZ;
+	private int maxX;
+	private int maxZ;
+
+	private final Map<Long, ChunkState> states = new HashMap<>();
+	/**
+	 * Populations that could run, but that overlap a running population.
+	 */
+	private final Set<Long> blocked = new HashSet<>();
+
+	private ExecutorService executor;
+	private Semaphore memoryPermits;
+	private CountDownLatch remaining;
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	/**
+	 * Creates a new pregenerator.
+	 *
+	 * @param world        The world to generate.
+	 * @param regionFolder The region folder of the world.
+	 * @param threads      The number of worker threads.
+	 * @throws IOException If the region folder cannot be created.
+	 */
+	public Pregenerator(StandaloneWorld world, File regionFolder, int threads) throws IOException {
+		this.world = world;
+		this.regionWriter = new RegionWriter(regionFolder);
+		this.threads = threads;
+	}
+
+	private static long toKey(int chunkX, int chunkZ) {
+		return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+	}
+
+	private boolean isPopulated(int chunkX, int chunkZ) {
+		return populate && chunkX >= minX && chunkX <= maxX && chunkZ >= minZ && chunkZ <= maxZ;
+	}
+
+	private ChunkState getState(int chunkX, int chunkZ) {
+		return states.computeIfAbsent(toKey(chunkX, chunkZ), key -> new ChunkState());
+	}
+
+	/**
+	 * Generates, populates and saves all chunks in a square. The chunks
+	 * directly east and south of the square are generated too, as the
+	 * population of the square needs them, but those are saved as not
+	 * populated. If the world has settings the standalone world can't
+	 * populate, the square is only generated, and saved as not populated.
+	 *
+	 * @param centerChunkX X position of the center of the square.
+	 * @param centerChunkZ Z position of the center of the square.
+	 * @param radius       Radius of the square, in chunks.
+	 * @throws IOException          If saving fails.
+	 * @throws InterruptedException If the thread is interrupted while
+	 *                              waiting for the workers.
+	 */
+	public void pregenerate(int centerChunkX, int centerChunkZ, int radius) throws IOException, InterruptedException {
+		minX = centerChunkX - radius;
+		minZ = centerChunkZ - radius;
+		maxX = centerChunkX + radius;
+		maxZ = centerChunkZ + radius;
+
+		Set<String> unsupported = world.getUnsupportedSettings();
+		populate = unsupported.isEmpty();
+		if (!populate) {
+			TerrainControl.log(LogMarker.WARN, "Only generating the terrain of {}, population is left to Minecraft. Not supported: {}",
+					world.getName(), String.join(", ", unsupported));
+		}
+
+		// Population needs the chunks east and south of the square
+		int border = populate ? 1 : 0;
+		int rowLength = maxX - minX + 1 + border;
+		int total = rowLength * (maxZ - minZ + 1 + border);
+
+		// A chunk can only be saved when the next row is generated, so at
+		// least two rows must fit in memory
+		memoryPermits = new Semaphore(Math.max(threads * CHUNKS_IN_MEMORY_PER_THREAD, 2 * rowLength + 2 * threads + 2));
+		remaining = new CountDownLatch(total);
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "TerrainControl pregenerator " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		TerrainControl.log(LogMarker.INFO, "Pregenerating {} chunks of {} on {} threads", total, world.getName(), threads);
+		long start = System.nanoTime();
+		try {
+			for (int chunkZ = minZ; chunkZ <= maxZ + border && failure.get() == null; chunkZ++) {
+				for (int chunkX = minX; chunkX <= maxX + border && failure.get() == null; chunkX++) {
+					memoryPermits.acquire();
+					int x = chunkX;
+					int z = chunkZ;
+					submit(() -> generate(x, z));
+				}
+			}
+
+			while (!remaining.await(LOG_INTERVAL_SECONDS, TimeUnit.SECONDS) && failure.get() == null) {
+				long done = total - remaining.getCount();
+				double seconds = (System.nanoTime() - start) / 1e9;
+				TerrainControl.log(LogMarker.INFO, "Pregenerated {}/{} chunks, {} chunks/s", done, total, (int) (done / seconds));
+			}
+		} finally {
+			executor.shutdownNow();
+			regionWriter.close();
+		}
+
+		Throwable thrown = failure.get();
+		if (thrown != null) {
+			if (thrown instanceof IOException) { throw (IOException) thrown; }
+			throw new RuntimeException("Pregeneration failed", thrown);
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		TerrainControl.log(LogMarker.INFO, "Pregenerated {} chunks in {} s, {} chunks were already saved and kept", total, (int) seconds,
+				skipped.get());
+	}
+
+	private interface Task {
+		void run() throws Exception;
+	}
+
+	private void submit(Task task) {
+		executor.execute(() -> {
+			if (failure.get() != null) { return; }
+			try {
+				task.run();
+			} catch (Throwable e) {
+				if (failure.compareAndSet(null, e)) {
+					// Wake up the main thread
+					memoryPermits.release(Integer.MAX_VALUE / 2);
+					while (remaining.getCount() > 0) {
+						remaining.countDown();
+					}
+				}
+			}
+		});
+	}
+
+	private void generate(int chunkX, int chunkZ) throws IOException {
+		world.getOrGenerateChunk(chunkX, chunkZ);
+		if (!populate) {
+			save(chunkX, chunkZ);
+			return;
+		}
+
+		synchronized (this) {
+			// Update the population areas that contain this chunk
+			for (int areaX = chunkX - 1; areaX <= chunkX; areaX++) {
+				for (int areaZ = chunkZ - 1; areaZ <= chunkZ; areaZ++) {
+					if (!isPopulated(areaX, areaZ)) { continue; }
+					ChunkState area = getState(areaX, areaZ);
+					area.generatedInArea++;
+					if (area.generatedInArea == 4) { tryPopulate(areaX, areaZ); }
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts the population of a chunk, or marks it as blocked if an
+	 * overlapping population is running. Must hold the lock.
+	 */
+	private void tryPopulate(int chunkX, int chunkZ) {
+		for (int x = chunkX; x <= chunkX + 1; x++) {
+			for (int z = chunkZ; z <= chunkZ + 1; z++) {
+				if (getState(x, z).busy) {
+					blocked.add(toKey(chunkX, chunkZ));
+					return;
+				}
+			}
+		}
+
+		blocked.remove(toKey(chunkX, chunkZ));
+		for (int x = chunkX; x <= chunkX + 1; x++) {
+			for (int z = chunkZ; z <= chunkZ + 1; z++) {
+				getState(x, z).busy = true;
+			}
+		}
+		submit(() -> populate(chunkX, chunkZ));
+	}
+
+	private void populate(int chunkX, int chunkZ) {
+		world.populate(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+
+		synchronized (this) {
+			for (int x = chunkX; x <= chunkX + 1; x++) {
+				for (int z = chunkZ; z <= chunkZ + 1; z++) {
+					ChunkState state = getState(x, z);
+					state.busy = false;
+					state.populationsDone++;
+					if (state.populationsDone == countPopulations(x, z)) { submitSave(x, z); }
+				}
+			}
+
+			// Populations that overlapped this one may run now
+			for (int x = chunkX - 1; x <= chunkX + 1; x++) {
+				for (int z = chunkZ - 1; z <= chunkZ + 1; z++) {
+					if (blocked.contains(toKey(x, z))) { tryPopulate(x, z); }
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of populations in the square that touch the chunk.
+	 */
+	private int countPopulations(int chunkX, int chunkZ) {
+		int count = 0;
+		for (int x = chunkX - 1; x <= chunkX; x++) {
+			for (int z = chunkZ - 1; z <= chunkZ; z++) {
+				if (isPopulated(x, z)) { count++; }
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Schedules saving the chunk. Must hold the lock.
+	 */
+	private void submitSave(int chunkX, int chunkZ) {
+		// All populations touching this chunk are done, so the population
+		// state of the chunk is no longer needed. The population state of
+		// the area starting at this chunk may still be used, but only if
+		// the area itself is populated, which is also done by now.
+		states.remove(toKey(chunkX, chunkZ));
+		submit(() -> save(chunkX, chunkZ));
+	}
+
+	private void save(int chunkX, int chunkZ) throws IOException {
+		StandaloneChunkBuffer chunk = world.removeChunk(chunkX, chunkZ);
+
+		int[] biomeIds = world.getBiomeGenerator().getBiomes(null, chunkX * CHUNK_X_SIZE, chunkZ * CHUNK_Z_SIZE, CHUNK_X_SIZE,
+				CHUNK_Z_SIZE, OutputType.DEFAULT_FOR_WORLD);
+		byte[] biomes = new byte[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+		for (int i = 0; i < biomes.length; i++) {
+			LocalBiome biome = world.getBiomeById(biomeIds[i]);
+			biomes[i] = (byte) biome.getIds().getSavedId();
+		}
+
+		if (!regionWriter.writeChunk(chunk, biomes, isPopulated(chunkX, chunkZ))) { skipped.incrementAndGet(); }
+		memoryPermits.release();
+		remaining.countDown();
+	}
+
+	/**
+	 * Pregenerates a world from the command line. The seed and the spawn
+	 * point are read from the level.dat file of the world, so the world
+	 * must have been created by Minecraft before. The WorldConfig and the
+	 * biome configs are read from the TerrainControl folder of the world.
+	 *
+	 * @param args The TerrainControl folder of the mods folder, the world
+	 *             folder, the radius in chunks and optionally the number of
+	 *             threads.
+	 * @throws Exception If pregeneration fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3 || args.length > 4) {
+			System.err.println("Usage: Pregenerator <mods/TerrainControl folder> <world folder> <radius in chunks> [threads]");
+			System.err.println("Vanilla trees, dungeons, structures and mobs can't be placed. If the WorldConfig enables vanilla");
+			System.err.println("structures, or a biome uses Dungeon or vanilla trees, chunks are only generated and Minecraft");
+			System.err.println("populates them. Otherwise the chunks are populated, but have no mobs.");
+			System.exit(1);
+		}
+		File dataFolder = new File(args[0]);
+		File worldFolder = new File(args[1]);
+		int radius = Integer.parseInt(args[2]);
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		NamedBinaryTag levelData;
+		try (InputStream stream = new FileInputStream(new File(worldFolder, "level.dat"))) {
+			levelData = NamedBinaryTag.readFrom(stream, true).getTag("Data");
+		}
+		long seed = (Long) levelData.getTag("RandomSeed").getValue();
+		int spawnChunkX = (Integer) levelData.getTag("SpawnX").getValue() >> 4;
+		int spawnChunkZ = (Integer) levelData.getTag("SpawnZ").getValue() >> 4;
+
+		StandaloneEngine engine = StandaloneEngine.start(dataFolder);
+		StandaloneWorld world = new StandaloneWorld(worldFolder.getName(), seed, new File(worldFolder, "TerrainControl"), worldFolder);
+		engine.addWorld(world);
+		try {
+			new Pregenerator(world, new File(worldFolder, "region"), threads).pregenerate(spawnChunkX, spawnChunkZ, radius);
+		} finally {
+			world.close();
+			engine.removeWorld(world);
+			TerrainControl.stopEngine();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package com.khorn.terraincontrol.standalone;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * A region file (.mca) of 32x32 chunks, in the format that Minecraft uses.
+ * New chunks are always appended to the end of the file, so space of
+ * overwritten chunks is not reused. Not thread safe.
+ */
+final class RegionFile implements Closeable {
+	/**
+	 * Width and depth of a region, in chunks.
+	 */
+	static final int REGION_SIZE = 32;
+
+	private static final int SECTOR_BYTES = 4096;
+	private static final int CHUNKS_PER_REGION = REGION_SIZE * REGION_SIZE;
+	private static final int HEADER_SECTORS = 2;
+	private static final int MAX_SECTORS_PER_CHUNK = 255;
+	private static final byte GZIP_COMPRESSION = 1;
+
+	private final RandomAccessFile file;
+	/**
+	 * Sector offset (upper 24 bits) and sector count (lower 8 bits) of all
+	 * chunks, zero for missing chunks.
+	 */
+	private final int[] locations = new int[CHUNKS_PER_REGION];
+	private int sectorCount;
+
+	/**
+	 * Opens the region file containing the given chunk, creating it if it
+	 * doesn't exist yet.
+	 *
+	 * @param regionFolder The region folder of the world.
+	 * @param chunkX       X position of any chunk in the region.
+	 * @param chunkZ       Z position of any chunk in the region.
+	 * @throws IOException If the file cannot be read or created.
+	 */
+	RegionFile(File regionFolder, int chunkX, int chunkZ) throws IOException {
+		File fileName = new File(regionFolder, "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mca");
+		this.file = new RandomAccessFile(fileName, "rw");
+
+		if (file.length() < HEADER_SECTORS * SECTOR_BYTES) {
+			// New file, write an empty header
+			file.setLength(0);
+			file.write(new byte[HEADER_SECTORS * SECTOR_BYTES]);
+		}
+		else {
+			file.seek(0);
+			for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+				locations[i] = file.readInt();
+			}
+		}
+		this.sectorCount = (int) ((file.length() + SECTOR_BYTES - 1) / SECTOR_BYTES);
+	}
+
+	private static int index(int chunkX, int chunkZ) {
+		return (chunkX & (REGION_SIZE - 1)) + (chunkZ & (REGION_SIZE - 1)) * REGION_SIZE;
+	}
+
+	/**
+	 * Gets whether the given chunk is saved in this region file.
+	 *
+	 * @param chunkX X position of the chunk.
+	 * @param chunkZ Z position of the chunk.
+	 * @return True if the chunk is saved.
+	 */
+	boolean hasChunk(int chunkX, int chunkZ) {
+		return locations[index(chunkX, chunkZ)] != 0;
+	}
+
+	/**
+	 * Saves a chunk, replacing the chunk that was already saved.
+	 *
+	 * @param chunkX   X position of the chunk.
+	 * @param chunkZ   Z position of the chunk.
+	 * @param gzipData The chunk NBT, GZIP compressed.
+	 * @throws IOException If the chunk is too large, or if writing fails.
+	 */
+	void writeChunk(int chunkX, int chunkZ, byte[] gzipData) throws IOException {
+		// Four bytes length and one byte compression type
+		int sectors = (gzipData.length + 5 + SECTOR_BYTES - 1) / SECTOR_BYTES;
+		if (sectors > MAX_SECTORS_PER_CHUNK) {
+			throw new IOException("Chunk " + chunkX + "," + chunkZ + " is too large to save: " + gzipData.length + " bytes");
+		}
+
+		int sectorOffset = sectorCount;
+		file.seek((long) sectorOffset * SECTOR_BYTES);
+		file.writeInt(gzipData.length + 1);
+		file.writeByte(GZIP_COMPRESSION);
+		file.write(gzipData);
+		file.write(new byte[sectors * SECTOR_BYTES - gzipData.length - 5]);
+		sectorCount += sectors;
+
+		int index = index(chunkX, chunkZ);
+		locations[index] = sectorOffset << 8 | sectors;
+		file.seek(index * 4L);
+		file.writeInt(locations[index]);
+		file.seek(SECTOR_BYTES + index * 4L);
+		file.writeInt((int) (System.currentTimeMillis() / 1000L));
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
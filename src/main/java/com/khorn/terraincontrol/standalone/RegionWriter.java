@@ -0,0 +1,232 @@
+package com.khorn.terraincontrol.standalone;
+
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Y_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.NamedBinaryTag;
+import com.khorn.terraincontrol.util.NamedBinaryTag.Type;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves chunks of a {@link StandaloneWorld} to the region files of a
+ * Minecraft 1.7.10 world. Chunks that are already saved are never
+ * overwritten.
+ *
+ * <p>
+ * Light is not calculated: the sky light is only a rough estimate, and
+ * chunks are saved as not lit, so that Minecraft recalculates the light when
+ * it loads the chunk. Thread safe.
+ */
+final class RegionWriter implements Closeable {
+	private static final int SECTION_HEIGHT = 16;
+	private static final int SECTION_VOLUME = CHUNK_X_SIZE * SECTION_HEIGHT * CHUNK_Z_SIZE;
+	private static final int MAX_OPEN_FILES = 64;
+	private static final byte FULL_SKY_LIGHT = (byte) 0xFF;
+
+	private final File regionFolder;
+	/**
+	 * Open region files, the least recently used first. Guarded by itself.
+	 */
+	private final LinkedHashMap<Long, RegionFile> openFiles = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Creates a new writer.
+	 *
+	 * @param regionFolder The region folder of the world, will be created
+	 *                     if it doesn't exist yet.
+	 * @throws IOException If the folder cannot be created.
+	 */
+	RegionWriter(File regionFolder) throws IOException {
+		if (!regionFolder.isDirectory() && !regionFolder.mkdirs()) { throw new IOException("Cannot create " + regionFolder); }
+		this.regionFolder = regionFolder;
+	}
+
+	/**
+	 * Gets whether the chunk is already saved in the region files.
+	 *
+	 * @param chunkX X position of the chunk.
+	 * @param chunkZ Z position of the chunk.
+	 * @return True if the chunk is saved.
+	 * @throws IOException If the region file cannot be read.
+	 */
+	boolean hasChunk(int chunkX, int chunkZ) throws IOException {
+		synchronized (openFiles) {
+			return getRegionFile(chunkX, chunkZ).hasChunk(chunkX, chunkZ);
+		}
+	}
+
+	/**
+	 * Saves a chunk, unless the chunk is already saved.
+	 *
+	 * @param chunk     The chunk.
+	 * @param biomes    The saved biome ids of all columns in the chunk, in
+	 *                  {@code x | z << 4} order.
+	 * @param populated Whether the chunk was populated.
+	 * @return False if the chunk was already saved, true otherwise.
+	 * @throws IOException If saving fails.
+	 */
+	boolean writeChunk(StandaloneChunkBuffer chunk, byte[] biomes, boolean populated) throws IOException {
+		ChunkCoordinate chunkCoord = chunk.getChunkCoordinate();
+		int chunkX = chunkCoord.getChunkX();
+		int chunkZ = chunkCoord.getChunkZ();
+
+		// Compress outside the lock, so that other threads can save at the
+		// same time
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(16384);
+		toNbt(chunk, biomes, populated).writeTo(bytes);
+
+		synchronized (openFiles) {
+			RegionFile regionFile = getRegionFile(chunkX, chunkZ);
+			if (regionFile.hasChunk(chunkX, chunkZ)) { return false; }
+			regionFile.writeChunk(chunkX, chunkZ, bytes.toByteArray());
+			return true;
+		}
+	}
+
+	private RegionFile getRegionFile(int chunkX, int chunkZ) throws IOException {
+		long key = (long) (chunkX >> 5) & 0xFFFFFFFFL | ((long) (chunkZ >> 5) & 0xFFFFFFFFL) << 32;
+		RegionFile regionFile = openFiles.get(key);
+		if (regionFile != null) { return regionFile; }
+
+		if (openFiles.size() >= MAX_OPEN_FILES) {
+			Iterator<RegionFile> eldest = openFiles.values().iterator();
+			eldest.next().close();
+			eldest.remove();
+		}
+		regionFile = new RegionFile(regionFolder, chunkX, chunkZ);
+		openFiles.put(key, regionFile);
+		return regionFile;
+	}
+
+	private static NamedBinaryTag toNbt(StandaloneChunkBuffer chunk, byte[] biomes, boolean populated) {
+		ChunkCoordinate chunkCoord = chunk.getChunkCoordinate();
+		int[] heightMap = createHeightMap(chunk);
+
+		NamedBinaryTag sections = new NamedBinaryTag("Sections", Type.TAG_Compound);
+		for (int sectionY = 0; sectionY < CHUNK_Y_SIZE / SECTION_HEIGHT; sectionY++) {
+			NamedBinaryTag section = createSection(chunk, heightMap, sectionY);
+			if (section != null) { sections.addTag(section); }
+		}
+
+		NamedBinaryTag tileEntities = new NamedBinaryTag("TileEntities", Type.TAG_Compound);
+		for (NamedBinaryTag tileEntity : chunk.getTileEntities()) {
+			tileEntities.addTag(tileEntity);
+		}
+
+		NamedBinaryTag level = compound("Level",
+				new NamedBinaryTag(Type.TAG_Int, "xPos", chunkCoord.getChunkX()),
+				new NamedBinaryTag(Type.TAG_Int, "zPos", chunkCoord.getChunkZ()),
+				new NamedBinaryTag(Type.TAG_Long, "LastUpdate", 0L),
+				new NamedBinaryTag(Type.TAG_Byte, "TerrainPopulated", (byte) (populated ? 1 : 0)),
+				new NamedBinaryTag(Type.TAG_Byte, "LightPopulated", (byte) 0),
+				new NamedBinaryTag(Type.TAG_Long, "InhabitedTime", 0L),
+				new NamedBinaryTag(Type.TAG_Byte, "V", (byte) 1),
+				new NamedBinaryTag(Type.TAG_Int_Array, "HeightMap", heightMap),
+				new NamedBinaryTag(Type.TAG_Byte_Array, "Biomes", biomes),
+				sections,
+				new NamedBinaryTag("Entities", Type.TAG_Compound),
+				tileEntities);
+		return compound("", level);
+	}
+
+	/**
+	 * Gets the height of all columns: the y position above the highest
+	 * solid or liquid block. Minecraft uses the light opacity instead, but
+	 * this is close enough for the chunk to be lit again when it is loaded.
+	 */
+	private static int[] createHeightMap(StandaloneChunkBuffer chunk) {
+		int[] heightMap = new int[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+		for (int x = 0; x < CHUNK_X_SIZE; x++) {
+			for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+				int y = chunk.getHighestBlockY(x, z);
+				while (y > 0) {
+					DefaultMaterial material = DefaultMaterial.getMaterial(chunk.getPackedBlock(x, y - 1, z) >> 4);
+					if (material.isSolid() || material.isLiquid() || material == DefaultMaterial.UNKNOWN_BLOCK) { break; }
+					y--;
+				}
+				heightMap[x | z << 4] = y;
+			}
+		}
+		return heightMap;
+	}
+
+	/**
+	 * Creates the NBT of a section of 16 blocks high, or null if the section
+	 * only contains air.
+	 */
+	private static NamedBinaryTag createSection(StandaloneChunkBuffer chunk, int[] heightMap, int sectionY) {
+		byte[] blocks = new byte[SECTION_VOLUME];
+		byte[] add = new byte[SECTION_VOLUME / 2];
+		byte[] data = new byte[SECTION_VOLUME / 2];
+		byte[] skyLight = new byte[SECTION_VOLUME / 2];
+		boolean empty = true;
+		boolean hasAdd = false;
+
+		int startY = sectionY * SECTION_HEIGHT;
+		for (int y = 0; y < SECTION_HEIGHT; y++) {
+			for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+				for (int x = 0; x < CHUNK_X_SIZE; x++) {
+					int index = y << 8 | z << 4 | x;
+					int nibbleShift = (index & 1) << 2;
+					if (startY + y >= heightMap[x | z << 4]) { skyLight[index >> 1] |= (byte) (0xF << nibbleShift); }
+
+					int packed = chunk.getPackedBlock(x, startY + y, z);
+					if (packed == 0) { continue; }
+					empty = false;
+					int blockId = packed >> 4;
+					blocks[index] = (byte) blockId;
+					data[index >> 1] |= (byte) ((packed & 0xF) << nibbleShift);
+					if (blockId > 0xFF) {
+						add[index >> 1] |= (byte) ((blockId >> 8) << nibbleShift);
+						hasAdd = true;
+					}
+				}
+			}
+		}
+		if (empty) { return null; }
+
+		List<NamedBinaryTag> tags = new ArrayList<>();
+		tags.add(new NamedBinaryTag(Type.TAG_Byte, "Y", (byte) sectionY));
+		tags.add(new NamedBinaryTag(Type.TAG_Byte_Array, "Blocks", blocks));
+		if (hasAdd) { tags.add(new NamedBinaryTag(Type.TAG_Byte_Array, "Add", add)); }
+		tags.add(new NamedBinaryTag(Type.TAG_Byte_Array, "Data", data));
+		tags.add(new NamedBinaryTag(Type.TAG_Byte_Array, "BlockLight", new byte[SECTION_VOLUME / 2]));
+		tags.add(new NamedBinaryTag(Type.TAG_Byte_Array, "SkyLight", skyLight));
+		return compound("", tags.toArray(new NamedBinaryTag[0]));
+	}
+
+	private static NamedBinaryTag compound(String name, NamedBinaryTag... tags) {
+		NamedBinaryTag[] withEnd = new NamedBinaryTag[tags.length + 1];
+		System.arraycopy(tags, 0, withEnd, 0, tags.length);
+		withEnd[tags.length] = new NamedBinaryTag(Type.TAG_End, null, null);
+		return new NamedBinaryTag(Type.TAG_Compound, name, withEnd);
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (openFiles) {
+			IOException failure = null;
+			for (RegionFile regionFile : openFiles.values()) {
+				try {
+					regionFile.close();
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+			openFiles.clear();
+			if (failure != null) { throw failure; }
+		}
+	}
+}
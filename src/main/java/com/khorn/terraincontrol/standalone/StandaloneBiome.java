@@ -0,0 +1,48 @@
+package com.khorn.terraincontrol.standalone;
+
+import com.khorn.terraincontrol.BiomeIds;
+import com.khorn.terraincontrol.LocalBiome;
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+
+/**
+ * Biome that only holds its config.
+ */
+final class StandaloneBiome implements LocalBiome {
+	private final BiomeConfig biomeConfig;
+	private final BiomeIds biomeIds;
+
+	StandaloneBiome(BiomeConfig biomeConfig, BiomeIds biomeIds) {
+		this.biomeConfig = biomeConfig;
+		this.biomeIds = biomeIds;
+	}
+
+	@Override
+	public boolean isCustom() { return true; }
+
+	@Override
+	public void setEffects() {
+		// No client to show the effects
+	}
+
+	@Override
+	public String getName() { return biomeConfig.getName(); }
+
+	@Override
+	public BiomeIds getIds() { return biomeIds; }
+
+	@Override
+	public float getTemperatureAt(int x, int y, int z) {
+		// Same height falloff as Minecraft, without the noise
+		float temperature = biomeConfig.biomeTemperature;
+		if (y > 64) { temperature -= (y - 64) * 0.05F / 30.0F; }
+		return temperature;
+	}
+
+	@Override
+	public BiomeConfig getBiomeConfig() { return biomeConfig; }
+
+	@Override
+	public String toString() {
+		return getName() + "[" + biomeIds + "]";
+	}
+}
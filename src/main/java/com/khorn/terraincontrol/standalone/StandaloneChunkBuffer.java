@@ -0,0 +1,147 @@
+package com.khorn.terraincontrol.standalone;
+
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_X_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Y_SIZE;
+import static com.khorn.terraincontrol.util.ChunkCoordinate.CHUNK_Z_SIZE;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.generator.ChunkBuffer;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.NamedBinaryTag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chunk stored as a single {@code char} per block: the block id in the upper
+ * 12 bits and the block data in the lower 4 bits. Also used as the chunk
+ * storage of the {@link StandaloneWorld}, so it also holds the tile entity
+ * data of the chunk.
+ */
+public final class StandaloneChunkBuffer implements ChunkBuffer {
+	private final ChunkCoordinate chunkCoord;
+	private final char[] blocks;
+	private final Map<Integer, NamedBinaryTag> metadata;
+
+	public StandaloneChunkBuffer(ChunkCoordinate chunkCoord) {
+		this.chunkCoord = chunkCoord;
+		this.blocks = new char[CHUNK_X_SIZE * CHUNK_Y_SIZE * CHUNK_Z_SIZE];
+		this.metadata = new HashMap<>();
+	}
+
+	private StandaloneChunkBuffer(StandaloneChunkBuffer original) {
+		this.chunkCoord = original.chunkCoord;
+		this.blocks = original.blocks.clone();
+		this.metadata = new HashMap<>(original.metadata);
+	}
+
+	private static int index(int blockX, int blockY, int blockZ) {
+		return (blockX * CHUNK_X_SIZE + blockZ) * CHUNK_Y_SIZE + blockY;
+	}
+
+	@Override
+	public ChunkCoordinate getChunkCoordinate() { return chunkCoord; }
+
+	@Override
+	public void setBlock(int blockX, int blockY, int blockZ, LocalMaterialData material) {
+		blocks[index(blockX, blockY, blockZ)] = (char) (material.getBlockId() << 4 | material.getBlockData());
+	}
+
+	@Override
+	public LocalMaterialData getBlock(int blockX, int blockY, int blockZ) {
+		char block = blocks[index(blockX, blockY, blockZ)];
+		return StandaloneMaterialData.of(block >> 4, block & 0xF);
+	}
+
+	/**
+	 * Sets the tile entity data of a block.
+	 *
+	 * @param blockX X position in the chunk, 0 to 15.
+	 * @param blockY Y position in the chunk, 0 to 255.
+	 * @param blockZ Z position in the chunk, 0 to 15.
+	 * @param tag    The data, or null to remove the data.
+	 */
+	public void setMetadata(int blockX, int blockY, int blockZ, NamedBinaryTag tag) {
+		if (tag == null) {
+			metadata.remove(index(blockX, blockY, blockZ));
+		}
+		else {
+			metadata.put(index(blockX, blockY, blockZ), tag);
+		}
+	}
+
+	/**
+	 * Gets the tile entity data of a block.
+	 *
+	 * @param blockX X position in the chunk, 0 to 15.
+	 * @param blockY Y position in the chunk, 0 to 255.
+	 * @param blockZ Z position in the chunk, 0 to 15.
+	 * @return The data, or null if the block has no data.
+	 */
+	public NamedBinaryTag getMetadata(int blockX, int blockY, int blockZ) {
+		return metadata.get(index(blockX, blockY, blockZ));
+	}
+
+	/**
+	 * Gets the tile entity data of all blocks in this chunk, with the world
+	 * position of the block added to the data, as Minecraft saves it.
+	 *
+	 * @return The data.
+	 */
+	public List<NamedBinaryTag> getTileEntities() {
+		List<NamedBinaryTag> tileEntities = new ArrayList<>(metadata.size());
+		for (Map.Entry<Integer, NamedBinaryTag> entry : metadata.entrySet()) {
+			int index = entry.getKey();
+			int x = chunkCoord.getBlockX() + index / (CHUNK_Z_SIZE * CHUNK_Y_SIZE);
+			int y = index % CHUNK_Y_SIZE;
+			int z = chunkCoord.getBlockZ() + index / CHUNK_Y_SIZE % CHUNK_Z_SIZE;
+
+			List<NamedBinaryTag> subTags = new ArrayList<>();
+			for (NamedBinaryTag subTag : (NamedBinaryTag[]) entry.getValue().getValue()) {
+				String name = subTag.getName();
+				if (subTag.getType() == NamedBinaryTag.Type.TAG_End || name.equals("x") || name.equals("y") || name.equals("z")) {
+					continue;
+				}
+				subTags.add(subTag);
+			}
+			subTags.add(new NamedBinaryTag(NamedBinaryTag.Type.TAG_Int, "x", x));
+			subTags.add(new NamedBinaryTag(NamedBinaryTag.Type.TAG_Int, "y", y));
+			subTags.add(new NamedBinaryTag(NamedBinaryTag.Type.TAG_Int, "z", z));
+			subTags.add(new NamedBinaryTag(NamedBinaryTag.Type.TAG_End, null, null));
+			tileEntities.add(new NamedBinaryTag(NamedBinaryTag.Type.TAG_Compound, "", subTags.toArray(new NamedBinaryTag[0])));
+		}
+		return tileEntities;
+	}
+
+	@Override
+	public int getPackedBlock(int blockX, int blockY, int blockZ) {
+		return blocks[index(blockX, blockY, blockZ)];
+	}
+
+	/**
+	 * Gets the y position above the highest non-air block in the column.
+	 *
+	 * @param blockX X position in the chunk, 0 to 15.
+	 * @param blockZ Z position in the chunk, 0 to 15.
+	 * @return The y position, or 0 if the column is empty.
+	 */
+	public int getHighestBlockY(int blockX, int blockZ) {
+		int columnStart = index(blockX, 0, blockZ);
+		for (int y = CHUNK_Y_SIZE - 1; y >= 0; y--) {
+			if (blocks[columnStart + y] != 0) { return y + 1; }
+		}
+		return 0;
+	}
+
+	/**
+	 * Creates a copy of this chunk, for example so that a benchmark can
+	 * modify the same chunk multiple times.
+	 *
+	 * @return The copy.
+	 */
+	public StandaloneChunkBuffer copy() {
+		return new StandaloneChunkBuffer(this);
+	}
+}
@@ -0,0 +1,97 @@
+package com.khorn.terraincontrol.standalone;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.TerrainControlEngine;
+import com.khorn.terraincontrol.configuration.standard.PluginStandardValues;
+import com.khorn.terraincontrol.exception.InvalidConfigException;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Engine that runs without Minecraft. Materials are read using the names
+ * and ids of {@link DefaultMaterial}.
+ */
+public final class StandaloneEngine extends TerrainControlEngine {
+	private static final String MINECRAFT_PREFIX = "minecraft:";
+
+	private final File dataFolder;
+	private final Map<String, LocalWorld> worlds = new ConcurrentHashMap<>();
+
+	private StandaloneEngine(File dataFolder) {
+		this.dataFolder = dataFolder;
+	}
+
+	/**
+	 * Starts the engine, unless an engine is already running in this JVM.
+	 *
+	 * @param dataFolder The TerrainControl folder, holding the plugin config
+	 *                   and the global objects and biomes.
+	 * @return The running engine.
+	 */
+	public static synchronized StandaloneEngine start(File dataFolder) {
+		TerrainControlEngine engine = TerrainControl.getEngine();
+		if (engine == null) {
+			engine = new StandaloneEngine(dataFolder);
+			TerrainControl.setEngine(engine);
+		}
+		return (StandaloneEngine) engine;
+	}
+
+	public void addWorld(LocalWorld world) {
+		worlds.put(world.getName(), world);
+	}
+
+	public void removeWorld(LocalWorld world) {
+		worlds.remove(world.getName());
+	}
+
+	@Override
+	public File getGlobalObjectsDirectory() { return new File(dataFolder, PluginStandardValues.BO_DirectoryName); }
+
+	@Override
+	public File getTCDataFolder() { return dataFolder; }
+
+	@Override
+	public LocalWorld getWorld(String name) {
+		return worlds.get(name);
+	}
+
+	@Override
+	public LocalMaterialData readMaterial(String input) throws InvalidConfigException {
+		String name = input;
+		if (name.toLowerCase().startsWith(MINECRAFT_PREFIX)) { name = name.substring(MINECRAFT_PREFIX.length()); }
+
+		int blockData = 0;
+		int splitIndex = name.lastIndexOf(':');
+		if (splitIndex == -1) { splitIndex = name.lastIndexOf('.'); }
+		if (splitIndex != -1) {
+			try {
+				blockData = Integer.parseInt(name.substring(splitIndex + 1));
+			} catch (NumberFormatException e) {
+				throw new InvalidConfigException("Unknown material: " + input);
+			}
+			name = name.substring(0, splitIndex);
+		}
+
+		DefaultMaterial defaultMaterial = DefaultMaterial.getMaterial(name);
+		if (defaultMaterial == DefaultMaterial.UNKNOWN_BLOCK || blockData < 0 || blockData > 15) {
+			throw new InvalidConfigException("Unknown material: " + input);
+		}
+		return StandaloneMaterialData.of(defaultMaterial.id, blockData);
+	}
+
+	@Override
+	public LocalMaterialData toLocalMaterialData(int blockId, int blockData) {
+		return StandaloneMaterialData.of(blockId, blockData);
+	}
+
+	@Override
+	public LocalMaterialData toLocalMaterialData(DefaultMaterial defaultMaterial, int blockData) {
+		return StandaloneMaterialData.of(defaultMaterial.id, blockData);
+	}
+}
@@ -0,0 +1,123 @@
+package com.khorn.terraincontrol.standalone;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.util.helpers.BlockHelper;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+/**
+ * Material that is only a block id and block data. The properties of the
+ * material are taken from {@link DefaultMaterial}, so that no Minecraft
+ * blocks are needed.
+ */
+public final class StandaloneMaterialData implements LocalMaterialData {
+	private static final int MAX_DATA = 16;
+	private static final StandaloneMaterialData[] CACHE = new StandaloneMaterialData[TerrainControl.SUPPORTED_BLOCK_IDS * MAX_DATA];
+
+	public static final StandaloneMaterialData AIR = of(0, 0);
+
+	/**
+	 * Gets the material with the given id and data. May be called from
+	 * multiple threads: at worst, two equal instances are created.
+	 *
+	 * @param id   The block id.
+	 * @param data The block data.
+	 * @return The material.
+	 */
+	public static StandaloneMaterialData of(int id, int data) {
+		if (id < 0 || id >= TerrainControl.SUPPORTED_BLOCK_IDS || data < 0 || data >= MAX_DATA) {
+			return new StandaloneMaterialData(id, data);
+		}
+		int index = id * MAX_DATA + data;
+		StandaloneMaterialData cached = CACHE[index];
+		if (cached == null) {
+			cached = new StandaloneMaterialData(id, data);
+			CACHE[index] = cached;
+		}
+		return cached;
+	}
+
+	private final int id;
+	private final byte data;
+	private final DefaultMaterial defaultMaterial;
+
+	private StandaloneMaterialData(int id, int data) {
+		this.id = id;
+		this.data = (byte) data;
+		this.defaultMaterial = DefaultMaterial.getMaterial(id);
+	}
+
+	@Override
+	public String getName() {
+		String name = defaultMaterial == DefaultMaterial.UNKNOWN_BLOCK ? String.valueOf(id) : defaultMaterial.name();
+		return data == 0 ? name : name + ":" + data;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+	@Override
+	public int getBlockId() { return id; }
+
+	@Override
+	public byte getBlockData() { return data; }
+
+	@Override
+	public boolean isLiquid() {
+		return defaultMaterial.isLiquid() || defaultMaterial == DefaultMaterial.LAVA || defaultMaterial == DefaultMaterial.STATIONARY_LAVA;
+	}
+
+	@Override
+	public boolean isSolid() { return defaultMaterial.isSolid(); }
+
+	@Override
+	public boolean isAir() { return id == 0; }
+
+	@Override
+	public DefaultMaterial toDefaultMaterial() { return defaultMaterial; }
+
+	@Override
+	public boolean canSnowFallOn() { return defaultMaterial.canSnowFallOn(); }
+
+	@Override
+	public boolean isMaterial(DefaultMaterial material) {
+		return material.id == id;
+	}
+
+	@Override
+	public LocalMaterialData withBlockData(int newData) {
+		return of(id, newData);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) { return true; }
+		if (!(other instanceof StandaloneMaterialData)) { return false; }
+		StandaloneMaterialData material = (StandaloneMaterialData) other;
+		return id == material.id && data == material.data;
+	}
+
+	@Override
+	public int hashCode() {
+		return TerrainControl.SUPPORTED_BLOCK_IDS + id * MAX_DATA + data;
+	}
+
+	@Override
+	public int hashCodeWithoutBlockData() {
+		return id;
+	}
+
+	@Override
+	public LocalMaterialData rotate() {
+		if (defaultMaterial == DefaultMaterial.UNKNOWN_BLOCK) { return this; }
+		return of(id, BlockHelper.rotateData(defaultMaterial, data));
+	}
+
+	@Override
+	public boolean canFall() {
+		return defaultMaterial == DefaultMaterial.SAND || defaultMaterial == DefaultMaterial.GRAVEL
+				|| defaultMaterial == DefaultMaterial.ANVIL || defaultMaterial == DefaultMaterial.DRAGON_EGG;
+	}
+}
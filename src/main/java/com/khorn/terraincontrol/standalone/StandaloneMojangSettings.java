@@ -0,0 +1,143 @@
+package com.khorn.terraincontrol.standalone;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.configuration.WeightedMobSpawnGroup;
+import com.khorn.terraincontrol.configuration.standard.MojangSettings;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The default settings of the vanilla biomes, copied from Minecraft 1.7.10
+ * so that Minecraft's biome classes are not needed. Mob spawn groups are
+ * left empty.
+ */
+final class StandaloneMojangSettings implements MojangSettings {
+	// Heights of Minecraft's BiomeGenBase.Height presets, root height
+	// followed by height variation
+	private static final float[] DEFAULT = { 0.1F, 0.2F };
+	private static final float[] SHALLOW_WATERS = { -0.5F, 0.0F };
+	private static final float[] OCEANS = { -1.0F, 0.1F };
+	private static final float[] DEEP_OCEANS = { -1.8F, 0.1F };
+	private static final float[] LOW_PLAINS = { 0.125F, 0.05F };
+	private static final float[] MID_PLAINS = { 0.2F, 0.2F };
+	private static final float[] LOW_HILLS = { 0.45F, 0.3F };
+	private static final float[] HIGH_PLATEAUS = { 1.5F, 0.025F };
+	private static final float[] MID_HILLS = { 1.0F, 0.5F };
+	private static final float[] SHORES = { 0.0F, 0.025F };
+	private static final float[] ROCKY_WATERS = { 0.1F, 0.8F };
+	private static final float[] LOW_ISLANDS = { 0.2F, 0.3F };
+	private static final float[] PARTIALLY_SUBMERGED = { -0.2F, 0.1F };
+	private static final float[] EXTREME_HILLS_EDGE = { 0.8F, 0.4F };
+
+	private static final StandaloneMojangSettings[] VANILLA = new StandaloneMojangSettings[40];
+
+	static {
+		vanilla(0, OCEANS, 0.5F, 0.5F);
+		vanilla(1, LOW_PLAINS, 0.8F, 0.4F);
+		vanilla(2, LOW_PLAINS, 2.0F, 0.0F, DefaultMaterial.SAND, DefaultMaterial.SAND);
+		vanilla(3, MID_HILLS, 0.2F, 0.3F);
+		vanilla(4, DEFAULT, 0.7F, 0.8F);
+		vanilla(5, MID_PLAINS, 0.25F, 0.8F);
+		vanilla(6, PARTIALLY_SUBMERGED, 0.8F, 0.9F);
+		vanilla(7, SHALLOW_WATERS, 0.5F, 0.5F);
+		vanilla(8, DEFAULT, 2.0F, 0.0F);
+		vanilla(9, DEFAULT, 0.5F, 0.5F, DefaultMaterial.DIRT, DefaultMaterial.DIRT);
+		vanilla(10, OCEANS, 0.0F, 0.5F);
+		vanilla(11, SHALLOW_WATERS, 0.0F, 0.5F);
+		vanilla(12, LOW_PLAINS, 0.0F, 0.5F);
+		vanilla(13, LOW_HILLS, 0.0F, 0.5F);
+		vanilla(14, LOW_ISLANDS, 0.9F, 1.0F, DefaultMaterial.MYCEL, DefaultMaterial.DIRT);
+		vanilla(15, SHORES, 0.9F, 1.0F, DefaultMaterial.MYCEL, DefaultMaterial.DIRT);
+		vanilla(16, SHORES, 0.8F, 0.4F, DefaultMaterial.SAND, DefaultMaterial.SAND);
+		vanilla(17, LOW_HILLS, 2.0F, 0.0F, DefaultMaterial.SAND, DefaultMaterial.SAND);
+		vanilla(18, LOW_HILLS, 0.7F, 0.8F);
+		vanilla(19, LOW_HILLS, 0.25F, 0.8F);
+		vanilla(20, EXTREME_HILLS_EDGE, 0.2F, 0.3F);
+		vanilla(21, DEFAULT, 0.95F, 0.9F);
+		vanilla(22, LOW_HILLS, 0.95F, 0.9F);
+		vanilla(23, DEFAULT, 0.95F, 0.8F);
+		vanilla(24, DEEP_OCEANS, 0.5F, 0.5F);
+		vanilla(25, ROCKY_WATERS, 0.2F, 0.3F, DefaultMaterial.STONE, DefaultMaterial.STONE);
+		vanilla(26, SHORES, 0.05F, 0.3F, DefaultMaterial.SAND, DefaultMaterial.SAND);
+		vanilla(27, DEFAULT, 0.6F, 0.6F);
+		vanilla(28, LOW_HILLS, 0.6F, 0.6F);
+		vanilla(29, DEFAULT, 0.7F, 0.8F);
+		vanilla(30, MID_PLAINS, -0.5F, 0.4F);
+		vanilla(31, LOW_HILLS, -0.5F, 0.4F);
+		vanilla(32, MID_PLAINS, 0.3F, 0.8F);
+		vanilla(33, LOW_HILLS, 0.3F, 0.8F);
+		vanilla(34, MID_HILLS, 0.2F, 0.3F);
+		vanilla(35, LOW_PLAINS, 1.2F, 0.0F);
+		vanilla(36, HIGH_PLATEAUS, 1.0F, 0.0F);
+		vanilla(37, DEFAULT, 2.0F, 0.0F, DefaultMaterial.SAND, DefaultMaterial.HARD_CLAY);
+		vanilla(38, HIGH_PLATEAUS, 2.0F, 0.0F, DefaultMaterial.SAND, DefaultMaterial.HARD_CLAY);
+		vanilla(39, HIGH_PLATEAUS, 2.0F, 0.0F, DefaultMaterial.SAND, DefaultMaterial.HARD_CLAY);
+	}
+
+	private static void vanilla(int id, float[] height, float temperature, float wetness) {
+		vanilla(id, height, temperature, wetness, DefaultMaterial.GRASS, DefaultMaterial.DIRT);
+	}
+
+	private static void vanilla(int id, float[] height, float temperature, float wetness, DefaultMaterial surface,
+			DefaultMaterial ground) {
+		VANILLA[id] = new StandaloneMojangSettings(temperature, wetness, height[0], height[1], surface, ground);
+	}
+
+	/**
+	 * Gets the settings of the vanilla biome with the given id. Mutated
+	 * biomes (id 128 and higher) are derived from their base biome, like
+	 * Minecraft does.
+	 *
+	 * @param biomeId The id of the biome.
+	 * @return The settings.
+	 */
+	static MojangSettings fromId(int biomeId) {
+		if (biomeId < VANILLA.length) { return VANILLA[biomeId]; }
+
+		StandaloneMojangSettings base = VANILLA[(biomeId - 128) % VANILLA.length];
+		return new StandaloneMojangSettings(base.temperature, base.wetness, base.surfaceHeight + 0.1F, base.surfaceVolatility + 0.2F,
+				base.surfaceBlock, base.groundBlock);
+	}
+
+	private final float temperature;
+	private final float wetness;
+	private final float surfaceHeight;
+	private final float surfaceVolatility;
+	private final DefaultMaterial surfaceBlock;
+	private final DefaultMaterial groundBlock;
+
+	private StandaloneMojangSettings(float temperature, float wetness, float surfaceHeight, float surfaceVolatility,
+			DefaultMaterial surfaceBlock, DefaultMaterial groundBlock) {
+		this.temperature = temperature;
+		this.wetness = wetness;
+		this.surfaceHeight = surfaceHeight;
+		this.surfaceVolatility = surfaceVolatility;
+		this.surfaceBlock = surfaceBlock;
+		this.groundBlock = groundBlock;
+	}
+
+	@Override
+	public float getTemperature() { return temperature; }
+
+	@Override
+	public float getWetness() { return wetness; }
+
+	@Override
+	public float getSurfaceHeight() { return surfaceHeight; }
+
+	@Override
+	public float getSurfaceVolatility() { return surfaceVolatility; }
+
+	@Override
+	public LocalMaterialData getSurfaceBlock() { return StandaloneMaterialData.of(surfaceBlock.id, 0); }
+
+	@Override
+	public LocalMaterialData getGroundBlock() { return StandaloneMaterialData.of(groundBlock.id, 0); }
+
+	@Override
+	public List<WeightedMobSpawnGroup> getMobSpawnGroup(EntityCategory entityCategory) {
+		return new ArrayList<>();
+	}
+}
@@ -0,0 +1,496 @@
+package com.khorn.terraincontrol.standalone;
+
+import com.khorn.terraincontrol.BiomeIds;
+import com.khorn.terraincontrol.LocalBiome;
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.LocalWorld;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.configuration.BiomeConfig;
+import com.khorn.terraincontrol.configuration.BiomeLoadInstruction;
+import com.khorn.terraincontrol.configuration.ConfigProvider;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.configuration.WorldSettings;
+import com.khorn.terraincontrol.customobjects.CustomObject;
+import com.khorn.terraincontrol.customobjects.CustomObjectStructureCache;
+import com.khorn.terraincontrol.customobjects.TreeObject;
+import com.khorn.terraincontrol.exception.BiomeNotFoundException;
+import com.khorn.terraincontrol.generator.ChunkProviderTC;
+import com.khorn.terraincontrol.generator.ObjectSpawner;
+import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
+import com.khorn.terraincontrol.generator.resource.DungeonGen;
+import com.khorn.terraincontrol.generator.resource.Resource;
+import com.khorn.terraincontrol.generator.resource.TreeGen;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.NamedBinaryTag;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultBiome;
+import com.khorn.terraincontrol.util.minecraftTypes.TreeType;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * World that keeps its chunks in memory, so that the full generator (biomes,
+ * terrain, caves, resources and custom objects) can run without a Minecraft
+ * server, for example for benchmarks and tests. Start a
+ * {@link StandaloneEngine} before creating a world.
+ * <p>
+ * Vanilla trees, structures, dungeons and mobs are not placed, and there
+ * are no light calculations. See {@link #getUnsupportedSettings()}.
+ * <p>
+ * Chunks can be generated and populated on multiple threads at once; every
+ * thread gets its own generator. Threads must never populate overlapping
+ * areas at the same time, see {@link #populate(ChunkCoordinate)}.
+ */
+public final class StandaloneWorld implements LocalWorld {
+	private static final int MAX_BIOMES_COUNT = 1024;
+	private static final int MAX_SAVED_BIOMES_COUNT = 255;
+	private static final int STANDARD_WORLD_HEIGHT = 128;
+
+	private final String name;
+	private final long seed;
+	private final Map<String, LocalBiome> biomeNames = new HashMap<>();
+	private final Map<Long, StandaloneChunkBuffer> chunks = new ConcurrentHashMap<>();
+	private int nextBiomeId = DefaultBiome.values().length;
+
+	private final WorldSettings settings;
+	private final CustomObjectStructureCache structureCache;
+	private final BiomeGenerator biomeGenerator;
+	private final ThreadLocal<ChunkProviderTC> generators;
+	private final ThreadLocal<ObjectSpawner> spawners;
+
+	/**
+	 * Chunks that are being populated by the current thread, or null if
+	 * the thread is not populating.
+	 */
+	private final ThreadLocal<StandaloneChunkBuffer[]> populationChunks = new ThreadLocal<>();
+
+	/**
+	 * Creates a new world. The settings are read from the given folder, and
+	 * the default settings are written to it.
+	 *
+	 * @param name        Name of the world.
+	 * @param seed        Seed of the world.
+	 * @param settingsDir The folder of the WorldConfig and the biome configs.
+	 */
+	public StandaloneWorld(String name, long seed, File settingsDir) {
+		this(name, seed, settingsDir, null);
+	}
+
+	/**
+	 * Creates a new world. The settings are read from the given folder, and
+	 * the default settings are written to it.
+	 *
+	 * @param name        Name of the world.
+	 * @param seed        Seed of the world.
+	 * @param settingsDir The folder of the WorldConfig and the biome configs.
+	 * @param saveFolder  The folder the world is saved in, used to save the
+	 *                    biomes and custom structures. May be null.
+	 */
+	public StandaloneWorld(String name, long seed, File settingsDir, File saveFolder) {
+		this.name = name;
+		this.seed = seed;
+		this.settings = new WorldSettings(settingsDir, this, false);
+		this.structureCache = new CustomObjectStructureCache(this, saveFolder);
+		this.biomeGenerator = TerrainControl.getBiomeModeManager().createCached(settings.worldConfig.biomeMode, this, saveFolder);
+
+		this.generators = ThreadLocal.withInitial(() -> new ChunkProviderTC(settings, this));
+		this.spawners = ThreadLocal.withInitial(() -> new ObjectSpawner(settings, this));
+	}
+
+	private static long toKey(int chunkX, int chunkZ) {
+		return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+	}
+
+	/**
+	 * Gets the generator of the current thread.
+	 *
+	 * @return The generator.
+	 */
+	public ChunkProviderTC getChunkGenerator() { return generators.get(); }
+
+	/**
+	 * Gets the chunk at the given position, generating it first if needed.
+	 * The chunk is not populated. If two threads generate the same chunk at
+	 * once, both get the chunk of the thread that finished first.
+	 *
+	 * @param chunkX X position of the chunk.
+	 * @param chunkZ Z position of the chunk.
+	 * @return The chunk.
+	 */
+	public StandaloneChunkBuffer getOrGenerateChunk(int chunkX, int chunkZ) {
+		long key = toKey(chunkX, chunkZ);
+		StandaloneChunkBuffer chunk = chunks.get(key);
+		if (chunk != null) { return chunk; }
+
+		chunk = new StandaloneChunkBuffer(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+		generators.get().generate(chunk);
+		StandaloneChunkBuffer existing = chunks.putIfAbsent(key, chunk);
+		return existing == null ? chunk : existing;
+	}
+
+	/**
+	 * Populates the given chunk. Like in Minecraft, the population area is
+	 * the 2x2 chunks starting at the given chunk, offset by eight blocks.
+	 * Missing chunks of the area are generated first.
+	 *
+	 * <p>
+	 * Another thread may populate at the same time, as long as the
+	 * population areas don't overlap. If PopulationBoundsCheck is off, the
+	 * population may also read and write blocks outside the area, which can
+	 * then race with other threads.
+	 *
+	 * @param chunkCoord The chunk.
+	 */
+	public void populate(ChunkCoordinate chunkCoord) {
+		spawners.get().populate(chunkCoord);
+	}
+
+	/**
+	 * Removes a chunk from memory.
+	 *
+	 * @param chunkX X position of the chunk.
+	 * @param chunkZ Z position of the chunk.
+	 * @return The removed chunk, or null if the chunk was not in memory.
+	 */
+	public StandaloneChunkBuffer removeChunk(int chunkX, int chunkZ) {
+		return chunks.remove(toKey(chunkX, chunkZ));
+	}
+
+	/**
+	 * Removes all chunks from memory.
+	 */
+	public void clearChunks() {
+		chunks.clear();
+	}
+
+	/**
+	 * Closes the files of this world. Must be called when the world is no
+	 * longer used.
+	 */
+	public void close() {
+		biomeGenerator.close();
+	}
+
+	/**
+	 * Gets the settings of this world that this world doesn't support, like
+	 * vanilla trees in a biome. A populated chunk of this world differs from
+	 * one populated by Minecraft if the set is not empty.
+	 *
+	 * @return Descriptions of the unsupported settings, with the first
+	 *         biome that uses them.
+	 */
+	public Set<String> getUnsupportedSettings() {
+		Set<String> unsupported = new LinkedHashSet<>();
+		WorldConfig worldConfig = settings.worldConfig;
+		if (worldConfig.strongholdsEnabled || worldConfig.villagesEnabled || worldConfig.mineshaftsEnabled
+				|| worldConfig.rareBuildingsEnabled || worldConfig.netherFortressesEnabled) {
+			unsupported.add("vanilla structures in the WorldConfig");
+		}
+
+		String dungeonBiome = null;
+		String treeBiome = null;
+		for (LocalBiome biome : settings.biomes) {
+			if (biome == null) { continue; }
+			for (Resource resource : biome.getBiomeConfig().resourceSequence) {
+				if (resource instanceof DungeonGen && dungeonBiome == null) { dungeonBiome = biome.getName(); }
+				if (resource instanceof TreeGen && treeBiome == null) {
+					for (CustomObject tree : ((TreeGen) resource).getTrees()) {
+						if (tree instanceof TreeObject) { treeBiome = biome.getName(); }
+					}
+				}
+			}
+		}
+		if (dungeonBiome != null) { unsupported.add("Dungeon, first in biome " + dungeonBiome); }
+		if (treeBiome != null) { unsupported.add("vanilla trees, first in biome " + treeBiome); }
+		return unsupported;
+	}
+
+	/**
+	 * Gets the number of chunks in memory.
+	 *
+	 * @return The number of chunks.
+	 */
+	public int getChunkCount() { return chunks.size(); }
+
+	private StandaloneChunkBuffer getChunk(int x, int y, int z) {
+		if (y < TerrainControl.WORLD_DEPTH || y >= TerrainControl.WORLD_HEIGHT) { return null; }
+
+		int chunkX = x >> 4;
+		int chunkZ = z >> 4;
+		StandaloneChunkBuffer[] area = populationChunks.get();
+		if (area != null) {
+			// Restrict to chunks we are currently populating
+			ChunkCoordinate topLeft = area[0].getChunkCoordinate();
+			int indexX = chunkX - topLeft.getChunkX();
+			int indexZ = chunkZ - topLeft.getChunkZ();
+			if ((indexX == 0 || indexX == 1) && (indexZ == 0 || indexZ == 1)) { return area[indexX | (indexZ << 1)]; }
+			if (settings.worldConfig.populationBoundsCheck) { return null; }
+		}
+		return chunks.get(toKey(chunkX, chunkZ));
+	}
+
+	@Override
+	public LocalBiome createBiomeFor(BiomeConfig biomeConfig, BiomeIds biomeIds) {
+		StandaloneBiome biome = new StandaloneBiome(biomeConfig, biomeIds);
+		biomeNames.put(biome.getName(), biome);
+		return biome;
+	}
+
+	@Override
+	public int getMaxBiomesCount() { return MAX_BIOMES_COUNT; }
+
+	@Override
+	public int getMaxSavedBiomesCount() { return MAX_SAVED_BIOMES_COUNT; }
+
+	@Override
+	public int getFreeBiomeId() { return nextBiomeId++; }
+
+	@Override
+	public LocalBiome getBiomeById(int id) throws BiomeNotFoundException {
+		LocalBiome biome = settings.biomes[id];
+		if (biome == null) { throw new BiomeNotFoundException(id, Arrays.asList(settings.biomes)); }
+		return biome;
+	}
+
+	@Override
+	public LocalBiome getBiomeByIdOrNull(int id) {
+		return settings.biomes[id];
+	}
+
+	@Override
+	public LocalBiome getBiomeByName(String name) throws BiomeNotFoundException {
+		LocalBiome biome = biomeNames.get(name);
+		if (biome == null) { throw new BiomeNotFoundException(name, biomeNames.keySet()); }
+		return biome;
+	}
+
+	@Override
+	public Collection<? extends BiomeLoadInstruction> getDefaultBiomes() {
+		List<BiomeLoadInstruction> standardBiomes = new ArrayList<>();
+		for (DefaultBiome defaultBiome : DefaultBiome.values()) {
+			standardBiomes.add(defaultBiome.getLoadInstructions(StandaloneMojangSettings.fromId(defaultBiome.Id), STANDARD_WORLD_HEIGHT));
+		}
+		return standardBiomes;
+	}
+
+	@Override
+	public BiomeGenerator getBiomeGenerator() { return biomeGenerator; }
+
+	@Override
+	public LocalBiome getBiome(int x, int z) throws BiomeNotFoundException {
+		// Saved and calculated biomes are the same, as biomes are never
+		// changed after generation
+		return getCalculatedBiome(x, z);
+	}
+
+	@Override
+	public LocalBiome getSavedBiome(int x, int z) throws BiomeNotFoundException {
+		return getCalculatedBiome(x, z);
+	}
+
+	@Override
+	public LocalBiome getCalculatedBiome(int x, int z) {
+		return getBiomeById(biomeGenerator.getBiome(x, z));
+	}
+
+	@Override
+	public void prepareDefaultStructures(int chunkX, int chunkZ, boolean dry) {
+		// Vanilla structures are not supported
+	}
+
+	@Override
+	public void PlaceDungeons(Random rand, int x, int y, int z) {
+		// Dungeons are not supported
+	}
+
+	@Override
+	public boolean PlaceTree(TreeType type, Random rand, int x, int y, int z) {
+		// Vanilla trees are not supported
+		return false;
+	}
+
+	@Override
+	public boolean placeDefaultStructures(Random rand, ChunkCoordinate chunkCoord) {
+		return false;
+	}
+
+	@Override
+	public void replaceBlocks(ChunkCoordinate chunkCoord) {
+		if (!settings.worldConfig.BiomeConfigsHaveReplacement) { return; }
+
+		StandaloneChunkBuffer[] area = populationChunks.get();
+		if (area == null) { area = loadFourChunks(chunkCoord); }
+		replaceBlocks(area[0], 8, 8);
+		replaceBlocks(area[1], 0, 8);
+		replaceBlocks(area[2], 8, 0);
+		replaceBlocks(area[3], 0, 0);
+	}
+
+	private void replaceBlocks(StandaloneChunkBuffer chunk, int startXInChunk, int startZInChunk) {
+		int worldStartX = chunk.getChunkCoordinate().getBlockX();
+		int worldStartZ = chunk.getChunkCoordinate().getBlockZ();
+
+		for (int x = startXInChunk; x < startXInChunk + 8; x++) {
+			for (int z = startZInChunk; z < startZInChunk + 8; z++) {
+				BiomeConfig biomeConfig = getBiome(worldStartX + x, worldStartZ + z).getBiomeConfig();
+				if (!biomeConfig.replacedBlocks.hasReplaceSettings()) { continue; }
+
+				LocalMaterialData[][] replaceArray = biomeConfig.replacedBlocks.compiledInstructions;
+				for (int y = 0; y < TerrainControl.WORLD_HEIGHT; y++) {
+					int blockId = chunk.getBlock(x, y, z).getBlockId();
+					if (replaceArray[blockId] == null) { continue; }
+					if (y >= replaceArray[blockId].length) { continue; }
+
+					LocalMaterialData replaceTo = replaceArray[blockId][y];
+					if (replaceTo == null || replaceTo.getBlockId() == blockId) { continue; }
+					chunk.setBlock(x, y, z, replaceTo);
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean isComplexSurfaceGenerated(ChunkCoordinate chunkCoord) {
+		// All chunks are generated by this version
+		return true;
+	}
+
+	@Override
+	public void placePopulationMobs(LocalBiome biome, Random random, ChunkCoordinate chunkCoord) {
+		// Mobs are not supported
+	}
+
+	@Override
+	public void startPopulation(ChunkCoordinate chunkCoord) {
+		if (populationChunks.get() != null && settings.worldConfig.populationBoundsCheck) {
+			throw new IllegalStateException("Chunk is already being populated");
+		}
+		populationChunks.set(loadFourChunks(chunkCoord));
+	}
+
+	private StandaloneChunkBuffer[] loadFourChunks(ChunkCoordinate topLeft) {
+		StandaloneChunkBuffer[] area = new StandaloneChunkBuffer[4];
+		for (int indexX = 0; indexX <= 1; indexX++) {
+			for (int indexZ = 0; indexZ <= 1; indexZ++) {
+				area[indexX | (indexZ << 1)] = getOrGenerateChunk(topLeft.getChunkX() + indexX, topLeft.getChunkZ() + indexZ);
+			}
+		}
+		return area;
+	}
+
+	@Override
+	public void endPopulation() {
+		if (populationChunks.get() == null && settings.worldConfig.populationBoundsCheck) {
+			throw new IllegalStateException("Chunk is not being populated");
+		}
+		populationChunks.remove();
+	}
+
+	@Override
+	public LocalMaterialData getMaterial(int x, int y, int z) {
+		StandaloneChunkBuffer chunk = getChunk(x, y, z);
+		if (chunk == null) { return StandaloneMaterialData.AIR; }
+		return chunk.getBlock(x & 0xF, y, z & 0xF);
+	}
+
+	@Override
+	public int getPackedMaterial(int x, int y, int z) {
+		StandaloneChunkBuffer chunk = getChunk(x, y, z);
+		if (chunk == null) { return 0; }
+		return chunk.getPackedBlock(x & 0xF, y, z & 0xF);
+	}
+
+	@Override
+	public boolean isEmpty(int x, int y, int z) {
+		return getMaterial(x, y, z).isAir();
+	}
+
+	@Override
+	public void setBlock(int x, int y, int z, LocalMaterialData material) {
+		StandaloneChunkBuffer chunk = getChunk(x, y, z);
+		if (chunk == null) { return; }
+		chunk.setBlock(x & 0xF, y, z & 0xF, material);
+	}
+
+	@Override
+	public void attachMetadata(int x, int y, int z, NamedBinaryTag tag) {
+		StandaloneChunkBuffer chunk = getChunk(x, y, z);
+		if (chunk == null) { return; }
+		chunk.setMetadata(x & 0xF, y, z & 0xF, tag);
+	}
+
+	@Override
+	public NamedBinaryTag getMetadata(int x, int y, int z) {
+		StandaloneChunkBuffer chunk = getChunk(x, y, z);
+		if (chunk == null) { return null; }
+		return chunk.getMetadata(x & 0xF, y, z & 0xF);
+	}
+
+	@Override
+	public int getLiquidHeight(int x, int z) {
+		for (int y = getHighestBlockYAt(x, z) - 1; y > 0; y--) {
+			LocalMaterialData material = getMaterial(x, y, z);
+			if (material.isLiquid()) { return y + 1; }
+			if (material.isSolid()) { return -1; }
+		}
+		return -1;
+	}
+
+	@Override
+	public int getSolidHeight(int x, int z) {
+		for (int y = getHighestBlockYAt(x, z) - 1; y > 0; y--) {
+			if (getMaterial(x, y, z).isSolid()) { return y + 1; }
+		}
+		return -1;
+	}
+
+	@Override
+	public int getHighestBlockYAt(int x, int z) {
+		StandaloneChunkBuffer chunk = getChunk(x, 0, z);
+		if (chunk == null) { return -1; }
+		return chunk.getHighestBlockY(x & 0xF, z & 0xF);
+	}
+
+	@Override
+	public int getLightLevel(int x, int y, int z) {
+		// No light calculations, just assume that it is day and that there
+		// is no light below the surface
+		return y >= getHighestBlockYAt(x, z) ? 15 : 0;
+	}
+
+	@Override
+	public boolean isLoaded(int x, int y, int z) {
+		return getChunk(x, y, z) != null;
+	}
+
+	@Override
+	@Deprecated
+	public WorldSettings getSettings() { return settings; }
+
+	@Override
+	public ConfigProvider getConfigs() { return settings; }
+
+	@Override
+	public CustomObjectStructureCache getStructureCache() { return structureCache; }
+
+	@Override
+	public String getName() { return name; }
+
+	@Override
+	public long getSeed() { return seed; }
+
+	@Override
+	public int getHeightCap() { return settings.worldConfig.worldHeightCap; }
+
+	@Override
+	public int getHeightScale() { return settings.worldConfig.worldHeightScale; }
+}
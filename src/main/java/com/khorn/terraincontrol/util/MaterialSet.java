@@ -2,6 +2,7 @@ package com.khorn.terraincontrol.util;
 
 import com.khorn.terraincontrol.LocalMaterialData;
 import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.TerrainControlEngine;
 import com.khorn.terraincontrol.exception.InvalidConfigException;
 import com.khorn.terraincontrol.util.helpers.StringHelper;
 
@@ -13,18 +14,37 @@ import java.util.Set;
  * A material set that accepts special values such as "All" or "Solid". These
  * special values make it almost impossible to know which materials are in
  * this set, and as such, this set can't be iterated over and its size remains
- * unknown.
+ * unknown. On first use, the set is compiled to one bit for every block id
+ * and block data combination, with the special values expanded. Checking
+ * whether a material is in the set is then a single bit test.
  */
 public class MaterialSet {
 	private static final String ALL_MATERIALS = "All";
 	private static final String SOLID_MATERIALS = "Solid";
 
+	/**
+	 * Number of bits in the compiled set, one for every packed block id and
+	 * block data, {@code id << 4 | data}.
+	 */
+	private static final int PACKED_MATERIALS = TerrainControl.SUPPORTED_BLOCK_IDS * 16;
+
+	/**
+	 * The solid materials, shared by all sets. Only valid for
+	 * {@link #solidMaterialsEngine}, as the engine decides which materials
+	 * are solid.
+	 */
+	private static long[] solidMaterials;
+	private static TerrainControlEngine solidMaterialsEngine;
+
 	private boolean allSolidMaterials = false;
 	private boolean allMaterials = false;
 
-	private int[] materialIntSet = new int[0];
 	private final Set<MaterialSetEntry> materials = new LinkedHashSet<>();
-	private boolean intSetUpToDate = true;
+	/**
+	 * The compiled set, or null if it must be compiled again. May be used by
+	 * multiple threads at once, so it is only set when complete.
+	 */
+	private volatile long[] compiled;
 
 	/**
 	 * Adds the given material to the list.
@@ -48,10 +68,12 @@ public class MaterialSet {
 	public void parseAndAdd(String input) throws InvalidConfigException {
 		if (input.equalsIgnoreCase(ALL_MATERIALS)) {
 			this.allMaterials = true;
+			this.compiled = null;
 			return;
 		}
 		if (input.equalsIgnoreCase(SOLID_MATERIALS)) {
 			this.allSolidMaterials = true;
+			this.compiled = null;
 			return;
 		}
 
@@ -69,31 +91,66 @@ public class MaterialSet {
 	 * @param entry The entry to add, may not be null.
 	 */
 	public void add(MaterialSetEntry entry) {
-		// Add the appropriate hashCode
-		intSetUpToDate = false;
 		materials.add(entry);
+		compiled = null;
+	}
+
+	private static void setBit(long[] bits, int packed) {
+		bits[packed >>> 6] |= 1L << packed;
 	}
 
 	/**
-	 * Updates the int (hashCode) set, so that is is up to date again with the
-	 * material set.
+	 * Gets the solid materials of the current engine, calculating them if
+	 * needed.
+	 *
+	 * @return The solid materials, must not be modified.
 	 */
-	private void updateIntSet() {
-		if (intSetUpToDate) {
-			// Already up to date
-			return;
+	private static synchronized long[] getSolidMaterials() {
+		TerrainControlEngine engine = TerrainControl.getEngine();
+		if (solidMaterials == null || solidMaterialsEngine != engine) {
+			long[] solid = new long[PACKED_MATERIALS / 64];
+			for (int packed = 0; packed < PACKED_MATERIALS; packed++) {
+				if (engine.toLocalMaterialData(packed >> 4, packed & 0xF).isSolid()) { setBit(solid, packed); }
+			}
+			solidMaterials = solid;
+			solidMaterialsEngine = engine;
+		}
+		return solidMaterials;
+	}
+
+	/**
+	 * Compiles this set, so that it is up to date again with the settings.
+	 *
+	 * @return The compiled set.
+	 */
+	private long[] compile() {
+		long[] bits = new long[PACKED_MATERIALS / 64];
+		if (allMaterials) {
+			// Everything except air
+			Arrays.fill(bits, -1L);
+			bits[0] &= ~0xFFFFL;
+		}
+		else if (allSolidMaterials) {
+			System.arraycopy(getSolidMaterials(), 0, bits, 0, bits.length);
 		}
 
-		// Update the int set
-		materialIntSet = new int[materials.size()];
-		int i = 0;
 		for (MaterialSetEntry entry : materials) {
-			materialIntSet[i] = entry.hashCode();
-			i++;
+			LocalMaterialData material = entry.getMaterial();
+			int blockId = material.getBlockId();
+			if (blockId < 0 || blockId >= TerrainControl.SUPPORTED_BLOCK_IDS) { continue; }
+
+			if (entry.includesBlockData()) {
+				int blockData = material.getBlockData();
+				if (blockData >= 0 && blockData < 16) { setBit(bits, blockId << 4 | blockData); }
+			}
+			else {
+				// All block data values of this id
+				bits[blockId >>> 2] |= 0xFFFFL << ((blockId & 3) << 4);
+			}
 		}
-		// Sort int set so that we can use Arrays.binarySearch
-		Arrays.sort(materialIntSet);
-		intSetUpToDate = true;
+
+		this.compiled = bits;
+		return bits;
 	}
 
 	/**
@@ -105,16 +162,32 @@ public class MaterialSet {
 	 */
 	public boolean contains(LocalMaterialData material) {
 		if (material == null) { return false; }
-		if (allMaterials && !material.isAir()) { return true; }
-		if (allSolidMaterials && material.isSolid()) { return true; }
 
-		// Try to update int set
-		updateIntSet();
+		int blockId = material.getBlockId();
+		int blockData = material.getBlockData();
+		if (blockId < 0 || blockId >= TerrainControl.SUPPORTED_BLOCK_IDS || blockData < 0 || blockData >= 16) {
+			// Not in the compiled set
+			return (allMaterials && !material.isAir()) || (allSolidMaterials && material.isSolid());
+		}
+		return contains(blockId << 4 | blockData);
+	}
+
+	/**
+	 * Gets whether the specified material is in this collection. Unlike
+	 * {@link #contains(LocalMaterialData)}, no material needs to be looked
+	 * up, which is useful together with
+	 * {@link com.khorn.terraincontrol.LocalWorld#getPackedMaterial(int, int, int)}.
+	 *
+	 * @param packedMaterial The block id and block data, packed like
+	 *                       {@code id << 4 | data}.
+	 * @return True if the material is in this set.
+	 */
+	public boolean contains(int packedMaterial) {
+		if (packedMaterial < 0 || packedMaterial >= PACKED_MATERIALS) { return false; }
 
-		// Check if the material is included
-		if (Arrays.binarySearch(materialIntSet, material.hashCodeWithoutBlockData()) >= 0) { return true; }
-		if (Arrays.binarySearch(materialIntSet, material.hashCode()) >= 0) { return true; }
-		return false;
+		long[] bits = this.compiled;
+		if (bits == null) { bits = compile(); }
+		return (bits[packedMaterial >>> 6] & (1L << packedMaterial)) != 0;
 	}
 
 	/**
@@ -152,7 +225,6 @@ public class MaterialSet {
 		MaterialSet rotated = new MaterialSet();
 		if (this.allMaterials) { rotated.allMaterials = true; }
 		if (this.allSolidMaterials) { rotated.allSolidMaterials = true; }
-		rotated.intSetUpToDate = false;
 		for (MaterialSetEntry material : this.materials) {
 			rotated.materials.add(material.rotate());
 		}
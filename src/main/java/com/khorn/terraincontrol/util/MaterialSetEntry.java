@@ -11,6 +11,21 @@ public class MaterialSetEntry {
 		this.includesBlockData = includesBlockData;
 	}
 
+	/**
+	 * Gets the material of this entry.
+	 *
+	 * @return The material.
+	 */
+	LocalMaterialData getMaterial() { return material; }
+
+	/**
+	 * Gets whether only the block data of {@link #getMaterial()} is matched,
+	 * instead of all block data values.
+	 *
+	 * @return True if the block data must match.
+	 */
+	boolean includesBlockData() { return includesBlockData; }
+
 	@Override
 	public boolean equals(Object other) {
 		// Uses hashCode, as it is guaranteed to be unique for this class
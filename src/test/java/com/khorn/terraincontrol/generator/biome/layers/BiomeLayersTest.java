@@ -0,0 +1,136 @@
+package com.khorn.terraincontrol.generator.biome.layers;
+
+import static org.junit.Assert.assertEquals;
+
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.generator.biome.BiomeGenerator;
+import com.khorn.terraincontrol.generator.biome.NormalBiomeGenerator;
+import com.khorn.terraincontrol.generator.biome.OutputType;
+import com.khorn.terraincontrol.standalone.StandaloneEngine;
+import com.khorn.terraincontrol.standalone.StandaloneWorld;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the biomes of the normal biome generator against biomes recorded
+ * from the original layer implementation, with the default settings. The
+ * biomes must stay exactly the same, otherwise existing worlds get biome
+ * borders at the edge of the explored area.
+ */
+public class BiomeLayersTest {
+	private static final long SEED = 8675309L;
+
+	private static Path dataFolder;
+	private static StandaloneWorld world;
+	private static BiomeGenerator generator;
+
+	@BeforeClass
+	public static void createWorld() throws IOException {
+		dataFolder = Files.createTempDirectory("terraincontrol-test");
+		StandaloneEngine engine = StandaloneEngine.start(dataFolder.toFile());
+
+		File settingsDir = new File(new File(dataFolder.toFile(), "worlds"), "BiomeLayersTest");
+		if (!settingsDir.mkdirs()) { throw new IOException("Cannot create " + settingsDir); }
+		world = new StandaloneWorld("BiomeLayersTest", SEED, settingsDir);
+		engine.addWorld(world);
+
+		// Skip the cache, so that the layers are called for every lookup
+		generator = world.getBiomeGenerator().unwrap();
+	}
+
+	@AfterClass
+	public static void deleteWorld() throws IOException {
+		world.close();
+		TerrainControl.stopEngine();
+		try (Stream<Path> files = Files.walk(dataFolder)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Checksum of the first {@code size} values.
+	 */
+	private static long checksum(int[] biomes, int size) {
+		long checksum = 1;
+		for (int i = 0; i < size; i++) {
+			checksum = checksum * 31 + biomes[i];
+		}
+		return checksum;
+	}
+
+	private static void assertBiomes(int[] biomes, int size, long expectedChecksum, int expectedFirst, int expectedMiddle,
+			int expectedLast) {
+		assertEquals(expectedFirst, biomes[0]);
+		assertEquals(expectedMiddle, biomes[size / 2]);
+		assertEquals(expectedLast, biomes[size - 1]);
+		assertEquals(expectedChecksum, checksum(biomes, size));
+	}
+
+	@Test
+	public void testGenerator() {
+		assertEquals(NormalBiomeGenerator.class, generator.getClass());
+	}
+
+	@Test
+	public void testChunk() {
+		int[] biomes = generator.getBiomes(null, 0, 0, 16, 16, OutputType.DEFAULT_FOR_WORLD);
+		assertBiomes(biomes, 16 * 16, 3374245975548076261L, 18, 18, 4);
+	}
+
+	@Test
+	public void testUnalignedArea() {
+		int[] biomes = generator.getBiomes(null, -1000, 777, 64, 48, OutputType.DEFAULT_FOR_WORLD);
+		assertBiomes(biomes, 64 * 48, -4220127229545743021L, 3, 3, 2);
+	}
+
+	@Test
+	public void testOddSizes() {
+		int[] biomes = generator.getBiomes(null, 123456, -98765, 5, 7, OutputType.DEFAULT_FOR_WORLD);
+		assertBiomes(biomes, 5 * 7, 5929668396684621919L, 0, 0, 0);
+
+		biomes = generator.getBiomes(null, -4096, -4096, 1, 1, OutputType.DEFAULT_FOR_WORLD);
+		assertBiomes(biomes, 1, 31L, 0, 0, 0);
+	}
+
+	@Test
+	public void testLargeArea() {
+		// Contains most of the default biomes
+		int[] biomes = generator.getBiomes(null, -3000, 2000, 1024, 1024, OutputType.DEFAULT_FOR_WORLD);
+		assertBiomes(biomes, 1024 * 1024, -3949328424890918359L, 20, 5, 10);
+	}
+
+	@Test
+	public void testUnZoomed() {
+		int[] biomes = generator.getBiomesUnZoomed(null, -50, -50, 20, 20, OutputType.DEFAULT_FOR_WORLD);
+		assertBiomes(biomes, 20 * 20, -4974384533634755869L, 5, 5, 4);
+
+		biomes = generator.getBiomesUnZoomed(null, 300, -7, 9, 13, OutputType.DEFAULT_FOR_WORLD);
+		assertBiomes(biomes, 9 * 13, -1957470001453854880L, 1, 1, 1);
+	}
+
+	@Test
+	public void testOutputTypes() {
+		int[] biomes = generator.getBiomesUnZoomed(null, -50, -50, 20, 20, OutputType.ONLY_RIVERS);
+		assertBiomes(biomes, 20 * 20, -8352074144761631132L, 0, 0, 0);
+
+		biomes = generator.getBiomes(null, -1000, 777, 64, 48, OutputType.WITHOUT_RIVERS);
+		assertBiomes(biomes, 64 * 48, -2080141780676808366L, 3, 3, 2);
+	}
+
+	@Test
+	public void testReusedArray() {
+		// A larger array from an earlier call must not leak into the result
+		int[] biomes = generator.getBiomes(null, 5000, 5000, 100, 100, OutputType.DEFAULT_FOR_WORLD);
+		biomes = generator.getBiomes(biomes, -1000, 777, 64, 48, OutputType.DEFAULT_FOR_WORLD);
+		assertBiomes(biomes, 64 * 48, -4220127229545743021L, 3, 3, 2);
+	}
+}
@@ -0,0 +1,68 @@
+package com.khorn.terraincontrol.generator.noise;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the 3D terrain noise of whole chunks against values recorded from
+ * the original implementation. The noise is requested exactly like
+ * {@link com.khorn.terraincontrol.generator.ChunkProviderTC} does, including
+ * the columns on the chunk border, which are also part of the neighbouring
+ * chunks. The noise must stay exactly the same, otherwise existing worlds
+ * get chunk borders.
+ */
+public class NoiseGeneratorPerlinOctavesTest {
+	private static final long SEED = -4172144997902289642L;
+	private static final double XZ_SCALE = 684.41200000000003D;
+	private static final double Y_SCALE = 684.41200000000003D;
+
+	/**
+	 * Checksum of the exact bits of all values.
+	 */
+	private static long checksum(double[] values) {
+		long checksum = 1;
+		for (double value : values) {
+			checksum = checksum * 31 + Double.doubleToLongBits(value);
+		}
+		return checksum;
+	}
+
+	private static void assertChunkNoise(int chunkX, int chunkZ, long expectedNoise1, long expectedNoise2, long expectedNoise3) {
+		Random random = new Random(SEED);
+		NoiseGeneratorPerlinOctaves noiseGen1 = new NoiseGeneratorPerlinOctaves(random, 16);
+		NoiseGeneratorPerlinOctaves noiseGen2 = new NoiseGeneratorPerlinOctaves(random, 16);
+		NoiseGeneratorPerlinOctaves noiseGen3 = new NoiseGeneratorPerlinOctaves(random, 8);
+
+		int xOffset = chunkX * 4;
+		int zOffset = chunkZ * 4;
+		double[] noise3 = noiseGen3.Noise3D(null, xOffset, 0, zOffset, 5, 33, 5, XZ_SCALE / 80.0D, Y_SCALE / 160.0D, XZ_SCALE / 80.0D);
+		double[] noise1 = noiseGen1.Noise3D(null, xOffset, 0, zOffset, 5, 33, 5, XZ_SCALE, Y_SCALE, XZ_SCALE);
+		double[] noise2 = noiseGen2.Noise3D(null, xOffset, 0, zOffset, 5, 33, 5, XZ_SCALE, Y_SCALE, XZ_SCALE);
+
+		assertEquals(expectedNoise1, checksum(noise1));
+		assertEquals(expectedNoise2, checksum(noise2));
+		assertEquals(expectedNoise3, checksum(noise3));
+	}
+
+	@Test
+	public void testOrigin() {
+		assertChunkNoise(0, 0, 520869988069083678L, -7635721269985558171L, -710473155227504264L);
+	}
+
+	@Test
+	public void testNeighbours() {
+		// Share a row or column of noise with the chunk at the origin
+		assertChunkNoise(1, 0, 8232573150759508550L, 6340833973372383631L, -574764764546649720L);
+		assertChunkNoise(0, 1, -6517779803500624210L, -979396249484348676L, -6301627591511839825L);
+		assertChunkNoise(-1, -1, 8216133421469826379L, -6304574037929387950L, 1934139611662403656L);
+	}
+
+	@Test
+	public void testFarAway() {
+		// Large coordinates, where the offsets are rounded
+		assertChunkNoise(123456, -654321, -7894734334390820603L, 1594563255831731174L, 6213709346982568091L);
+	}
+}
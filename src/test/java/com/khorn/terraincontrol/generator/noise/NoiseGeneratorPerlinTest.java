@@ -0,0 +1,98 @@
+package com.khorn.terraincontrol.generator.noise;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the noise against values recorded from the original, unoptimized
+ * implementation. The noise must stay exactly the same, otherwise existing
+ * worlds get chunk borders.
+ */
+public class NoiseGeneratorPerlinTest {
+
+	/**
+	 * Checksum of the exact bits of all values.
+	 */
+	private static long checksum(double[] values) {
+		long checksum = 1;
+		for (double value : values) {
+			checksum = checksum * 31 + Double.doubleToLongBits(value);
+		}
+		return checksum;
+	}
+
+	private static void assertNoise3D(long seed, double xOffset, double yOffset, double zOffset, int xSize, int ySize, int zSize,
+			double xScale, double yScale, double zScale, double noiseScale, long expectedChecksum, double expectedFirst,
+			double expectedMiddle, double expectedLast) {
+		NoiseGeneratorPerlin generator = new NoiseGeneratorPerlin(new Random(seed));
+		double[] noise = new double[xSize * ySize * zSize];
+		generator.populateNoiseArray3D(noise, xOffset, yOffset, zOffset, xSize, ySize, zSize, xScale, yScale, zScale, noiseScale);
+
+		assertEquals(expectedFirst, noise[0], 0);
+		assertEquals(expectedMiddle, noise[noise.length / 2], 0);
+		assertEquals(expectedLast, noise[noise.length - 1], 0);
+		assertEquals(expectedChecksum, checksum(noise));
+	}
+
+	@Test
+	public void testTerrainGrid() {
+		// Every y position in another noise cell
+		assertNoise3D(1, 0, 0, 0, 5, 33, 5, 684.412, 684.412, 684.412, 1, 5405395339132616059L, 0.10709059654197703,
+				-0.5236794455003979, -0.2571362503961159);
+	}
+
+	@Test
+	public void testRunsCrossingCells() {
+		// About eight y positions per noise cell, and the y cells wrap
+		// around from 255 to 0
+		assertNoise3D(2, -123.4, 24.0, 88.8, 4, 40, 3, 0.7, 0.13, 1.9, 2.5, -7299369419572778401L, 0.15060646346870596,
+				-0.12510100439552607, 0.2685680758336041);
+	}
+
+	@Test
+	public void testNegativeOffsets() {
+		assertNoise3D(3, 1000.5, -300.0, -7.5, 3, 64, 2, 3.3, 0.5, 0.25, 1, -7763487816703830137L, -0.0870167347601073,
+				-0.07443730828234063, 0.18751186337663361);
+	}
+
+	@Test
+	public void testSameCellIndexAfterWrapping() {
+		// All y positions have the same cell index, but are not in the same
+		// run in the original implementation
+		assertNoise3D(4, 12.0, 0.0, -12.0, 2, 17, 2, 1.0, 256.0, 1.0, 1, -639437306436761950L, -0.1939949547896807,
+				0.2084084931351242, 0.2863166693116965);
+	}
+
+	@Test
+	public void testSingleValue() {
+		assertNoise3D(5, 0.5, 0.5, 0.5, 1, 1, 1, 1, 1, 1, 1, 4598529838143245371L, 0.26968528662126956, 0.26968528662126956,
+				0.26968528662126956);
+	}
+
+	@Test
+	public void testNoise2D() {
+		NoiseGeneratorPerlin generator = new NoiseGeneratorPerlin(new Random(6));
+		double[] noise = new double[16 * 16];
+		generator.populateNoiseArray2D(noise, -50.5, 30.25, 16, 16, 0.0625, 0.03125, 1);
+
+		assertEquals(-0.12565852072137645, noise[0], 0);
+		assertEquals(-0.06680117681282488, noise[noise.length / 2], 0);
+		assertEquals(0.10669603249999327, noise[noise.length - 1], 0);
+		assertEquals(882400941729386803L, checksum(noise));
+	}
+
+	@Test
+	public void testReusedScratchArrays() {
+		// Larger, then smaller, then larger again
+		NoiseGeneratorPerlin generator = new NoiseGeneratorPerlin(new Random(2));
+		generator.populateNoiseArray3D(new double[5 * 64 * 7], 1, 2, 3, 5, 64, 7, 0.5, 0.5, 0.5, 1);
+		generator.populateNoiseArray3D(new double[2 * 3 * 2], 4, 5, 6, 2, 3, 2, 1.5, 1.5, 1.5, 1);
+
+		double[] noise = new double[4 * 40 * 3];
+		generator.populateNoiseArray3D(noise, -123.4, 24.0, 88.8, 4, 40, 3, 0.7, 0.13, 1.9, 2.5);
+		assertEquals(-7299369419572778401L, checksum(noise));
+	}
+}
@@ -0,0 +1,217 @@
+package com.khorn.terraincontrol.generator.terrain;
+
+import static org.junit.Assert.assertEquals;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.TerrainControl;
+import com.khorn.terraincontrol.configuration.WorldConfig;
+import com.khorn.terraincontrol.standalone.StandaloneChunkBuffer;
+import com.khorn.terraincontrol.standalone.StandaloneEngine;
+import com.khorn.terraincontrol.standalone.StandaloneWorld;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the blocks carved by the cave and canyon generators against
+ * blocks recorded from the original carvers, with the default settings.
+ * The chunks are filled with a fixed landscape with lakes and underground
+ * water, so that the water checks of the carvers are used.
+ */
+public class CarversTest {
+	private static final long SEED = 8675309L;
+
+	/**
+	 * A 6x6 area, generated row by row, and then some chunks that are far
+	 * away or were already generated.
+	 */
+	private static final int[][] CHUNKS;
+
+	static {
+		CHUNKS = new int[6 * 6 + 4][];
+		int i = 0;
+		for (int z = -3; z < 3; z++) {
+			for (int x = -3; x < 3; x++) {
+				CHUNKS[i++] = new int[] { x, z };
+			}
+		}
+		CHUNKS[i++] = new int[] { 0, 0 };
+		CHUNKS[i++] = new int[] { 1000, -1000 };
+		CHUNKS[i++] = new int[] { -12345, 6789 };
+		CHUNKS[i++] = new int[] { -3, 2 };
+	}
+
+	/**
+	 * Checksums of the chunks with only caves.
+	 */
+	private static final long[] CAVES = {
+			822287844537250401L, 4814716075076202161L, 8979220137560301057L, 5846526292460880161L,
+			-7084512808734048879L, -836866472428764559L, -4174368693618537695L, -2005142847430229151L,
+			9128349621389855009L, -7144134830402718319L, -7398976160633757855L, -2737308932237005375L,
+			-3713611695100454367L, -5965967073504091391L, -2629864303884685119L, 5576267920384177041L,
+			4683717647303842385L, 3146030528302497233L, -1600346824078882175L, 5958528631188240209L,
+			-9071253103808661679L, 3607522375084369921L, 1161456531684308049L, 1188791912434207025L,
+			-1390080022212883759L, -5889586716874472751L, -6329890298977622607L, 5793538855367061025L,
+			8793953349775916897L, 2391766464529230481L, 5906044083900236385L, 704801171927188305L,
+			1664027558519111729L, 369239816847014785L, -387627029066816207L, -5923933127213720575L,
+			3607522375084369921L, 1945278129399297425L, -9096314645373057711L, 5906044083900236385L
+	};
+
+	/**
+	 * Checksums of the chunks with only canyons.
+	 */
+	private static final long[] CANYONS = {
+			3928810499401625153L, -3128179748786384927L, 610432490757054433L, 7262927175325461953L,
+			-4078247550591772287L, -2326074380664830911L, 4369953943185371233L, -1845829019413274911L,
+			-4756921766872641983L, -1144225230054215583L, -7398976160633757855L, -3333370894421448431L,
+			6517490150938132065L, -6421885884187652287L, -1613754108340678687L, 5885709396951564001L,
+			-635181824835858879L, -413642833544649151L, 3536383766633533249L, -3084777192525738015L,
+			2179102013593001569L, 4772054221617532737L, -2453090164135608879L, 1549379976788812673L,
+			-5541038702696067359L, 8605997145104449249L, -4668556581752279103L, -4171692820767802159L,
+			7976354654070612865L, -2047035940920984399L, 6941033027789438945L, -5138085460038742207L,
+			9112992736817519697L, -8368262312237792255L, 6474718005997591857L, 6327264930859539009L,
+			4772054221617532737L, -635181824835858879L, -7233804163829106367L, 6941033027789438945L
+	};
+
+	/**
+	 * Checksums of the chunks with caves, and then canyons.
+	 */
+	private static final long[] CAVES_AND_CANYONS = {
+			822287844537250401L, 4814716075076202161L, 8979220137560301057L, 5846526292460880161L,
+			-1012401858931865807L, 2517432650907969105L, -4174368693618537695L, -2005142847430229151L,
+			9128349621389855009L, -7144134830402718319L, -7398976160633757855L, -3333370894421448431L,
+			-3713611695100454367L, -5965967073504091391L, -2629864303884685119L, 5576267920384177041L,
+			4683717647303842385L, -413642833544649151L, -1600346824078882175L, 5958528631188240209L,
+			-9071253103808661679L, 3607522375084369921L, 1161456531684308049L, 1188791912434207025L,
+			-1390080022212883759L, -5889586716874472751L, -6329890298977622607L, 5793538855367061025L,
+			8793953349775916897L, 2391766464529230481L, 5906044083900236385L, 704801171927188305L,
+			1664027558519111729L, 369239816847014785L, -387627029066816207L, -5923933127213720575L,
+			3607522375084369921L, 1945278129399297425L, -9096314645373057711L, 5906044083900236385L
+	};
+
+	private static Path dataFolder;
+	private static StandaloneWorld world;
+	private static WorldConfig worldConfig;
+
+	@BeforeClass
+	public static void createWorld() throws IOException {
+		dataFolder = Files.createTempDirectory("terraincontrol-test");
+		StandaloneEngine engine = StandaloneEngine.start(dataFolder.toFile());
+
+		File settingsDir = new File(new File(dataFolder.toFile(), "worlds"), "CarversTest");
+		if (!settingsDir.mkdirs()) { throw new IOException("Cannot create " + settingsDir); }
+		world = new StandaloneWorld("CarversTest", SEED, settingsDir);
+		engine.addWorld(world);
+		worldConfig = world.getConfigs().getWorldConfig();
+	}
+
+	@AfterClass
+	public static void deleteWorld() throws IOException {
+		world.close();
+		TerrainControl.stopEngine();
+		try (Stream<Path> files = Files.walk(dataFolder)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Fills a chunk with hills of stone, dirt and grass. Some columns have
+	 * a lake on top, and some have water deep underground.
+	 */
+	private static StandaloneChunkBuffer createChunk(int chunkX, int chunkZ) {
+		LocalMaterialData bedrock = TerrainControl.toLocalMaterialData(DefaultMaterial.BEDROCK, 0);
+		LocalMaterialData stone = TerrainControl.toLocalMaterialData(DefaultMaterial.STONE, 0);
+		LocalMaterialData dirt = TerrainControl.toLocalMaterialData(DefaultMaterial.DIRT, 0);
+		LocalMaterialData grass = TerrainControl.toLocalMaterialData(DefaultMaterial.GRASS, 0);
+		LocalMaterialData water = TerrainControl.toLocalMaterialData(DefaultMaterial.STATIONARY_WATER, 0);
+
+		StandaloneChunkBuffer chunk = new StandaloneChunkBuffer(ChunkCoordinate.fromChunkCoords(chunkX, chunkZ));
+		for (int x = 0; x < ChunkCoordinate.CHUNK_X_SIZE; x++) {
+			for (int z = 0; z < ChunkCoordinate.CHUNK_Z_SIZE; z++) {
+				int blockX = chunkX * ChunkCoordinate.CHUNK_X_SIZE + x;
+				int blockZ = chunkZ * ChunkCoordinate.CHUNK_Z_SIZE + z;
+				int height = 56 + ((blockX * 7 + blockZ * 13) & 15);
+				chunk.setBlock(x, 0, z, bedrock);
+				for (int y = 1; y < height - 3; y++) {
+					chunk.setBlock(x, y, z, stone);
+				}
+				for (int y = height - 3; y < height; y++) {
+					chunk.setBlock(x, y, z, dirt);
+				}
+				chunk.setBlock(x, height, z, grass);
+
+				if (Math.floorMod(blockX + blockZ, 23) < 4) {
+					for (int y = height - 8; y <= height; y++) {
+						chunk.setBlock(x, y, z, water);
+					}
+				}
+				if (Math.floorMod(blockX * 3 + blockZ, 37) == 0) {
+					for (int y = 20; y < 23; y++) {
+						chunk.setBlock(x, y, z, water);
+					}
+				}
+			}
+		}
+		return chunk;
+	}
+
+	private static long checksum(StandaloneChunkBuffer chunk) {
+		long checksum = 1;
+		for (int x = 0; x < ChunkCoordinate.CHUNK_X_SIZE; x++) {
+			for (int z = 0; z < ChunkCoordinate.CHUNK_Z_SIZE; z++) {
+				for (int y = 0; y < ChunkCoordinate.CHUNK_Y_SIZE; y++) {
+					checksum = checksum * 31 + chunk.getPackedBlock(x, y, z);
+				}
+			}
+		}
+		return checksum;
+	}
+
+	/**
+	 * Carves all chunks of {@link #CHUNKS} with the given carvers, in order.
+	 *
+	 * @return The checksums of all chunks.
+	 */
+	private static long[] carve(TerrainGenBase<?>... carvers) {
+		long[] checksums = new long[CHUNKS.length];
+		for (int i = 0; i < CHUNKS.length; i++) {
+			StandaloneChunkBuffer chunk = createChunk(CHUNKS[i][0], CHUNKS[i][1]);
+			for (TerrainGenBase<?> carver : carvers) {
+				carver.generate(chunk);
+			}
+			checksums[i] = checksum(chunk);
+		}
+		return checksums;
+	}
+
+	private static void assertChecksums(long[] expected, long[] checksums) {
+		for (int i = 0; i < CHUNKS.length; i++) {
+			assertEquals("Chunk " + CHUNKS[i][0] + "," + CHUNKS[i][1], expected[i], checksums[i]);
+		}
+	}
+
+	@Test
+	public void testCaves() {
+		assertChecksums(CAVES, carve(new CavesGen(worldConfig, world)));
+	}
+
+	@Test
+	public void testCanyons() {
+		assertChecksums(CANYONS, carve(new CanyonsGen(worldConfig, world)));
+	}
+
+	@Test
+	public void testCavesAndCanyons() {
+		assertChecksums(CAVES_AND_CANYONS, carve(new CavesGen(worldConfig, world), new CanyonsGen(worldConfig, world)));
+	}
+}
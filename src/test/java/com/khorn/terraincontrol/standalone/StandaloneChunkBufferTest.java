@@ -0,0 +1,71 @@
+package com.khorn.terraincontrol.standalone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.khorn.terraincontrol.LocalMaterialData;
+import com.khorn.terraincontrol.util.ChunkCoordinate;
+import com.khorn.terraincontrol.util.NamedBinaryTag;
+import com.khorn.terraincontrol.util.minecraftTypes.DefaultMaterial;
+
+import org.junit.Test;
+
+public class StandaloneChunkBufferTest {
+
+	@Test
+	public void testEmptyChunk() {
+		StandaloneChunkBuffer chunk = new StandaloneChunkBuffer(ChunkCoordinate.fromChunkCoords(3, -4));
+		assertEquals(ChunkCoordinate.fromChunkCoords(3, -4), chunk.getChunkCoordinate());
+		assertSame(StandaloneMaterialData.AIR, chunk.getBlock(15, 255, 15));
+		assertEquals(0, chunk.getHighestBlockY(0, 0));
+	}
+
+	@Test
+	public void testSetAndGetBlock() {
+		StandaloneChunkBuffer chunk = new StandaloneChunkBuffer(ChunkCoordinate.fromChunkCoords(0, 0));
+		LocalMaterialData wool = StandaloneMaterialData.of(DefaultMaterial.WOOL.id, 14);
+		chunk.setBlock(1, 70, 2, wool);
+
+		assertEquals(wool, chunk.getBlock(1, 70, 2));
+		assertEquals(14, chunk.getBlock(1, 70, 2).getBlockData());
+		assertSame(StandaloneMaterialData.AIR, chunk.getBlock(2, 70, 1));
+		assertEquals(71, chunk.getHighestBlockY(1, 2));
+	}
+
+	@Test
+	public void testHighBlockIds() {
+		// Block ids use the upper 12 bits of the stored value
+		StandaloneChunkBuffer chunk = new StandaloneChunkBuffer(ChunkCoordinate.fromChunkCoords(0, 0));
+		chunk.setBlock(0, 0, 0, StandaloneMaterialData.of(4000, 15));
+
+		assertEquals(4000, chunk.getBlock(0, 0, 0).getBlockId());
+		assertEquals(15, chunk.getBlock(0, 0, 0).getBlockData());
+	}
+
+	@Test
+	public void testCopyIsIndependent() {
+		StandaloneChunkBuffer chunk = new StandaloneChunkBuffer(ChunkCoordinate.fromChunkCoords(0, 0));
+		LocalMaterialData stone = StandaloneMaterialData.of(DefaultMaterial.STONE.id, 0);
+		chunk.setBlock(5, 10, 5, stone);
+
+		StandaloneChunkBuffer copy = chunk.copy();
+		copy.setBlock(5, 10, 5, StandaloneMaterialData.AIR);
+
+		assertEquals(stone, chunk.getBlock(5, 10, 5));
+		assertSame(StandaloneMaterialData.AIR, copy.getBlock(5, 10, 5));
+	}
+
+	@Test
+	public void testMetadata() {
+		StandaloneChunkBuffer chunk = new StandaloneChunkBuffer(ChunkCoordinate.fromChunkCoords(0, 0));
+		NamedBinaryTag tag = new NamedBinaryTag(NamedBinaryTag.Type.TAG_String, "id", "Chest");
+		chunk.setMetadata(8, 64, 8, tag);
+
+		assertSame(tag, chunk.getMetadata(8, 64, 8));
+		assertNull(chunk.getMetadata(8, 65, 8));
+
+		chunk.setMetadata(8, 64, 8, null);
+		assertNull(chunk.getMetadata(8, 64, 8));
+	}
+}